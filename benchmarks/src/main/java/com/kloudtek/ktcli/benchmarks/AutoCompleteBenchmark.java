@@ -0,0 +1,42 @@
+package com.kloudtek.ktcli.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import picocli.AutoComplete;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates completion scripts for synthetic commands.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AutoCompleteBenchmark {
+    @Param({"small", "medium", "huge"})
+    public String size;
+    private CommandLine commandLine;
+    private final StringBuilder out = new StringBuilder();
+
+    @Setup
+    public void setup() {
+        commandLine = SyntheticCommands.create(size);
+    }
+
+    @Benchmark
+    public StringBuilder bash() throws IOException {
+        out.setLength(0);
+        AutoComplete.bash(SyntheticCommands.NAME, commandLine, out);
+        return out;
+    }
+
+    @Benchmark
+    public AutoComplete.CompletionModel model() {
+        // the model of the last command tree is cached, a new command tree has to be walked again
+        return AutoComplete.model(SyntheticCommands.create(size));
+    }
+}
@@ -0,0 +1,39 @@
+package com.kloudtek.ktcli.benchmarks;
+
+import com.kloudtek.ktcli.CliHelper;
+import com.kloudtek.ktcli.config.ConfigLayer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a synthetic command through {@link CliHelper}, from parsing its arguments to executing it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CliHelperBenchmark {
+    private File configFile;
+
+    @Setup
+    public void setup() throws IOException {
+        configFile = File.createTempFile("ktcli-benchmark", ".cfg");
+        if (!configFile.delete()) {
+            throw new IOException("Unable to delete " + configFile.getPath());
+        }
+    }
+
+    @Benchmark
+    public CliHelper<SyntheticCommands.App> initAndRun() {
+        // a new process would have to read the configuration files
+        ConfigLayer.clearCache();
+        CliHelper<SyntheticCommands.App> cliHelper = new CliHelper<>(SyntheticCommands.App::new);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + configFile.getPath(), "--name=benchmark", "leaf", "-a", "alpha", "-u", "SECONDS");
+        return cliHelper;
+    }
+}
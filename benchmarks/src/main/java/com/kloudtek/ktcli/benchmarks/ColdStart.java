@@ -0,0 +1,181 @@
+package com.kloudtek.ktcli.benchmarks;
+
+import picocli.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cold start of a ktcli application, by repeatedly launching {@link SampleApp} in a new JVM with a
+ * growing number of subcommands and configuration profiles. For each scenario, the median of the runs is written to a
+ * baseline file that can be compared with the baseline of a previous version:
+ * <ul>
+ * <li>time until the command started executing, when it prints its first output line</li>
+ * <li>total wall time of the process</li>
+ * <li>number of classes loaded (counted from {@code -verbose:class})</li>
+ * <li>peak resident set size (read from {@code /proc/self/status}, linux only)</li>
+ * </ul>
+ */
+@CommandLine.Command(name = "coldstart", description = "Measures the cold start of a sample ktcli application")
+public class ColdStart implements Runnable {
+    @CommandLine.Option(names = {"-r", "--runs"}, description = "Number of measured runs per scenario")
+    int runs = 10;
+    @CommandLine.Option(names = {"-w", "--warmup"}, description = "Number of unmeasured runs per scenario (to fill the OS file cache)")
+    int warmup = 2;
+    @CommandLine.Option(names = {"-s", "--subcommands"}, split = ",", description = "Subcommand counts to measure (default: 1,100,1000)")
+    List<Integer> subcommands;
+    @CommandLine.Option(names = {"-p", "--profiles"}, split = ",", description = "Configuration profile counts to measure (default: 1,100)")
+    List<Integer> profiles;
+    @CommandLine.Option(names = {"-o", "--output"}, description = "Baseline file to write (the results are also printed)")
+    File output;
+    @CommandLine.Option(names = {"-j", "--java"}, description = "Java executable to launch the application with")
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    @CommandLine.Option(names = {"-h", "--help"}, usageHelp = true, description = "Display this help message and quit")
+    boolean help;
+
+    public static void main(String[] args) {
+        CommandLine.run(new ColdStart(), System.err, args);
+    }
+
+    @Override
+    public void run() {
+        if (subcommands == null) {
+            subcommands = Arrays.asList(1, 100, 1000);
+        }
+        if (profiles == null) {
+            profiles = Arrays.asList(1, 100);
+        }
+        try {
+            List<String> lines = new ArrayList<>();
+            lines.add("# ktcli cold start (median of " + runs + " runs, java " + System.getProperty("java.version") + ")");
+            lines.add("# scenario\tfirstOutputMs\twallMs\tclassesLoaded\tpeakRssKb");
+            System.out.println(lines.get(0));
+            System.out.println(lines.get(1));
+            for (int subcommandCount : subcommands) {
+                for (int profileCount : profiles) {
+                    String line = measure(subcommandCount, profileCount);
+                    System.out.println(line);
+                    lines.add(line);
+                }
+            }
+            if (output != null) {
+                Files.write(output.toPath(), lines, StandardCharsets.UTF_8);
+            }
+        } catch (IOException | InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String measure(int subcommandCount, int profileCount) throws IOException, InterruptedException {
+        File configFile = File.createTempFile("ktcli-coldstart", ".cfg");
+        try {
+            Files.write(configFile.toPath(), SyntheticCommands.config(profileCount));
+            List<Run> results = new ArrayList<>();
+            for (int i = 0; i < warmup + runs; i++) {
+                Run run = launch(subcommandCount, configFile, "profile" + (profileCount - 1));
+                if (i >= warmup) {
+                    results.add(run);
+                }
+            }
+            List<Long> firstOutput = new ArrayList<>();
+            List<Long> wall = new ArrayList<>();
+            List<Long> classes = new ArrayList<>();
+            List<Long> peakRss = new ArrayList<>();
+            for (Run run : results) {
+                firstOutput.add(run.firstOutputNanos);
+                wall.add(run.wallNanos);
+                classes.add(run.classesLoaded);
+                peakRss.add(run.peakRssKb);
+            }
+            return String.format(Locale.ROOT, "subcommands=%d,profiles=%d\t%.1f\t%.1f\t%d\t%d", subcommandCount, profileCount,
+                    median(firstOutput) / 1e6, median(wall) / 1e6, median(classes), median(peakRss));
+        } finally {
+            configFile.delete();
+            new File(configFile.getPath() + ".completion").delete();
+        }
+    }
+
+    private Run launch(int subcommandCount, File configFile, String profile) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.add("-verbose:class");
+        command.add("-D" + SampleApp.STATS + "=true");
+        command.add("-D" + SampleApp.SUBCOMMANDS + "=" + subcommandCount);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SampleApp.class.getName());
+        command.add("-c=" + configFile.getPath());
+        command.add("-p=" + profile);
+        command.add("leaf");
+        command.add("-a");
+        command.add("alpha");
+        Run run = new Run();
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).start();
+        Thread stderr = new Thread(() -> readStderr(process.getErrorStream(), run));
+        stderr.start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (isClassLoad(line)) {
+                    run.classesLoaded++;
+                } else if (run.firstOutputNanos == 0 && line.equals(SampleApp.EXECUTING)) {
+                    run.firstOutputNanos = System.nanoTime() - start;
+                }
+            }
+        }
+        if (!process.waitFor(5, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("Sample application didn't exit");
+        }
+        run.wallNanos = System.nanoTime() - start;
+        stderr.join();
+        if (process.exitValue() != 0) {
+            throw new IllegalStateException("Sample application failed with exit code " + process.exitValue() + ": " + run.errors);
+        }
+        return run;
+    }
+
+    private static boolean isClassLoad(String line) {
+        // java 8 logs "[Loaded <class> from <source>]", later versions "[<uptime>][info][class,load] <class> source: <source>"
+        return line.startsWith("[Loaded ") || line.contains("[class,load]");
+    }
+
+    private static void readStderr(InputStream in, Run run) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith(SampleApp.PEAK_RSS)) {
+                    run.peakRssKb = Long.parseLong(line.substring(SampleApp.PEAK_RSS.length()));
+                } else {
+                    run.errors.append(line).append('\n');
+                }
+            }
+        } catch (IOException e) {
+            run.errors.append(e.getMessage());
+        }
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static class Run {
+        volatile long firstOutputNanos;
+        volatile long wallNanos;
+        volatile long classesLoaded;
+        volatile long peakRssKb;
+        final StringBuffer errors = new StringBuffer();
+    }
+}
@@ -0,0 +1,51 @@
+package com.kloudtek.ktcli.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import picocli.CommandLine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds and parses synthetic command trees.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandLineBenchmark {
+    @Param({"small", "medium", "huge"})
+    public String size;
+    @Param({"1", "10", "100"})
+    public int argCount;
+    private CommandLine commandLine;
+    private String[] args;
+
+    @Setup
+    public void setup() {
+        commandLine = SyntheticCommands.create(size);
+        List<String> list = new ArrayList<>();
+        list.add("--name=benchmark");
+        for (int i = 1; i < argCount; i++) {
+            list.add(i % 2 == 0 ? "-Dkey" + i + "=value" : "file" + i);
+        }
+        args = list.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public CommandLine construct() {
+        return SyntheticCommands.create(size);
+    }
+
+    /**
+     * Parses without binding: {@link CommandLine#parse(String...)} would add the values of the list options to the same
+     * user object at every invocation.
+     */
+    @Benchmark
+    public CommandLine.ParseResult parseArgs() {
+        return commandLine.parseArgs(args);
+    }
+}
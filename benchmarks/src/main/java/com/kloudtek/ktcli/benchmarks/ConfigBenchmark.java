@@ -0,0 +1,56 @@
+package com.kloudtek.ktcli.benchmarks;
+
+import com.kloudtek.ktcli.CliHelper;
+import com.kloudtek.ktcli.config.ConfigLayer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads and saves configuration files with a growing number of profiles.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigBenchmark {
+    @Param({"1", "10", "100", "1000"})
+    public int profiles;
+    private File configFile;
+    private String profile;
+
+    @Setup
+    public void setup() throws IOException {
+        profile = "profile" + (profiles - 1);
+        configFile = File.createTempFile("ktcli-benchmark", ".cfg");
+        // saving always writes the same values, so the file keeps the same size across invocations
+        Files.write(configFile.toPath(), SyntheticCommands.config(profiles));
+    }
+
+    @TearDown
+    public void tearDown() {
+        configFile.delete();
+        new File(configFile.getPath() + ".completion").delete();
+    }
+
+    @Benchmark
+    public CliHelper<SyntheticCommands.App> load() {
+        ConfigLayer.clearCache();
+        CliHelper<SyntheticCommands.App> cliHelper = new CliHelper<>(SyntheticCommands.App::new);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + configFile.getPath(), "-p=" + profile, "leaf");
+        return cliHelper;
+    }
+
+    @Benchmark
+    public CliHelper<SyntheticCommands.App> save() {
+        ConfigLayer.clearCache();
+        CliHelper<SyntheticCommands.App> cliHelper = new CliHelper<>(SyntheticCommands.App::new);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + configFile.getPath(), "-p=" + profile, "-sc", "leaf", "-a", "saved");
+        return cliHelper;
+    }
+}
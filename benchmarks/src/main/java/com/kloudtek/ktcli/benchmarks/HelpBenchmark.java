@@ -0,0 +1,47 @@
+package com.kloudtek.ktcli.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the usage help of synthetic commands.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HelpBenchmark {
+    @Param({"small", "medium", "huge"})
+    public String size;
+    private CommandLine commandLine;
+    private CommandLine subcommand;
+    private final StringBuilder out = new StringBuilder();
+
+    @Setup
+    public void setup() {
+        commandLine = SyntheticCommands.create(size);
+        subcommand = commandLine.getSubcommands().get("cmd0");
+    }
+
+    @Benchmark
+    public StringBuilder topLevelHelp() throws IOException {
+        return render(commandLine);
+    }
+
+    @Benchmark
+    public StringBuilder subcommandHelp() throws IOException {
+        return render(subcommand);
+    }
+
+    private StringBuilder render(CommandLine commandLine) throws IOException {
+        out.setLength(0);
+        CommandLine.Help.ColorScheme colorScheme = CommandLine.Help.defaultColorScheme(CommandLine.Help.Ansi.OFF);
+        new CommandLine.Help(commandLine.getCommandSpec(), colorScheme).writeTo(out);
+        return out;
+    }
+}
@@ -0,0 +1,56 @@
+package com.kloudtek.ktcli.benchmarks;
+
+import com.kloudtek.ktcli.util.VerySimpleLogger;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.spi.LocationAwareLogger;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs messages with {@link VerySimpleLogger}, both at an enabled and at a disabled level.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoggerBenchmark {
+    private VerySimpleLogger logger;
+    private PrintStream out;
+    private int count;
+
+    @Setup
+    public void setup() {
+        logger = new VerySimpleLogger("benchmark");
+        VerySimpleLogger.LOGLEVEL = LocationAwareLogger.INFO_INT;
+        // the logger writes to System.out, which would otherwise be what's measured
+        out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public void info() {
+        logger.info("Processed {} items", ++count);
+    }
+
+    @Benchmark
+    public void debugDisabled() {
+        logger.debug("Processed {} items", ++count);
+    }
+}
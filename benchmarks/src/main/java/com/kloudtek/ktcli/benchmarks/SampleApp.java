@@ -0,0 +1,74 @@
+package com.kloudtek.ktcli.benchmarks;
+
+import com.kloudtek.ktcli.CliHelper;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Sample ktcli application launched by {@link ColdStart}. Besides the {@code leaf} subcommand, it has as many
+ * synthetic {@code cmd<n>} subcommands as set by the {@value #SUBCOMMANDS} system property. The {@code leaf}
+ * subcommand prints {@value #EXECUTING} as soon as it is executed, and {@code ok} is printed once it completed.
+ */
+public class SampleApp {
+    public static final String SUBCOMMANDS = "ktcli.sample.subcommands";
+    /**
+     * When this system property is {@code true}, the peak resident set size is printed to stderr on exit.
+     */
+    public static final String STATS = "ktcli.sample.stats";
+    public static final String PEAK_RSS = "peakRssKb=";
+    /**
+     * First output of the {@code leaf} subcommand, once the command line was parsed and the configuration loaded.
+     */
+    public static final String EXECUTING = "executing";
+
+    public static void main(String[] args) {
+        if (Boolean.getBoolean(STATS)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(SampleApp::printPeakRss));
+        }
+        int subcommands = Integer.getInteger(SUBCOMMANDS, 10);
+        CliHelper<App> cliHelper = new CliHelper<>(App::new);
+        try {
+            cliHelper.initAndRunNoExceptionHandling(command -> {
+                for (int i = 0; i < subcommands; i++) {
+                    cliHelper.getCommandLine().addSubcommand("cmd" + i, new SyntheticCommands.Leaf());
+                }
+            }, args);
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            System.exit(-1);
+        }
+        System.out.println("ok");
+    }
+
+    /**
+     * {@link SyntheticCommands.App} with a {@link Leaf} subcommand that reports when it starts executing.
+     */
+    @CommandLine.Command(name = SyntheticCommands.NAME, description = "Synthetic command used in benchmarks", subcommands = Leaf.class)
+    public static class App extends SyntheticCommands.Root {
+    }
+
+    @CommandLine.Command(name = "leaf", description = "Synthetic subcommand used in benchmarks")
+    public static class Leaf extends SyntheticCommands.Leaf {
+        @Override
+        protected void execute() {
+            System.out.println(EXECUTING);
+            System.out.flush();
+        }
+    }
+
+    private static void printPeakRss() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmHWM:")) {
+                    System.err.println(PEAK_RSS + line.substring("VmHWM:".length()).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException e) {
+            // not on linux, the peak RSS isn't reported
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.kloudtek.ktcli.benchmarks;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kloudtek.ktcli.CliCommand;
+import com.kloudtek.ktcli.CliHelper;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synthetic commands used by the benchmarks, with a mix of option types similar to real command line tools.
+ */
+public class SyntheticCommands {
+    public static final String NAME = "synthetic";
+
+    private SyntheticCommands() {
+    }
+
+    /**
+     * Creates a synthetic command tree.
+     *
+     * @param size {@code small} (5 subcommands), {@code medium} (5 subcommands with 10 subcommands each) or
+     *             {@code huge} (20 subcommands with 100 subcommands each)
+     * @return top-level command
+     */
+    public static CommandLine create(String size) {
+        switch (size) {
+            case "small":
+                return create(5, 0);
+            case "medium":
+                return create(5, 10);
+            case "huge":
+                return create(20, 100);
+            default:
+                throw new IllegalArgumentException("Invalid size: " + size);
+        }
+    }
+
+    /**
+     * Creates a synthetic configuration file content.
+     *
+     * @param profiles number of profiles, named {@code profile0} to {@code profile<profiles - 1>}
+     * @return configuration file content
+     */
+    public static byte[] config(int profiles) {
+        ObjectNode root = new ObjectNode(JsonNodeFactory.instance);
+        ObjectNode profilesNode = root.putObject(CliHelper.PROFILES);
+        for (int i = 0; i < profiles; i++) {
+            ObjectNode profileNode = profilesNode.putObject("profile" + i);
+            profileNode.put("name", "name" + i);
+            ObjectNode leaf = profileNode.putObject(CliHelper.SUBCOMMANDS).putObject("leaf");
+            leaf.put("alpha", "alpha" + i);
+            leaf.put("beta", i);
+            leaf.put("unit", "SECONDS");
+        }
+        try {
+            return CliHelper.getObjectMapper().writeValueAsBytes(root);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static CommandLine create(int width, int nestedWidth) {
+        CommandLine commandLine = new CommandLine(new Root());
+        for (int i = 0; i < width; i++) {
+            CommandLine subcommand = new CommandLine(new Leaf());
+            for (int j = 0; j < nestedWidth; j++) {
+                subcommand.addSubcommand("nested" + j, new Leaf());
+            }
+            commandLine.addSubcommand("cmd" + i, subcommand);
+        }
+        return commandLine;
+    }
+
+    /**
+     * Top-level command of the synthetic command trees.
+     */
+    @CommandLine.Command(name = NAME, description = "Synthetic command used in benchmarks")
+    public static class Root extends CliCommand<CliCommand<?>> {
+        @CommandLine.Option(names = {"-n", "--name"}, description = "Name")
+        @JsonProperty
+        public String name;
+        @CommandLine.Option(names = "-D", description = "Definitions")
+        public List<String> definitions;
+        @CommandLine.Parameters(description = "Files")
+        public List<File> files;
+
+        @Override
+        protected void execute() {
+        }
+    }
+
+    /**
+     * Top-level command used to run {@link com.kloudtek.ktcli.CliHelper}, with a single {@link Leaf} subcommand.
+     */
+    @CommandLine.Command(name = NAME, description = "Synthetic command used in benchmarks", subcommands = Leaf.class)
+    public static class App extends Root {
+    }
+
+    /**
+     * Subcommand with one option of each common type.
+     */
+    @CommandLine.Command(name = "leaf", description = "Synthetic subcommand used in benchmarks")
+    public static class Leaf extends CliCommand<CliCommand<?>> {
+        @CommandLine.Option(names = {"-a", "--alpha"}, description = "A string")
+        @JsonProperty
+        public String alpha;
+        @CommandLine.Option(names = {"-b", "--beta"}, description = "A number")
+        @JsonProperty
+        public int beta;
+        @CommandLine.Option(names = {"-u", "--unit"}, description = "A time unit")
+        @JsonProperty
+        public TimeUnit unit;
+        @CommandLine.Option(names = {"-f", "--file"}, description = "A file")
+        public File file;
+        @CommandLine.Option(names = {"-v", "--verbose"}, description = "A flag")
+        public boolean verbose;
+
+        @Override
+        protected void execute() {
+        }
+    }
+}
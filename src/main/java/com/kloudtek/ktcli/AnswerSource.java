@@ -0,0 +1,100 @@
+package com.kloudtek.ktcli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.kloudtek.util.UserDisplayableException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Provides answers to prompts ({@link CliHelper#read(String, String, boolean)} and
+ * {@link CliHelper#confirm(String, Boolean)}), so that they don't need to be answered interactively.
+ * <p>
+ * Answers are looked up by prompt text, ignoring case and anything that isn't a letter or digit, so the answer of the
+ * prompt {@code Configuration password} can be given as {@code configuration_password}, {@code CONFIGURATION_PASSWORD}
+ * or {@code Configuration password} (see {@link #key(String)}).
+ *
+ * @see CliHelper#setPromptAnswers(java.util.List)
+ */
+public interface AnswerSource {
+    /**
+     * Returns the answer to a prompt.
+     *
+     * @param prompt prompt text
+     * @return answer, or null if this source doesn't have one
+     */
+    @Nullable
+    String getAnswer(@NotNull String prompt);
+
+    /**
+     * Returns the key answers of a prompt are looked up with: its text in lower case, with every run of characters
+     * that aren't letters or digits replaced by {@code _}.
+     *
+     * @param prompt prompt text
+     * @return key
+     */
+    @NotNull
+    static String key(@NotNull String prompt) {
+        return prompt.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_").replaceAll("^_|_$", "");
+    }
+
+    /**
+     * Creates a source from answers by prompt.
+     *
+     * @param answers answers by prompt text or {@link #key(String) key}
+     * @return answer source
+     */
+    @NotNull
+    static AnswerSource of(@NotNull Map<String, String> answers) {
+        Map<String, String> byKey = new HashMap<>();
+        for (Map.Entry<String, String> entry : answers.entrySet()) {
+            byKey.put(key(entry.getKey()), entry.getValue());
+        }
+        return prompt -> byKey.get(key(prompt));
+    }
+
+    /**
+     * Creates a source from a JSON object of answers by prompt, like the {@value CliHelper#ANSWERS} object of a
+     * configuration profile.
+     *
+     * @param answers JSON object
+     * @return answer source
+     */
+    @NotNull
+    static AnswerSource fromJson(@NotNull JsonNode answers) {
+        Map<String, String> values = new HashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = answers.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> entry = it.next();
+            if (entry.getValue().isValueNode() && !entry.getValue().isNull()) {
+                values.put(entry.getKey(), entry.getValue().asText());
+            }
+        }
+        return of(values);
+    }
+
+    /**
+     * Reads a JSON file containing an object of answers by prompt.
+     *
+     * @param file answers file
+     * @return answer source
+     * @throws UserDisplayableException if the file couldn't be read
+     */
+    @NotNull
+    static AnswerSource fromFile(@NotNull File file) {
+        try {
+            JsonNode answers = CliHelper.getObjectMapper().readTree(file);
+            if (answers == null || !answers.isObject()) {
+                throw new UserDisplayableException("Invalid answers file " + file.getPath() + ": it must contain a json object");
+            }
+            return fromJson(answers);
+        } catch (IOException e) {
+            throw new UserDisplayableException("Unable to read answers file " + file.getPath() + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.kloudtek.ktcli;
+
+import org.jetbrains.annotations.NotNull;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Creates AppCDS (application class data sharing) archives for ktcli applications, and launchers that use them.
+ * <p>
+ * An archive contains the parsed and verified form of the classes that an application loads at startup (most of
+ * picocli, Jackson and the application's commands), so that launching the application doesn't load them from jars
+ * again. Those classes are found by a training run of the application, where {@link CliHelper} loads the configuration,
+ * builds the whole command tree and renders the usage help of every command, but doesn't execute any command (see
+ * {@link CliHelper#train(CommandClassInitializer, String...)}).
+ * <p>
+ * The generated launcher creates the archive the first time it is run, in {@code ~/.cache/<name>}, and creates it
+ * again whenever the classpath (or the java executable) changes. This requires java 10 or later, and a classpath made
+ * of jar files only. If the archive can't be created, the application is launched without it.
+ * <p>
+ * This class can be run from the command line (for example from a build), use {@code -h} to see its options.
+ */
+@CommandLine.Command(name = "ktcli-cds", description = "Creates an AppCDS archive and/or a launcher that uses one, for a ktcli application")
+public class ClassDataSharing implements Runnable {
+    /**
+     * When this system property is {@code true}, {@link CliHelper} runs the training run instead of the command.
+     */
+    public static final String TRAINING = "ktcli.cds.training";
+    @CommandLine.Option(names = {"-n", "--name"}, required = true, description = "Application name")
+    private String name;
+    @CommandLine.Option(names = {"-m", "--main"}, required = true, description = "Main class of the application")
+    private String mainClass;
+    @CommandLine.Option(names = {"-cp", "--classpath"}, required = true, description = "Classpath of the application (jar files)")
+    private String classpath;
+    @CommandLine.Option(names = {"-l", "--launcher"}, description = "Launcher script to write")
+    private File launcher;
+    @CommandLine.Option(names = {"-a", "--archive"}, description = "Archive to create now")
+    private File archive;
+    @CommandLine.Option(names = {"-h", "--help"}, usageHelp = true, description = "Display this help message and quit")
+    private boolean help;
+
+    public static void main(String... args) {
+        CommandLine.run(new ClassDataSharing(), System.err, args);
+    }
+
+    @Override
+    public void run() {
+        List<File> files = new ArrayList<>();
+        for (String path : classpath.split(File.pathSeparator)) {
+            files.add(new File(path));
+        }
+        try {
+            if (launcher != null) {
+                writeLauncher(launcher, name, mainClass, files);
+            }
+            if (archive != null) {
+                createArchive(archive, mainClass, files);
+            }
+        } catch (IOException | InterruptedException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes a launcher script, which launches the application using an archive that it creates as needed.
+     *
+     * @param launcher  launcher script to write (it's made executable)
+     * @param name      application name, which names the directory the archive is cached in
+     * @param mainClass main class of the application
+     * @param classpath classpath of the application
+     * @throws IOException if the launcher couldn't be written
+     */
+    public static void writeLauncher(@NotNull File launcher, @NotNull String name, @NotNull String mainClass, @NotNull List<File> classpath) throws IOException {
+        String cacheName = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        String script = "#!/bin/sh\n" +
+                "# Launches " + name + " with an AppCDS archive, which is created by a training run the first time it's\n" +
+                "# launched, and re-created whenever the classpath or the java executable change.\n" +
+                "CP=" + quote(join(classpath)) + "\n" +
+                "MAIN=" + quote(mainClass) + "\n" +
+                "JAVA=\"${JAVA_HOME:+$JAVA_HOME/bin/}java\"\n" +
+                "CACHE_DIR=\"${XDG_CACHE_HOME:-$HOME/.cache}/" + cacheName + "\"\n" +
+                "# path, size and modification time of the java executable and of each classpath entry\n" +
+                "FINGERPRINT=$( { ls -lLn \"$(command -v \"$JAVA\")\"; IFS=" + File.pathSeparator + "; for f in $CP; do ls -lLn \"$f\"; done; } 2>&1 | cksum | cut -d ' ' -f 1 )\n" +
+                "ARCHIVE=\"$CACHE_DIR/$FINGERPRINT.jsa\"\n" +
+                "if [ ! -f \"$ARCHIVE\" ] && mkdir -p \"$CACHE_DIR\"; then\n" +
+                "  rm -f \"$CACHE_DIR\"/*.jsa\n" +
+                "  \"$JAVA\" -Xshare:off -XX:DumpLoadedClassList=\"$CACHE_DIR/$$.lst\" -D" + TRAINING + "=true -cp \"$CP\" \"$MAIN\" >/dev/null 2>&1 &&\n" +
+                "    \"$JAVA\" -Xshare:dump -XX:SharedClassListFile=\"$CACHE_DIR/$$.lst\" -XX:SharedArchiveFile=\"$CACHE_DIR/$$.tmp\" -cp \"$CP\" >/dev/null 2>&1 &&\n" +
+                "    mv \"$CACHE_DIR/$$.tmp\" \"$ARCHIVE\"\n" +
+                "  rm -f \"$CACHE_DIR/$$.lst\" \"$CACHE_DIR/$$.tmp\"\n" +
+                "fi\n" +
+                "if [ -f \"$ARCHIVE\" ]; then\n" +
+                "  exec \"$JAVA\" -XX:SharedArchiveFile=\"$ARCHIVE\" -Xshare:auto -cp \"$CP\" \"$MAIN\" \"$@\"\n" +
+                "fi\n" +
+                "exec \"$JAVA\" -cp \"$CP\" \"$MAIN\" \"$@\"\n";
+        Files.write(launcher.toPath(), script.getBytes(StandardCharsets.UTF_8));
+        if (!launcher.setExecutable(true)) {
+            throw new IOException("Unable to make " + launcher.getPath() + " executable");
+        }
+    }
+
+    /**
+     * Creates an archive now, by running the training run of the application with the current java executable.
+     *
+     * @param archive   archive to create
+     * @param mainClass main class of the application
+     * @param classpath classpath of the application
+     * @throws IOException          if the archive couldn't be created
+     * @throws InterruptedException if interrupted while waiting for java
+     */
+    public static void createArchive(@NotNull File archive, @NotNull String mainClass, @NotNull List<File> classpath) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        File classList = File.createTempFile("ktcli-cds", ".lst");
+        try {
+            exec(java, "-Xshare:off", "-XX:DumpLoadedClassList=" + classList.getPath(), "-D" + TRAINING + "=true",
+                    "-cp", join(classpath), mainClass);
+            exec(java, "-Xshare:dump", "-XX:SharedClassListFile=" + classList.getPath(), "-XX:SharedArchiveFile=" + archive.getPath(),
+                    "-cp", join(classpath));
+        } finally {
+            if (!classList.delete()) {
+                classList.deleteOnExit();
+            }
+        }
+    }
+
+    private static void exec(String... command) throws IOException, InterruptedException {
+        File log = File.createTempFile("ktcli-cds", ".log");
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException("Command " + Arrays.toString(command) + " failed with exit code " + exitCode + ": "
+                        + new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8));
+            }
+        } finally {
+            if (!log.delete()) {
+                log.deleteOnExit();
+            }
+        }
+    }
+
+    private static String join(List<File> classpath) {
+        List<String> paths = new ArrayList<>();
+        for (File file : classpath) {
+            paths.add(file.getAbsolutePath());
+        }
+        return String.join(File.pathSeparator, paths);
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+}
@@ -1,16 +1,26 @@
 package com.kloudtek.ktcli;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.jetbrains.annotations.NotNull;
 import picocli.CommandLine;
 
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public abstract class CliCommand<T extends CliCommand> {
     protected CliHelper cli;
     protected CommandLine commandLine;
     protected ObjectNode config;
+    private ObjectNode boundConfig;
     protected T parent;
 
     public CliCommand() {
@@ -28,11 +38,105 @@ public abstract class CliCommand<T extends CliCommand> {
 
     protected void loadConfig(@NotNull ObjectNode cfg) throws Exception {
         this.config = cfg;
-        CliHelper.getObjectMapper().readerForUpdating(this).readValue(config);
+        if (cfg.size() > 0) {
+            CliHelper.getObjectMapper().readerForUpdating(this).readValue(config);
+        }
+    }
+
+    /**
+     * Binds configuration to this command.
+     *
+     * @param cfg      configuration node {@link #saveConfig()} writes to
+     * @param resolved configuration merged from all layers, which is loaded into this command
+     * @param excluded properties of the resolved configuration that aren't loaded
+     */
+    void bindConfig(@NotNull ObjectNode cfg, @NotNull ObjectNode resolved, @NotNull Collection<String> excluded) throws Exception {
+        ObjectNode values = resolved;
+        if (!excluded.isEmpty()) {
+            values = resolved.deepCopy();
+            values.remove(excluded);
+        }
+        loadConfig(values);
+        config = cfg;
+        boundConfig = resolved;
+    }
+
+    /**
+     * Sets the configuration node {@link #saveConfig()} writes to, without loading anything.
+     */
+    void setConfigNode(@NotNull ObjectNode cfg) {
+        config = cfg;
+    }
+
+    /**
+     * Returns the names of the configuration properties of this command whose option was set on the command line.
+     */
+    Set<String> getCommandLineProperties() {
+        CommandLine root = commandLine;
+        while (root != null && root.getParent() != null) {
+            root = root.getParent();
+        }
+        CommandLine.ParseResult result = root != null ? root.getParseResult() : null;
+        while (result != null && result.commandSpec() != commandLine.getCommandSpec()) {
+            result = result.subcommand();
+        }
+        if (result == null || result.matchedOptions().isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> properties = new HashSet<>();
+        for (Class<?> cl = getClass(); cl != null && cl != CliCommand.class; cl = cl.getSuperclass()) {
+            for (Field field : cl.getDeclaredFields()) {
+                CommandLine.Option option = field.getAnnotation(CommandLine.Option.class);
+                JsonProperty property = field.getAnnotation(JsonProperty.class);
+                if (option != null && property != null && isMatched(result, option)) {
+                    properties.add(property.value().isEmpty() ? field.getName() : property.value());
+                }
+            }
+        }
+        return properties;
+    }
+
+    private static boolean isMatched(CommandLine.ParseResult result, CommandLine.Option option) {
+        List<String> names = Arrays.asList(option.names());
+        for (CommandLine.OptionSpec matched : result.matchedOptions()) {
+            if (names.contains(matched.names()[0])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the resolved configuration that was last loaded into this command.
+     */
+    ObjectNode getBoundConfig() {
+        return boundConfig;
+    }
+
+    /**
+     * Called after the configuration of this command was reloaded because it was modified while running (see
+     * {@link CliHelper#watchConfig(long)}). This is called from the configuration watcher thread. The new values are
+     * set while holding the lock of this command (values of options set on the command line are kept), so fields
+     * bound to the configuration should be read while synchronized on it.
+     */
+    protected void configChanged() {
     }
 
     protected void saveConfig() {
         ObjectNode jsonNode = CliHelper.getObjectMapper().valueToTree(this);
+        if (boundConfig != null) {
+            // values loaded from the configuration (which includes the system and project files, and environment
+            // variables) are only saved if they were changed or set on the command line, so that they don't end up
+            // shadowing those sources in the user configuration file
+            Set<String> commandLineProperties = getCommandLineProperties();
+            for (Iterator<Map.Entry<String, JsonNode>> it = jsonNode.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = it.next();
+                JsonNode loaded = boundConfig.get(field.getKey());
+                if (loaded != null && !commandLineProperties.contains(field.getKey()) && isLoadedValue(field.getValue(), loaded)) {
+                    it.remove();
+                }
+            }
+        }
         if (config != null) {
             config.setAll(jsonNode);
         } else {
@@ -40,6 +144,18 @@ public abstract class CliCommand<T extends CliCommand> {
         }
     }
 
+    private static boolean isLoadedValue(JsonNode value, JsonNode loaded) {
+        if (value.equals(loaded)) {
+            return true;
+        } else if (!value.isValueNode() || !loaded.isTextual()) {
+            return false;
+        }
+        // environment variables are always text. Secrets are compared by their ENC(...) text, so that saving never
+        // decrypts them: one loaded in plain text from an environment variable is saved encrypted, which doesn't
+        // shadow the variable since the environment takes precedence over the user configuration file
+        return value.asText().equals(loaded.textValue());
+    }
+
     public T getParent() {
         return parent;
     }
@@ -48,6 +164,30 @@ public abstract class CliCommand<T extends CliCommand> {
         return Collections.emptyList();
     }
 
+    /**
+     * Returns values that shell completion should offer for options of this command, which are written to the
+     * {@link CompletionIndex completion index} when the configuration is saved.
+     *
+     * @return values by option name
+     */
+    public Map<String, ? extends Collection<String>> getCompletionValues() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Returns the buffered output of the current invocation, which commands should write their output to rather than
+     * {@code System.out}. It's flushed when the invocation completes, and can be redirected with
+     * {@link CliHelper#setOutput(java.io.OutputStream)}.
+     *
+     * @return command output
+     */
+    protected CommandOutput getOutput() {
+        if (cli == null) {
+            throw new IllegalStateException("Command " + getClass().getName() + " wasn't initialized by CliHelper");
+        }
+        return cli.getCommandOutput();
+    }
+
     protected void execute() throws Exception {
         cli.printUsage(this);
     }
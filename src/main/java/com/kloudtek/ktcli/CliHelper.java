@@ -6,6 +6,11 @@ import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.JsonNodeType;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kloudtek.ktcli.config.ConfigEncryption;
+import com.kloudtek.ktcli.config.ConfigLayer;
+import com.kloudtek.ktcli.config.LayeredConfig;
+import com.kloudtek.ktcli.config.ProfileResolver;
+import com.kloudtek.ktcli.config.Secret;
 import com.kloudtek.ktcli.util.VerySimpleLogger;
 import com.kloudtek.util.UnexpectedException;
 import com.kloudtek.util.UserDisplayableException;
@@ -15,19 +20,38 @@ import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
-import java.io.Console;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CliHelper<T extends CliCommand<?>> {
     public static final String SUBCOMMANDS = "subcommands";
     public static final String DEFAULT_PROFILE = "defaultProfile";
     public static final String DEFAULT = "default";
     public static final String PROFILES = "profiles";
+    /**
+     * Object of a configuration profile containing answers to prompts (see {@link AnswerSource}).
+     */
+    public static final String ANSWERS = "answers";
+    private static volatile Prompts defaultPrompts = new Prompts(Collections.emptyList(), false, false, 0);
+    private static final ThreadLocal<CliHelper<?>> running = new ThreadLocal<>();
+    private static final Set<CommandOutput> activeOutputs = ConcurrentHashMap.newKeySet();
     @Option(names = {"-q", "--quiet"}, description = "Suppress informative message")
     private boolean quiet;
     @Option(names = {"-v", "--verbose"}, description = "Verbose logging (overrides -q)")
@@ -38,35 +62,32 @@ public class CliHelper<T extends CliCommand<?>> {
     private String profile;
     @Option(names = {"-c", "--config"}, description = "Configuration File (note: this MUST be the first parameter, and be in the format of -c=<file> or --config=<file>)")
     private File configFile;
+    @Option(names = "--yes", description = "Answer yes to all confirmations")
+    private boolean yes;
+    @Option(names = "--no-input", description = "Never wait for input: prompts without an answer use their default value, or fail")
+    private boolean noInput;
+    @Option(names = "--answers", paramLabel = "<file>", description = "JSON file containing answers to prompts")
+    private File answersFile;
+    @Option(names = "--prompt-timeout", paramLabel = "<seconds>", description = "Maximum time to wait for the answer to a prompt, after which its default value is used, or the command fails")
+    private long promptTimeoutSeconds;
+    private File systemConfigFile;
+    private File projectConfigFile;
+    private String environmentPrefix;
     protected ObjectNode config;
     private ObjectNode profileConfig;
-    private static ObjectMapper objectMapper;
-    private static Console console;
-    private static Scanner scanner;
+    private LayeredConfig layeredConfig;
+    private NavigableMap<String, JsonNode> resolvedProfileConfig;
     private T command;
     private CommandLine commandLine;
-    private CommandLine.Help.Ansi ansi = CommandLine.Help.Ansi.AUTO;
+    private CommandLine.Help.Ansi ansi;
     private CommandCreator commandCreator;
-
-    static {
-        objectMapper = new ObjectMapper();
-        objectMapper.setDefaultPrettyPrinter(new DefaultPrettyPrinter());
-        objectMapper.disable(MapperFeature.AUTO_DETECT_CREATORS,
-                MapperFeature.AUTO_DETECT_FIELDS,
-                MapperFeature.AUTO_DETECT_GETTERS,
-                MapperFeature.AUTO_DETECT_IS_GETTERS);
-        objectMapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
-        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        console = System.console();
-        if (console == null) {
-            scanner = new Scanner(System.in);
-        }
-    }
+    private HelpCache helpCache;
+    private File completionIndexFile;
+    private OutputStream output;
+    private volatile CommandOutput commandOutput;
+    private volatile Prompts prompts;
 
     protected CliHelper() {
-        if (console == null) {
-            ansi = CommandLine.Help.Ansi.OFF;
-        }
     }
 
     public CliHelper(CommandCreator commandCreator) {
@@ -76,40 +97,119 @@ public class CliHelper<T extends CliCommand<?>> {
 
     // Configuration functions
 
+    /**
+     * Loads the configuration. Values are resolved from the following sources, in increasing order of precedence:
+     * <ul>
+     * <li>{@link #getSystemConfigFile() system configuration file}</li>
+     * <li>{@link #getConfigFile() user configuration file} (which is also the file {@link #writeConfig()} saves to)</li>
+     * <li>{@link #getProjectConfigFile() project configuration file}</li>
+     * <li>environment variables starting with the {@link #getEnvironmentPrefix() environment prefix}, which are
+     * applied to the active profile</li>
+     * </ul>
+     */
     protected void loadConfigFile() {
-        try {
-            if (configFile.exists()) {
-                JsonNode configNode = objectMapper.readTree(configFile);
-                if (configNode.getNodeType() != JsonNodeType.OBJECT) {
-                    throw new UserDisplayableException("Invalid configuration file " + configFile.getPath() + " is not a json object");
-                }
-                config = (ObjectNode) configNode;
-                if( profile == null ) {
-                    profile = getJsonString(config, DEFAULT_PROFILE, DEFAULT);
-                }
-                ObjectNode profiles = getJsonObject(config, PROFILES);
-                profileConfig = getJsonObject(profiles, profile);
-            } else {
-                config = new ObjectNode(JsonNodeFactory.instance);
-                config.put(DEFAULT_PROFILE, DEFAULT);
-                profile = DEFAULT;
-                profileConfig = config.putObject(PROFILES).putObject(DEFAULT);
+        ConfigLayer userLayer = ConfigLayer.load(ConfigLayer.Source.USER, configFile);
+        if (userLayer != null) {
+            config = userLayer.getTree().deepCopy();
+            // secrets saved to the user configuration file use the same salt as the ones it already contains
+            String encrypted = Secret.findEncryptedValue(config);
+            if (encrypted != null) {
+                ConfigEncryption.useSaltOf(encrypted);
             }
-        } catch (IOException e) {
-            throw new UserDisplayableException("Unable to read configuration file: " + e.getMessage(), e);
+        } else {
+            config = new ObjectNode(JsonNodeFactory.instance);
+        }
+        layeredConfig = new LayeredConfig()
+                .add(ConfigLayer.load(ConfigLayer.Source.SYSTEM, systemConfigFile))
+                .add(userLayer)
+                .add(ConfigLayer.load(ConfigLayer.Source.PROJECT, projectConfigFile));
+        if (profile == null) {
+            JsonNode defaultProfile = layeredConfig.get(LayeredConfig.path(DEFAULT_PROFILE));
+            profile = defaultProfile != null ? defaultProfile.textValue() : getJsonString(config, DEFAULT_PROFILE, DEFAULT);
         }
+        ObjectNode profiles = getJsonObject(config, PROFILES);
+        config.set(PROFILES, profiles);
+        profileConfig = getJsonObject(profiles, profile);
+        profiles.set(profile, profileConfig);
+        if (environmentPrefix != null) {
+            layeredConfig.add(ConfigLayer.fromEnvironment(environmentPrefix, System.getenv()), LayeredConfig.path(PROFILES, profile));
+        }
+        if (layeredConfig.getLayers().size() > 1 || ProfileResolver.hasParents(layeredConfig, profile)) {
+            resolvedProfileConfig = ProfileResolver.resolve(layeredConfig, profile);
+        } else {
+            // only the user configuration file is used and the profile doesn't inherit, no need to merge anything
+            resolvedProfileConfig = null;
+        }
+        setupPrompts();
+    }
+
+    /**
+     * Configures how prompts are answered, from the command line options and the {@value #ANSWERS} of the active
+     * profile (which can also be set with environment variables, like {@code <prefix>ANSWERS__<key>}), on top of the
+     * {@link #setPromptAnswers(List) default settings}.
+     */
+    private void setupPrompts() {
+        Prompts defaults = defaultPrompts;
+        List<AnswerSource> sources = new ArrayList<>();
+        if (answersFile != null) {
+            sources.add(AnswerSource.fromFile(answersFile));
+        }
+        JsonNode answers = getResolvedConfig(profileConfig, "").get(ANSWERS);
+        if (answers != null && answers.isObject()) {
+            sources.add(AnswerSource.fromJson(answers));
+        }
+        sources.addAll(defaults.getAnswers());
+        prompts = new Prompts(sources, yes || defaults.isAssumeYes(), noInput || defaults.isNoInput(),
+                promptTimeoutSeconds > 0 ? promptTimeoutSeconds * 1000 : defaults.getTimeout());
+    }
+
+    /**
+     * Returns how prompts of this command are answered, which is configured when the configuration is loaded.
+     *
+     * @return prompts, or the {@link #setPromptAnswers(List) default ones} if the configuration wasn't loaded
+     */
+    @NotNull
+    public Prompts getPrompts() {
+        Prompts prompts = this.prompts;
+        return prompts != null ? prompts : defaultPrompts;
     }
 
     public void writeConfig() {
         if (saveConfig) {
             try {
-                objectMapper.writerWithDefaultPrettyPrinter().writeValue(configFile, config);
+                getObjectMapper().writerWithDefaultPrettyPrinter().writeValue(configFile, config);
             } catch (IOException e) {
                 System.out.println("Unable to write config file " + configFile.getPath() + " : " + e.getMessage());
                 if (verbose) {
                     e.printStackTrace();
                 }
             }
+            writeCompletionIndex();
+        }
+    }
+
+    /**
+     * Writes the {@link CompletionIndex completion index} of the command to {@link #getCompletionIndexFile()}. This is
+     * called by {@link #writeConfig()} when the configuration is saved, so that completion offers current profile names.
+     */
+    public void writeCompletionIndex() {
+        File file = getCompletionIndexFile();
+        if (file != null && commandLine != null) {
+            Set<String> profiles = new TreeSet<>();
+            if (config != null) {
+                getJsonObject(config, PROFILES).fieldNames().forEachRemaining(profiles::add);
+            }
+            if (layeredConfig != null) {
+                layeredConfig.getObject(LayeredConfig.path(PROFILES), null).fieldNames().forEachRemaining(profiles::add);
+            }
+            try {
+                CompletionIndex.build(commandLine, profiles).write(file);
+            } catch (IOException e) {
+                System.out.println("Unable to write completion index " + file.getPath() + " : " + e.getMessage());
+                if (verbose) {
+                    e.printStackTrace();
+                }
+            }
         }
     }
 
@@ -154,6 +254,10 @@ public class CliHelper<T extends CliCommand<?>> {
      * @param args Arguments
      */
     public void initAndRunNoExceptionHandling(CommandClassInitializer<T> initializer, String... args) {
+        if (Boolean.getBoolean(ClassDataSharing.TRAINING)) {
+            train(initializer, args);
+            return;
+        }
         parseBasicOptions(args);
         if (initializer != null) {
             initializer.initialize(command);
@@ -163,18 +267,78 @@ public class CliHelper<T extends CliCommand<?>> {
         writeConfig();
     }
 
+    /**
+     * Runs through everything the application does at startup, without executing any command, so that the classes
+     * it loads can be recorded in a {@link ClassDataSharing class data sharing archive}. This loads the configuration,
+     * builds the whole command tree, parses the arguments and renders the usage help of every command (to nowhere).
+     * It's called instead of running the command when the {@value ClassDataSharing#TRAINING} system property is true.
+     *
+     * @param initializer command initializer or null
+     * @param args        Arguments
+     */
+    public void train(CommandClassInitializer<T> initializer, String... args) {
+        parseBasicOptions(args);
+        if (initializer != null) {
+            initializer.initialize(command);
+        }
+        loadConfigFile();
+        init(commandLine, profileConfig, "");
+        registerConverters(commandLine);
+        commandLine.refreshDefaultValues();
+        try {
+            commandLine.parse(args);
+        } catch (CommandLine.ParameterException e) {
+            // the training arguments don't need to be valid
+        }
+        train(commandLine);
+    }
+
+    private void train(CommandLine commandLine) {
+        try {
+            new CommandLine.Help(commandLine.getCommandSpec(), CommandLine.Help.defaultColorScheme(getAnsi())).writeTo(new StringBuilder());
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringBuilder doesn't throw IOException
+        }
+        for (CommandLine subCmdLine : commandLine.getSubcommands().values()) {
+            train(subCmdLine);
+        }
+    }
+
     public void parseAndExecute(String... args) throws CommandLine.ExecutionException {
-        init(commandLine, profileConfig);
+        CliHelper<?> previous = running.get();
+        running.set(this);
+        try {
+            doParseAndExecute(args);
+        } finally {
+            if (previous != null) {
+                running.set(previous);
+            } else {
+                running.remove();
+            }
+        }
+    }
+
+    private void doParseAndExecute(String... args) throws CommandLine.ExecutionException {
+        init(commandLine, profileConfig, "");
+        registerConverters(commandLine);
         commandLine.refreshDefaultValues();
         List<CommandLine> parsedCmdLines = commandLine.parse(args);
-        if (CommandLine.printHelpIfRequested(parsedCmdLines, System.out, ansi)) {
-            return;
-        }
-        CommandLine last = parsedCmdLines.get(parsedCmdLines.size() - 1);
+        CommandOutput out = new CommandOutput(output != null ? output : System.out);
+        commandOutput = out;
+        activeOutputs.add(out);
         try {
-            ((CliCommand) last.getCommand()).execute();
-        } catch (Exception e) {
-            throw new CommandLine.ExecutionException(last, "Error executing " + last.getCommandName() + ": " + e.getMessage(), e);
+            if (printHelpIfRequested(parsedCmdLines)) {
+                return;
+            }
+            CommandLine last = parsedCmdLines.get(parsedCmdLines.size() - 1);
+            try {
+                ((CliCommand) last.getCommand()).execute();
+            } catch (Exception e) {
+                throw new CommandLine.ExecutionException(last, "Error executing " + last.getCommandName() + ": " + e.getMessage(), e);
+            }
+        } finally {
+            activeOutputs.remove(out);
+            out.flush();
         }
         if (saveConfig) {
             for (CommandLine parsedCommand : parsedCmdLines) {
@@ -197,20 +361,126 @@ public class CliHelper<T extends CliCommand<?>> {
     }
 
     @SuppressWarnings("unchecked")
-    private void init(@NotNull CommandLine commandLine, @NotNull ObjectNode cfg) {
+    private void init(@NotNull CommandLine commandLine, @NotNull ObjectNode cfg, @NotNull String cfgPath) {
         try {
             CliCommand<?> cmd = commandLine.getCommand();
             loadExtraSubCommands(commandLine);
-            cmd.loadConfig(cfg);
+            cmd.bindConfig(cfg, getResolvedConfig(cfg, cfgPath), Collections.emptySet());
             cmd.init(this, commandLine, commandLine.getParent() != null ? commandLine.getParent().getCommand() : null);
             for (CommandLine subCmdLine : commandLine.getSubcommands().values()) {
-                init(subCmdLine, getSubCommandConfigNode(cfg, subCmdLine.getCommandName()));
+                String subCmdName = subCmdLine.getCommandName();
+                init(subCmdLine, getSubCommandConfigNode(cfg, subCmdName), LayeredConfig.child(LayeredConfig.child(cfgPath, SUBCOMMANDS), subCmdName));
+            }
+        } catch (Exception e) {
+            throw new UserDisplayableException("Error loading config: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Registers the converters for ktcli specific option types, on a command and all its (currently loaded) subcommands.
+     */
+    private static void registerConverters(CommandLine commandLine) {
+        commandLine.registerConverter(Secret.class, Secret::valueOf);
+    }
+
+    /**
+     * Returns the configuration for a command, merged from all configuration layers and inherited profiles.
+     */
+    private ObjectNode getResolvedConfig(@NotNull ObjectNode cfg, @NotNull String cfgPath) {
+        if (resolvedProfileConfig == null) {
+            return cfg;
+        }
+        return LayeredConfig.getObject(resolvedProfileConfig, cfgPath, SUBCOMMANDS);
+    }
+
+    /**
+     * Reloads the configuration. Only the commands whose configuration changed are re-loaded, and have their
+     * {@link CliCommand#configChanged()} method called. Values of options that were set on the command line are kept.
+     */
+    public void reloadConfig() {
+        reloadConfig(getConfigFiles());
+    }
+
+    /**
+     * Reloads the configuration, only re-reading the specified files.
+     */
+    synchronized void reloadConfig(@NotNull Collection<File> changedFiles) {
+        for (File file : changedFiles) {
+            ConfigLayer.invalidate(file);
+        }
+        loadConfigFile();
+        rebind(commandLine, profileConfig, "");
+    }
+
+    private List<File> getConfigFiles() {
+        List<File> files = new ArrayList<>();
+        for (File file : new File[]{systemConfigFile, configFile, projectConfigFile}) {
+            if (file != null) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private void rebind(@NotNull CommandLine commandLine, @NotNull ObjectNode cfg, @NotNull String cfgPath) {
+        try {
+            CliCommand<?> cmd = commandLine.getCommand();
+            ObjectNode resolved = getResolvedConfig(cfg, cfgPath);
+            boolean changed;
+            synchronized (cmd) {
+                changed = !sameConfig(cmd.getBoundConfig(), resolved);
+                if (changed) {
+                    cmd.bindConfig(cfg, resolved, cmd.getCommandLineProperties());
+                } else {
+                    cmd.setConfigNode(cfg);
+                }
+            }
+            if (changed) {
+                cmd.configChanged();
+            }
+            for (CommandLine subCmdLine : commandLine.getSubcommands().values()) {
+                String subCmdName = subCmdLine.getCommandName();
+                rebind(subCmdLine, getSubCommandConfigNode(cfg, subCmdName), LayeredConfig.child(LayeredConfig.child(cfgPath, SUBCOMMANDS), subCmdName));
             }
         } catch (Exception e) {
             throw new UserDisplayableException("Error loading config: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Compares the configuration of two commands, ignoring their subcommands configuration.
+     */
+    private static boolean sameConfig(ObjectNode cfg1, ObjectNode cfg2) {
+        if (cfg1 == null || cfg2 == null) {
+            return cfg1 == cfg2;
+        }
+        int size1 = cfg1.size() - (cfg1.has(SUBCOMMANDS) ? 1 : 0);
+        int size2 = cfg2.size() - (cfg2.has(SUBCOMMANDS) ? 1 : 0);
+        if (size1 != size2) {
+            return false;
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = cfg1.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (!field.getKey().equals(SUBCOMMANDS) && !field.getValue().equals(cfg2.get(field.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts watching the configuration files, and {@link #reloadConfig() reloads} the configuration when they change.
+     * This is intended for long running commands, and must be called after the configuration has been loaded.
+     *
+     * @param debounceMillis how long to wait for further changes before reloading the configuration
+     * @return watcher, which must be closed to stop watching the files
+     * @throws IOException if an error occurs while setting up the file watches
+     */
+    public ConfigWatcher watchConfig(long debounceMillis) throws IOException {
+        return new ConfigWatcher(this, getConfigFiles(), debounceMillis);
+    }
+
     private void loadExtraSubCommands(@NotNull CommandLine commandLine) {
         CliCommand<?> cmd = commandLine.getCommand();
         List<CliCommand<?>> subModules = cmd.getExtraSubCommands();
@@ -263,18 +533,26 @@ public class CliHelper<T extends CliCommand<?>> {
     }
 
     public static String readLine() {
-        if (console != null) {
-            return console.readLine();
-        } else {
-            return scanner.nextLine();
+        try {
+            String line = CommandLine.Help.Terminal.current().readLine();
+            if (line == null) {
+                throw new NoSuchElementException("No line found");
+            }
+            return line;
+        } catch (IOException e) {
+            throw new UnexpectedException(e);
         }
     }
 
     public static String readPassword() {
-        if (console != null) {
-            return new String(console.readPassword());
-        } else {
-            return scanner.nextLine();
+        try {
+            char[] password = CommandLine.Help.Terminal.current().readPassword();
+            if (password == null) {
+                throw new NoSuchElementException("No line found");
+            }
+            return new String(password);
+        } catch (IOException e) {
+            throw new UnexpectedException(e);
         }
     }
 
@@ -282,58 +560,112 @@ public class CliHelper<T extends CliCommand<?>> {
         return confirm(txt, null);
     }
 
+    /**
+     * Asks a yes/no question, using the {@link #getPrompts() prompts} of the command running on the current thread,
+     * or the default ones (see {@link Prompts#confirm(String, Boolean)}).
+     *
+     * @param txt          question
+     * @param defaultValue answer if none is entered, or null to require one
+     * @return answer
+     */
     public static boolean confirm(String txt, Boolean defaultValue) {
-        for (; ; ) {
-            String defValStr = null;
-            if (defaultValue != null && defaultValue) {
-                defValStr = "yes";
-            } else if (defaultValue != null && !defaultValue) {
-                defValStr = "no";
-            }
-            String val = read(txt, defValStr);
-            if (val != null) {
-                val = val.trim().toLowerCase();
-                switch (val) {
-                    case "yes":
-                    case "y":
-                    case "true":
-                        return true;
-                    case "no":
-                    case "n":
-                    case "false":
-                        return false;
-                    default:
-                        System.out.println("Response must be either: yes, no, n, y, true, false");
-                }
-            }
-        }
+        return currentPrompts().confirm(txt, defaultValue);
     }
 
     public static String read(String txt, String defVal) {
         return read(txt, defVal, false);
     }
 
+    /**
+     * Asks for a value, using the {@link #getPrompts() prompts} of the command running on the current thread, or the
+     * default ones (see {@link Prompts#read(String, String, boolean)}).
+     *
+     * @param txt      prompt
+     * @param defVal   answer if none is entered, or null to require one
+     * @param password whether the value is a password, which isn't echoed
+     * @return answer
+     * @throws UserDisplayableException if an answer is required but input is disabled, or none was entered in time
+     * @throws NoSuchElementException   if the end of the input was reached
+     */
     public static String read(String txt, String defVal, boolean password) {
-        for (; ; ) {
-            System.out.print(txt);
-            if (defVal != null) {
-                System.out.print(" [" + (password ? "********" : defVal) + "]");
-            }
-            System.out.print(": ");
-            System.out.flush();
-            String val = password ? readPassword() : readLine();
-            if (val != null) {
-                val = val.trim();
-                if (!val.isEmpty()) {
-                    return val;
-                }
-                if (defVal != null) {
-                    return defVal;
-                }
-            }
+        return currentPrompts().read(txt, defVal, password);
+    }
+
+    private static Prompts currentPrompts() {
+        CliHelper<?> cliHelper = running.get();
+        return cliHelper != null ? cliHelper.getPrompts() : defaultPrompts;
+    }
+
+    /**
+     * Flushes the output of running commands, so that it's visible before a prompt.
+     */
+    static void flushActiveOutputs() {
+        for (CommandOutput out : activeOutputs) {
+            out.flush();
         }
     }
 
+    public static List<AnswerSource> getPromptAnswers() {
+        return defaultPrompts.getAnswers();
+    }
+
+    /**
+     * Sets the default sources prompts are answered from, in order of precedence. Prompts of a {@link CliHelper} use
+     * the sources of its {@code --answers} option and of the {@value #ANSWERS} of its active profile first.
+     *
+     * @param sources answer sources
+     */
+    public static synchronized void setPromptAnswers(@NotNull List<AnswerSource> sources) {
+        Prompts defaults = defaultPrompts;
+        defaultPrompts = new Prompts(sources, defaults.isAssumeYes(), defaults.isNoInput(), defaults.getTimeout());
+    }
+
+    public static boolean isAssumeYes() {
+        return defaultPrompts.isAssumeYes();
+    }
+
+    /**
+     * Sets whether confirmations without an answer from the answer sources are answered yes by default, which a
+     * {@link CliHelper} also does with the {@code --yes} option.
+     *
+     * @param assumeYes true to answer yes
+     */
+    public static synchronized void setAssumeYes(boolean assumeYes) {
+        Prompts defaults = defaultPrompts;
+        defaultPrompts = new Prompts(defaults.getAnswers(), assumeYes, defaults.isNoInput(), defaults.getTimeout());
+    }
+
+    public static boolean isNoInput() {
+        return defaultPrompts.isNoInput();
+    }
+
+    /**
+     * Sets whether prompts never read from the terminal by default, which a {@link CliHelper} also does with the
+     * {@code --no-input} option. Prompts without an answer from the answer sources then use their default value, or
+     * fail.
+     *
+     * @param noInput true to disable input
+     */
+    public static synchronized void setNoInput(boolean noInput) {
+        Prompts defaults = defaultPrompts;
+        defaultPrompts = new Prompts(defaults.getAnswers(), defaults.isAssumeYes(), noInput, defaults.getTimeout());
+    }
+
+    public static long getPromptTimeout() {
+        return defaultPrompts.getTimeout();
+    }
+
+    /**
+     * Sets how long prompts wait for an answer by default, which a {@link CliHelper} overrides with the
+     * {@code --prompt-timeout} option.
+     *
+     * @param timeoutMillis timeout in milliseconds, or 0 to wait forever
+     */
+    public static synchronized void setPromptTimeout(long timeoutMillis) {
+        Prompts defaults = defaultPrompts;
+        defaultPrompts = new Prompts(defaults.getAnswers(), defaults.isAssumeYes(), defaults.isNoInput(), timeoutMillis);
+    }
+
     /**
      * Parses basic options to get config file, and sets up logging based on appropriate flags
      *
@@ -343,11 +675,19 @@ public class CliHelper<T extends CliCommand<?>> {
         CliCommand<?> cmd = commandCreator.create();
         CommandLine cmdLine = new CommandLine(cmd);
         loadExtraSubCommands(cmdLine);
+        registerConverters(cmdLine);
         cmdLine.setIgnoreRequired(true);
         CliHelper<T> cliHelper = new CliHelper<>();
         cmdLine.addMixin("cliHelper", cliHelper);
         cmdLine.parse(args);
         setupLogging(cliHelper);
+        if (cliHelper.profile != null) {
+            profile = cliHelper.profile;
+        }
+        yes = cliHelper.yes;
+        noInput = cliHelper.noInput;
+        answersFile = cliHelper.answersFile;
+        promptTimeoutSeconds = cliHelper.promptTimeoutSeconds;
         if (cliHelper.configFile != null) {
             configFile = cliHelper.configFile;
         } else {
@@ -357,12 +697,44 @@ public class CliHelper<T extends CliCommand<?>> {
             }
             configFile = new File(System.getProperty("user.home") + File.separator + "." + commandName + ".cfg");
         }
+        String configName = cmdLine.getCommandName();
+        if (!configName.equals("<main class>")) {
+            if (systemConfigFile == null) {
+                String programData = System.getenv("ProgramData");
+                File systemConfigDir = programData != null ? new File(programData) : new File(File.separator + "etc");
+                systemConfigFile = new File(systemConfigDir, configName + ".cfg");
+            }
+            if (projectConfigFile == null) {
+                projectConfigFile = findProjectConfigFile("." + configName + ".cfg");
+            }
+            if (environmentPrefix == null) {
+                environmentPrefix = configName.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]", "_") + "_CFG_";
+            }
+        }
         command = (T) commandCreator.create();
         commandLine = new CommandLine(command);
         commandLine.addMixin("cliHelper", this);
         return cliHelper;
     }
 
+    /**
+     * Searches for a project configuration file in the current directory and its parents.
+     */
+    private File findProjectConfigFile(String fileName) {
+        File dir = new File(System.getProperty("user.dir")).getAbsoluteFile();
+        // the home directory contains the default user configuration file, which isn't a project configuration file
+        File home = new File(System.getProperty("user.home")).getAbsoluteFile();
+        while (dir != null && !dir.equals(home)) {
+            File file = new File(dir, fileName);
+            if (file.isFile()) {
+                // the user configuration file shouldn't be loaded twice
+                return file.getAbsoluteFile().equals(configFile.getAbsoluteFile()) ? null : file;
+            }
+            dir = dir.getParentFile();
+        }
+        return null;
+    }
+
     public boolean isQuiet() {
         return quiet;
     }
@@ -395,6 +767,34 @@ public class CliHelper<T extends CliCommand<?>> {
         this.configFile = configFile;
     }
 
+    public File getSystemConfigFile() {
+        return systemConfigFile;
+    }
+
+    public void setSystemConfigFile(File systemConfigFile) {
+        this.systemConfigFile = systemConfigFile;
+    }
+
+    public File getProjectConfigFile() {
+        return projectConfigFile;
+    }
+
+    public void setProjectConfigFile(File projectConfigFile) {
+        this.projectConfigFile = projectConfigFile;
+    }
+
+    public String getEnvironmentPrefix() {
+        return environmentPrefix;
+    }
+
+    public void setEnvironmentPrefix(String environmentPrefix) {
+        this.environmentPrefix = environmentPrefix;
+    }
+
+    public LayeredConfig getLayeredConfig() {
+        return layeredConfig;
+    }
+
     public boolean isSaveConfig() {
         return saveConfig;
     }
@@ -416,11 +816,155 @@ public class CliHelper<T extends CliCommand<?>> {
     }
 
     public static ObjectMapper getObjectMapper() {
-        return objectMapper;
+        return ObjectMapperHolder.OBJECT_MAPPER;
+    }
+
+    /**
+     * Creates the object mapper the first time it's used, since commands without configuration don't need it.
+     */
+    private static class ObjectMapperHolder {
+        private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+        static {
+            OBJECT_MAPPER.setDefaultPrettyPrinter(new DefaultPrettyPrinter());
+            OBJECT_MAPPER.disable(MapperFeature.AUTO_DETECT_CREATORS,
+                    MapperFeature.AUTO_DETECT_FIELDS,
+                    MapperFeature.AUTO_DETECT_GETTERS,
+                    MapperFeature.AUTO_DETECT_IS_GETTERS);
+            OBJECT_MAPPER.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+            OBJECT_MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        }
     }
 
     public <T extends CliCommand> void printUsage(CliCommand command) {
-        command.getCommandLine().usage(System.out, ansi);
+        printUsage(command.getCommandLine());
+    }
+
+    private void printUsage(CommandLine commandLine) {
+        CommandOutput out = getCommandOutput();
+        PrintWriter writer = out.getWriter();
+        if (helpCache != null) {
+            writer.print(helpCache.getUsage(commandLine, getAnsi()));
+        } else {
+            try {
+                new CommandLine.Help(commandLine.getCommandSpec(), CommandLine.Help.defaultColorScheme(getAnsi())).writeTo(writer);
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // PrintWriter doesn't throw IOException
+            }
+        }
+        if (!activeOutputs.contains(out)) {
+            // not printed by a running invocation, which would flush it when it completes
+            out.flush();
+        }
+    }
+
+    private boolean printHelpIfRequested(List<CommandLine> parsedCmdLines) {
+        for (CommandLine parsed : parsedCmdLines) {
+            if (parsed.isUsageHelpRequested()) {
+                printUsage(parsed);
+                return true;
+            } else if (parsed.isVersionHelpRequested()) {
+                break;
+            }
+        }
+        // only detect the terminal when help is printed
+        if (!CommandLine.isHelpRequested(parsedCmdLines)) {
+            return false;
+        }
+        CommandOutput out = getCommandOutput();
+        try {
+            PrintStream printStream = new PrintStream(out.getStream(), false, out.getCharset().name());
+            boolean printed = CommandLine.printHelpIfRequested(parsedCmdLines, printStream, getAnsi());
+            printStream.flush();
+            return printed;
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e); // the charset exists
+        }
+    }
+
+    public OutputStream getOutput() {
+        return output;
+    }
+
+    /**
+     * Sets the stream the output of commands is written to, instead of {@code System.out}, for example to capture it
+     * when commands are run in a daemon or from other code.
+     *
+     * @param output output stream, or null to use {@code System.out}
+     */
+    public void setOutput(OutputStream output) {
+        this.output = output;
+    }
+
+    /**
+     * Returns the buffered output of the command invocation that is running (or of the last one), which is flushed when
+     * the invocation completes. Output written after that (for example by threads that outlive the command) must be
+     * flushed explicitly.
+     *
+     * @return command output
+     * @see CliCommand#getOutput()
+     */
+    @NotNull
+    public CommandOutput getCommandOutput() {
+        CommandOutput out = commandOutput;
+        if (out == null) {
+            synchronized (this) {
+                if (commandOutput == null) {
+                    commandOutput = new CommandOutput(output != null ? output : System.out);
+                }
+                out = commandOutput;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns whether usage help uses ANSI escape codes. Unless set, this is {@link CommandLine.Help.Ansi#AUTO} when the
+     * {@link CommandLine.Help.Terminal#current() current terminal} is interactive and {@link CommandLine.Help.Ansi#OFF}
+     * otherwise, which is only detected the first time it is needed.
+     *
+     * @return ansi mode
+     */
+    public CommandLine.Help.Ansi getAnsi() {
+        if (ansi == null) {
+            ansi = CommandLine.Help.Terminal.current().isTTY() ? CommandLine.Help.Ansi.AUTO : CommandLine.Help.Ansi.OFF;
+        }
+        return ansi;
+    }
+
+    public void setAnsi(CommandLine.Help.Ansi ansi) {
+        this.ansi = ansi;
+    }
+
+    public HelpCache getHelpCache() {
+        return helpCache;
+    }
+
+    /**
+     * Sets the cache used to print usage help. By default usage help isn't cached, and is rendered every time it is
+     * printed.
+     *
+     * @param helpCache help cache or null to disable caching
+     */
+    public void setHelpCache(HelpCache helpCache) {
+        this.helpCache = helpCache;
+    }
+
+    /**
+     * Returns the file the {@link CompletionIndex completion index} is written to. Unless set, this is the
+     * {@link #getConfigFile() user configuration file} with a {@code .completion} suffix.
+     *
+     * @return completion index file
+     */
+    public File getCompletionIndexFile() {
+        if (completionIndexFile == null && configFile != null) {
+            return new File(configFile.getPath() + ".completion");
+        }
+        return completionIndexFile;
+    }
+
+    public void setCompletionIndexFile(File completionIndexFile) {
+        this.completionIndexFile = completionIndexFile;
     }
 
     private static ObjectNode getSubCommandConfigNode(@NotNull ObjectNode cfg, String subCmdName) {
@@ -0,0 +1,217 @@
+package com.kloudtek.ktcli;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Buffered output of a command invocation, which can be written to as text ({@link #getWriter()}) or binary data
+ * ({@link #getStream()}), concurrently by any number of threads.
+ * <p>
+ * Unlike {@code System.out}, which is flushed at every line, output is only written to its target when the buffer
+ * reaches its size threshold, when {@link #flush()} is called, and when the invocation completes. Writes from all
+ * threads (text and binary) are serialized with a single lock, and each call (like a {@code println}) is written as a
+ * whole.
+ *
+ * @see CliCommand#getOutput()
+ * @see CliHelper#setOutput(OutputStream)
+ */
+public class CommandOutput implements Flushable, Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private final OutputStream target;
+    private final Charset charset;
+    private final TextWriter textWriter = new TextWriter();
+    private final PrintWriter writer = new PrintWriter(textWriter, false);
+    private final OutputStream stream = new BinaryStream();
+    private final byte[] buffer;
+    private int count;
+    private char highSurrogate;
+    private boolean closed;
+
+    /**
+     * Creates a command output using the default charset and buffer size.
+     *
+     * @param target stream output is written to (it isn't closed by {@link #close()})
+     */
+    public CommandOutput(@NotNull OutputStream target) {
+        this(target, Charset.defaultCharset(), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a command output.
+     *
+     * @param target     stream output is written to (it isn't closed by {@link #close()})
+     * @param charset    charset text is encoded with
+     * @param bufferSize size of the buffer, which is written to the target when full
+     */
+    public CommandOutput(@NotNull OutputStream target, @NotNull Charset charset, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        this.target = target;
+        this.charset = charset;
+        buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Returns the writer for text output. Errors are reported by {@link PrintWriter#checkError()}.
+     *
+     * @return writer
+     */
+    @NotNull
+    public PrintWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Returns the stream for binary output.
+     *
+     * @return stream
+     */
+    @NotNull
+    public OutputStream getStream() {
+        return stream;
+    }
+
+    @NotNull
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Writes buffered output to the target, and flushes it.
+     *
+     * @throws UncheckedIOException if the output couldn't be written
+     */
+    @Override
+    public void flush() {
+        try {
+            textWriter.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flushes the output. Writing to it afterwards fails.
+     */
+    @Override
+    public void close() {
+        try {
+            textWriter.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Command output is closed");
+        }
+        if (len > buffer.length - count) {
+            flushBuffer();
+            if (len >= buffer.length) {
+                target.write(b, off, len);
+                target.flush();
+                return;
+            }
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+        if (count == buffer.length) {
+            flushBuffer();
+            target.flush();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            target.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void writeText(String text) throws IOException {
+        if (highSurrogate != 0) {
+            // the first half of a surrogate pair was written on its own
+            text = highSurrogate + text;
+            highSurrogate = 0;
+        }
+        if (!text.isEmpty() && Character.isHighSurrogate(text.charAt(text.length() - 1))) {
+            highSurrogate = text.charAt(text.length() - 1);
+            text = text.substring(0, text.length() - 1);
+        }
+        byte[] bytes = text.getBytes(charset);
+        write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Encodes text into the buffer. It's also the lock of all output.
+     */
+    private class TextWriter extends Writer {
+        @Override
+        public void write(@NotNull char[] cbuf, int off, int len) throws IOException {
+            synchronized (this) {
+                writeText(new String(cbuf, off, len));
+            }
+        }
+
+        @Override
+        public void write(@NotNull String str, int off, int len) throws IOException {
+            synchronized (this) {
+                writeText(str.substring(off, off + len));
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (this) {
+                flushBuffer();
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (this) {
+                if (!closed) {
+                    flush();
+                    closed = true;
+                }
+            }
+        }
+    }
+
+    private class BinaryStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            synchronized (textWriter) {
+                CommandOutput.this.write(new byte[]{(byte) b}, 0, 1);
+            }
+        }
+
+        @Override
+        public void write(@NotNull byte[] b, int off, int len) throws IOException {
+            synchronized (textWriter) {
+                CommandOutput.this.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            textWriter.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            textWriter.close();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.kloudtek.ktcli;
+
+import org.jetbrains.annotations.NotNull;
+import picocli.AutoComplete;
+import picocli.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Values that shell completion should offer for options, which can't be known when the completion script is generated
+ * (like profile names, or values that commands contribute with {@link CliCommand#getCompletionValues()}).
+ * <p>
+ * The index is a small text file, with one line per option: the path of subcommand names from the top-level command
+ * (separated by spaces, empty for the top-level command), the option name, and the space-separated values, separated
+ * by {@code |}. Completion scripts generated with {@link AutoComplete#bash(String, CommandLine, String, Appendable)}
+ * look values up in that file, so completion never needs to start a JVM. {@link CliHelper} refreshes the index every
+ * time it saves the configuration.
+ */
+public class CompletionIndex {
+    public static final char SEPARATOR = '|';
+    private final Map<String, Map<String, Set<String>>> entries = new TreeMap<>();
+
+    /**
+     * Creates the index of a command and its subcommands.
+     *
+     * @param commandLine top-level command
+     * @param profiles    names of the configuration profiles, which are offered for the {@code --profile} option
+     * @return index
+     */
+    @NotNull
+    public static CompletionIndex build(@NotNull CommandLine commandLine, @NotNull Collection<String> profiles) {
+        CompletionIndex index = new CompletionIndex();
+        CommandLine.OptionSpec profileOption = commandLine.getCommandSpec().optionsMap().get("--profile");
+        if (profileOption != null) {
+            for (String name : profileOption.names()) {
+                index.add("", name, profiles);
+            }
+        }
+        index.addCommand("", commandLine);
+        return index;
+    }
+
+    private void addCommand(String path, CommandLine commandLine) {
+        Object command = commandLine.getCommand();
+        if (command instanceof CliCommand<?>) {
+            for (Map.Entry<String, ? extends Collection<String>> entry : ((CliCommand<?>) command).getCompletionValues().entrySet()) {
+                add(path, entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<String, CommandLine> entry : commandLine.getSubcommands().entrySet()) {
+            addCommand(path.isEmpty() ? entry.getKey() : path + " " + entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Adds values for an option. Values containing whitespace or {@code |} can't be completed, and are ignored.
+     *
+     * @param commandPath subcommand names from the top-level command, separated by spaces
+     * @param option      option name
+     * @param values      values
+     * @return this index
+     */
+    public CompletionIndex add(@NotNull String commandPath, @NotNull String option, @NotNull Collection<String> values) {
+        for (String value : values) {
+            if (value != null && !value.isEmpty() && value.indexOf(SEPARATOR) < 0 && !value.matches(".*\\s.*")) {
+                entries.computeIfAbsent(commandPath, k -> new TreeMap<>()).computeIfAbsent(option, k -> new TreeSet<>()).add(value);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the values of an option.
+     *
+     * @param commandPath subcommand names from the top-level command, separated by spaces
+     * @param option      option name
+     * @return values (empty if there are none)
+     */
+    @NotNull
+    public Set<String> get(@NotNull String commandPath, @NotNull String option) {
+        Set<String> values = entries.getOrDefault(commandPath, Collections.emptyMap()).get(option);
+        return values != null ? Collections.unmodifiableSet(values) : Collections.emptySet();
+    }
+
+    /**
+     * Reads an index file.
+     *
+     * @param file index file
+     * @return index (empty if the file doesn't exist)
+     * @throws IOException if the file couldn't be read
+     */
+    @NotNull
+    public static CompletionIndex read(@NotNull File file) throws IOException {
+        CompletionIndex index = new CompletionIndex();
+        if (file.isFile()) {
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    int optionStart = line.indexOf(SEPARATOR);
+                    int valuesStart = optionStart < 0 ? -1 : line.indexOf(SEPARATOR, optionStart + 1);
+                    if (valuesStart > 0) {
+                        index.add(line.substring(0, optionStart), line.substring(optionStart + 1, valuesStart),
+                                Arrays.asList(line.substring(valuesStart + 1).split(" ")));
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes this index to a file. The file is replaced atomically, so that completion never reads a partial index.
+     *
+     * @param file index file
+     * @throws IOException if the file couldn't be written
+     */
+    public void write(@NotNull File file) throws IOException {
+        Path target = file.getAbsoluteFile().toPath();
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Map<String, Set<String>>> command : entries.entrySet()) {
+                    for (Map.Entry<String, Set<String>> option : command.getValue().entrySet()) {
+                        writer.append(command.getKey()).append(SEPARATOR).append(option.getKey()).append(SEPARATOR)
+                                .append(String.join(" ", option.getValue())).append('\n');
+                    }
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.kloudtek.ktcli;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the configuration files used by a {@link CliHelper}, and reloads the configuration when they change.
+ * Changes are debounced, so that an editor writing a file in several steps only triggers a single reload.
+ *
+ * @see CliHelper#watchConfig(long)
+ */
+public class ConfigWatcher implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigWatcher.class);
+    private final CliHelper<?> cliHelper;
+    private final long debounceMillis;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+    private final Set<Path> watchedFiles = new HashSet<>();
+    private final Thread thread;
+
+    ConfigWatcher(@NotNull CliHelper<?> cliHelper, @NotNull List<File> files, long debounceMillis) throws IOException {
+        this.cliHelper = cliHelper;
+        this.debounceMillis = debounceMillis;
+        watchService = FileSystems.getDefault().newWatchService();
+        for (File file : files) {
+            Path path = file.toPath().toAbsolutePath();
+            Path dir = path.getParent();
+            if (dir != null && Files.isDirectory(dir)) {
+                watchedFiles.add(path);
+                if (!watchedDirs.containsValue(dir)) {
+                    watchedDirs.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+                }
+            }
+        }
+        thread = new Thread(this::run, "ktcli-config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            for (; ; ) {
+                Set<Path> changed = new HashSet<>();
+                collectChanges(watchService.take(), changed);
+                // wait until no more changes happen for the debounce period
+                for (WatchKey key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS); key != null;
+                     key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) {
+                    collectChanges(key, changed);
+                }
+                if (!changed.isEmpty()) {
+                    reload(changed);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // watcher closed
+        }
+    }
+
+    private void collectChanges(WatchKey key, Set<Path> changed) {
+        Path dir = watchedDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // events were lost, any of the files may have changed
+                changed.addAll(watchedFiles);
+            } else if (dir != null) {
+                Path path = dir.resolve((Path) event.context());
+                if (watchedFiles.contains(path)) {
+                    changed.add(path);
+                }
+            }
+        }
+        key.reset();
+    }
+
+    private void reload(Set<Path> changed) {
+        List<File> changedFiles = new ArrayList<>();
+        for (Path path : changed) {
+            changedFiles.add(path.toFile());
+        }
+        try {
+            logger.debug("Reloading configuration after changes to {}", changed);
+            cliHelper.reloadConfig(changedFiles);
+        } catch (Exception e) {
+            logger.warn("Unable to reload configuration: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stops watching the configuration files.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+}
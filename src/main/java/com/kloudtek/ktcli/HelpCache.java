@@ -0,0 +1,169 @@
+package com.kloudtek.ktcli;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Caches rendered usage help on disk, so that printing the help of a command only requires reading a file.
+ * <p>
+ * There is one file per command path and Ansi mode, which starts with a fingerprint of everything the help is rendered
+ * from: the command's {@link CommandLine.CommandSpec} (including current default values, which may come from the
+ * configuration), its subcommands' names and headers, the color settings and the usage help width. When the fingerprint
+ * doesn't match, the help is rendered again and the file replaced, so the cache never returns stale help and doesn't
+ * grow over time.
+ *
+ * @see CliHelper#setHelpCache(HelpCache)
+ */
+public class HelpCache {
+    private static final Logger logger = LoggerFactory.getLogger(HelpCache.class);
+    private static final String FORMAT = "1";
+    private final File directory;
+
+    /**
+     * Creates a help cache.
+     *
+     * @param directory directory to store rendered help in (created when needed)
+     */
+    public HelpCache(@NotNull File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Prints the usage help of a command, from the cache if possible.
+     *
+     * @param commandLine command
+     * @param ansi        whether to use ANSI escape codes
+     * @param out         stream to print to
+     */
+    public void printUsage(@NotNull CommandLine commandLine, @NotNull CommandLine.Help.Ansi ansi, @NotNull PrintStream out) {
+        out.print(getUsage(commandLine, ansi));
+    }
+
+    /**
+     * Returns the usage help of a command, from the cache if possible.
+     *
+     * @param commandLine command
+     * @param ansi        whether to use ANSI escape codes
+     * @return usage help, as printed by {@link CommandLine#usage(PrintStream, CommandLine.Help.Ansi)}
+     */
+    @NotNull
+    public String getUsage(@NotNull CommandLine commandLine, @NotNull CommandLine.Help.Ansi ansi) {
+        String path = getCommandPath(commandLine);
+        boolean ansiEnabled = ansi.enabled();
+        String fingerprint = fingerprint(path, commandLine.getCommandSpec(), ansiEnabled);
+        File file = new File(directory, path.replaceAll("[^A-Za-z0-9._-]", "_") + (ansiEnabled ? "-ansi" : "") + ".txt");
+        if (file.isFile()) {
+            try {
+                String cached = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+                int idx = cached.indexOf('\n');
+                if (idx > 0 && cached.substring(0, idx).equals(fingerprint)) {
+                    return cached.substring(idx + 1);
+                }
+            } catch (IOException e) {
+                logger.debug("Unable to read cached help " + file.getPath() + ": " + e.getMessage(), e);
+            }
+        }
+        StringBuilder usage = new StringBuilder();
+        try {
+            new CommandLine.Help(commandLine.getCommandSpec(), CommandLine.Help.defaultColorScheme(ansi)).writeTo(usage);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringBuilder doesn't throw IOException
+        }
+        String result = usage.toString();
+        write(file, fingerprint + "\n" + result);
+        return result;
+    }
+
+    private void write(File file, String content) {
+        try {
+            Files.createDirectories(directory.toPath());
+            Path tmp = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+            try {
+                Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            logger.debug("Unable to cache help in " + file.getPath() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String getCommandPath(CommandLine commandLine) {
+        StringBuilder path = new StringBuilder(commandLine.getCommandName());
+        for (CommandLine parent = commandLine.getParent(); parent != null; parent = parent.getParent()) {
+            path.insert(0, ' ').insert(0, parent.getCommandName());
+        }
+        return path.toString();
+    }
+
+    /**
+     * Computes the fingerprint of everything that the usage help of a command is rendered from.
+     */
+    @SuppressWarnings("deprecation") // the deprecated help attribute still changes how options are sorted and shown
+    static String fingerprint(String path, CommandLine.CommandSpec spec, boolean ansiEnabled) {
+        StringBuilder buf = new StringBuilder();
+        append(buf, FORMAT, CommandLine.VERSION, path, ansiEnabled, System.lineSeparator(),
+                CommandLine.Help.usageHelpWidth(),
+                System.getProperty("picocli.color.commands"), System.getProperty("picocli.color.options"),
+                System.getProperty("picocli.color.parameters"), System.getProperty("picocli.color.optionParams"));
+        append(buf, spec.name(), spec.separator(), spec.headerHeading(), spec.header(), spec.synopsisHeading(),
+                spec.abbreviateSynopsis(), spec.customSynopsis(), spec.descriptionHeading(), spec.description(),
+                spec.parameterListHeading(), spec.optionListHeading(), spec.sortOptions(), spec.requiredOptionMarker(),
+                spec.showDefaultValues(), spec.commandListHeading(), spec.footerHeading(), spec.footer());
+        for (CommandLine.OptionSpec option : spec.options()) {
+            append(buf, "option", option.names(), option.help(), option.usageHelp(), option.versionHelp());
+            appendArg(buf, option);
+        }
+        for (CommandLine.PositionalParamSpec param : spec.positionalParameters()) {
+            append(buf, "param", param.index());
+            appendArg(buf, param);
+        }
+        for (Map.Entry<String, CommandLine> entry : spec.subcommands().entrySet()) {
+            CommandLine.CommandSpec subcommand = entry.getValue().getCommandSpec();
+            append(buf, "subcommand", entry.getKey(), subcommand.header(), subcommand.description());
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(buf.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 is always available
+        }
+    }
+
+    private static void appendArg(StringBuilder buf, CommandLine.ArgSpec<?> arg) {
+        append(buf, arg.type() != null ? arg.type().getName() : null, arg.arity(), arg.paramLabel(), arg.description(),
+                arg.required(), arg.hidden(), arg.splitRegex(), arg.defaultValue());
+    }
+
+    private static void append(StringBuilder buf, Object... values) {
+        for (Object value : values) {
+            String text = value instanceof Object[] ? Arrays.deepToString((Object[]) value) : String.valueOf(value);
+            // length prefix, so that values can't run into each other
+            buf.append(text.length()).append(':').append(text).append(';');
+        }
+        buf.append('\n');
+    }
+}
@@ -0,0 +1,249 @@
+package com.kloudtek.ktcli;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.SimpleAnnotationValueVisitor8;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Annotation processor that generates the GraalVM native-image metadata of a ktcli application, so that it can be
+ * compiled to a native executable without hand-written configuration.
+ * <p>
+ * picocli builds commands by reflection (it reads the annotated fields of each {@code @Command} class and its
+ * superclasses, and instantiates subcommands, mixins, converters and version providers with their no-arg
+ * constructor), and {@link CliCommand} binds the configuration to {@code @JsonProperty} fields with Jackson. This
+ * processor writes a {@code reflect-config.json} that registers the constructors, fields and methods of every class
+ * that declares one of those annotations, of the classes they reference, and of their superclasses, as well as a
+ * {@code resource-config.json}. native-image picks both up from {@code META-INF/native-image}.
+ * <p>
+ * The processor is registered as a service, so it runs whenever ktcli is on the compiler's classpath. It supports these
+ * options ({@code -A<option>=<value>}):
+ * <ul>
+ * <li>{@value #PROJECT_OPTION}: directory under {@code META-INF/native-image} the files are written to (defaults to
+ * the package of the annotated classes followed by {@code /ktcli-generated})</li>
+ * <li>{@value #RESOURCES_OPTION}: comma-separated regular expressions of resources to include in the image</li>
+ * <li>{@value #DISABLED_OPTION}: set to {@code true} to not generate anything</li>
+ * </ul>
+ * The metadata of ktcli's own classes is included in the ktcli jar.
+ */
+public class NativeImageProcessor extends AbstractProcessor {
+    public static final String PROJECT_OPTION = "ktcli.native.project";
+    public static final String RESOURCES_OPTION = "ktcli.native.resources";
+    public static final String DISABLED_OPTION = "ktcli.native.disabled";
+    public static final String ROOT = "META-INF/native-image/";
+    public static final String GENERATED = "ktcli-generated";
+    private static final List<String> PICOCLI_ANNOTATIONS = Arrays.asList("picocli.CommandLine.Command",
+            "picocli.CommandLine.Option", "picocli.CommandLine.Parameters", "picocli.CommandLine.Mixin",
+            "picocli.CommandLine.ParentCommand");
+    private static final String JSON_PROPERTY = "com.fasterxml.jackson.annotation.JsonProperty";
+    private final Set<TypeElement> annotated = new HashSet<>();
+    private final Map<String, TypeElement> reflected = new TreeMap<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        Set<String> types = new HashSet<>(PICOCLI_ANNOTATIONS);
+        types.add(JSON_PROPERTY);
+        return types;
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return new HashSet<>(Arrays.asList(PROJECT_OPTION, RESOURCES_OPTION, DISABLED_OPTION));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (Boolean.parseBoolean(processingEnv.getOptions().get(DISABLED_OPTION))) {
+            return false;
+        }
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                TypeElement type = element instanceof TypeElement ? (TypeElement) element : enclosingType(element);
+                if (type != null) {
+                    annotated.add(type);
+                    addType(type);
+                    if (element.getKind() == ElementKind.FIELD) {
+                        addReferencedTypes(element.asType());
+                    }
+                }
+                for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+                    String name = ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+                    if (PICOCLI_ANNOTATIONS.contains(name)) {
+                        addClassValues(mirror);
+                    }
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !annotated.isEmpty()) {
+            write();
+        }
+        return false;
+    }
+
+    private static TypeElement enclosingType(Element element) {
+        for (Element e = element.getEnclosingElement(); e != null; e = e.getEnclosingElement()) {
+            if (e instanceof TypeElement) {
+                return (TypeElement) e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Registers a class and its superclasses (reflection only returns the members a class declares itself).
+     */
+    private void addType(TypeElement type) {
+        for (TypeElement t = type; t != null && !isJdk(t); ) {
+            if (reflected.put(processingEnv.getElementUtils().getBinaryName(t).toString(), t) != null) {
+                return;
+            }
+            TypeMirror superclass = t.getSuperclass();
+            t = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+    }
+
+    /**
+     * Registers the type of a field and its type arguments, which picocli instantiates (mixins) or Jackson binds.
+     */
+    private void addReferencedTypes(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            addReferencedTypes(((ArrayType) type).getComponentType());
+        } else if (type.getKind() == TypeKind.DECLARED) {
+            Element element = ((DeclaredType) type).asElement();
+            if (element.getKind() == ElementKind.CLASS || element.getKind() == ElementKind.ENUM) {
+                addType((TypeElement) element);
+            }
+            for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+                addReferencedTypes(argument);
+            }
+        }
+    }
+
+    /**
+     * Registers the classes an annotation refers to, like subcommands, converters and version providers.
+     */
+    private void addClassValues(AnnotationMirror mirror) {
+        SimpleAnnotationValueVisitor8<Void, Void> visitor = new SimpleAnnotationValueVisitor8<Void, Void>() {
+            @Override
+            public Void visitType(TypeMirror t, Void unused) {
+                if (t.getKind() == TypeKind.DECLARED) {
+                    addType((TypeElement) ((DeclaredType) t).asElement());
+                }
+                return null;
+            }
+
+            @Override
+            public Void visitArray(List<? extends AnnotationValue> values, Void unused) {
+                for (AnnotationValue value : values) {
+                    value.accept(this, null);
+                }
+                return null;
+            }
+        };
+        for (AnnotationValue value : mirror.getElementValues().values()) {
+            value.accept(visitor, null);
+        }
+    }
+
+    private boolean isJdk(TypeElement type) {
+        String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        return pkg.equals("java") || pkg.startsWith("java.") || pkg.startsWith("javax.");
+    }
+
+    private void write() {
+        String project = processingEnv.getOptions().get(PROJECT_OPTION);
+        if (project == null || project.trim().isEmpty()) {
+            project = commonPackage() + "/" + GENERATED;
+        }
+        StringBuilder reflect = new StringBuilder("[");
+        for (String name : reflected.keySet()) {
+            reflect.append(reflect.length() > 1 ? ",\n" : "\n").append("  {\"name\": ").append(quote(name))
+                    .append(", \"allDeclaredConstructors\": true, \"allDeclaredFields\": true, \"allDeclaredMethods\": true}");
+        }
+        reflect.append("\n]\n");
+        StringBuilder resources = new StringBuilder("{\n  \"resources\": [");
+        String patterns = processingEnv.getOptions().get(RESOURCES_OPTION);
+        if (patterns != null && !patterns.trim().isEmpty()) {
+            String separator = "\n";
+            for (String pattern : patterns.split(",")) {
+                resources.append(separator).append("    {\"pattern\": ").append(quote(pattern.trim())).append("}");
+                separator = ",\n";
+            }
+            resources.append("\n  ");
+        }
+        resources.append("]\n}\n");
+        Element[] origins = annotated.toArray(new Element[0]);
+        writeResource(ROOT + project + "/reflect-config.json", reflect.toString(), origins);
+        writeResource(ROOT + project + "/resource-config.json", resources.toString(), origins);
+    }
+
+    private void writeResource(String path, String content, Element[] origins) {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", path, origins);
+            try (Writer writer = file.openWriter()) {
+                writer.write(content);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the package that contains all annotated classes, so that the metadata of different applications doesn't
+     * end up in the same file.
+     */
+    private String commonPackage() {
+        String[] common = null;
+        int length = 0;
+        for (TypeElement type : annotated) {
+            PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+            String[] segments = pkg.isUnnamed() ? new String[0] : pkg.getQualifiedName().toString().split("\\.");
+            if (common == null) {
+                common = segments;
+                length = segments.length;
+            } else {
+                int i = 0;
+                while (i < length && i < segments.length && common[i].equals(segments[i])) {
+                    i++;
+                }
+                length = i;
+            }
+        }
+        return length == 0 ? "default" : String.join(".", Arrays.asList(common).subList(0, length));
+    }
+
+    private static String quote(String value) {
+        StringBuilder buf = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                buf.append('\\').append(c);
+            } else if (c < 0x20) {
+                buf.append(String.format("\\u%04x", (int) c));
+            } else {
+                buf.append(c);
+            }
+        }
+        return buf.append('"').toString();
+    }
+}
@@ -0,0 +1,88 @@
+package com.kloudtek.ktcli;
+
+import com.kloudtek.util.UnexpectedException;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reads answers to prompts from the current terminal in a background thread, so that waiting for an answer can time
+ * out or be interrupted (reading from a terminal can't). A read that timed out can't be cancelled, but it never answers
+ * another prompt: the line it reads is discarded, and prompts asked while it's still waiting for that line time out
+ * immediately (their answer would be read by it, and a password would be echoed).
+ */
+class PromptReader {
+    private static ExecutorService executor;
+    private static Future<String> pending;
+
+    private PromptReader() {
+    }
+
+    /**
+     * Returns whether a read that timed out is still waiting for a line.
+     */
+    static synchronized boolean isBlocked() {
+        return pending != null && !pending.isDone();
+    }
+
+    /**
+     * Reads an answer.
+     *
+     * @param password      whether to read without echoing
+     * @param timeoutMillis how long to wait for the answer, or 0 to wait forever
+     * @return answer
+     * @throws TimeoutException     if no answer was entered in time, or a previous read is still waiting for a line
+     * @throws InterruptedException if interrupted while waiting
+     */
+    static synchronized String read(boolean password, long timeoutMillis) throws TimeoutException, InterruptedException {
+        if (pending != null) {
+            if (!pending.isDone()) {
+                throw new TimeoutException("the terminal is still read by a previous prompt that timed out");
+            }
+            // late answer to a previous prompt
+            pending = null;
+        }
+        CommandLine.Help.Terminal terminal = CommandLine.Help.Terminal.current();
+        Future<String> read = executor().submit(() -> {
+            if (password) {
+                char[] value = terminal.readPassword();
+                return value != null ? new String(value) : null;
+            } else {
+                return terminal.readLine();
+            }
+        });
+        try {
+            String line = timeoutMillis > 0 ? read.get(timeoutMillis, TimeUnit.MILLISECONDS) : read.get();
+            if (line == null) {
+                throw new NoSuchElementException("No line found");
+            }
+            return line;
+        } catch (TimeoutException | InterruptedException e) {
+            pending = read;
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new UnexpectedException(e.getCause());
+            }
+            throw new UnexpectedException(e);
+        }
+    }
+
+    private static ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "ktcli-prompt-reader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+}
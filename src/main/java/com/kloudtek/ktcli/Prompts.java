@@ -0,0 +1,190 @@
+package com.kloudtek.ktcli;
+
+import com.kloudtek.util.UserDisplayableException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * How prompts are answered: from {@link AnswerSource answer sources}, by assuming yes to confirmations, without
+ * reading from the terminal, or by waiting a limited time for an answer.
+ * <p>
+ * Each {@link CliHelper} has its own prompts, configured from its command line options and configuration profile
+ * ({@link CliHelper#getPrompts()}), and the static {@link CliHelper#read(String, String)} and
+ * {@link CliHelper#confirm(String)} methods use the prompts of the invocation running on the current thread. Prompts
+ * are immutable.
+ */
+public class Prompts {
+    private final List<AnswerSource> answers;
+    private final boolean assumeYes;
+    private final boolean noInput;
+    private final long timeoutMillis;
+
+    /**
+     * Creates prompts.
+     *
+     * @param answers       sources prompts are answered from, in order of precedence
+     * @param assumeYes     whether confirmations without an answer from the answer sources are answered yes
+     * @param noInput       whether prompts never read from the terminal, in which case prompts without an answer from
+     *                      the answer sources use their default value, or fail
+     * @param timeoutMillis how long prompts wait for an answer, or 0 to wait forever
+     */
+    public Prompts(@NotNull List<AnswerSource> answers, boolean assumeYes, boolean noInput, long timeoutMillis) {
+        this.answers = Collections.unmodifiableList(new ArrayList<>(answers));
+        this.assumeYes = assumeYes;
+        this.noInput = noInput;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @NotNull
+    public List<AnswerSource> getAnswers() {
+        return answers;
+    }
+
+    public boolean isAssumeYes() {
+        return assumeYes;
+    }
+
+    public boolean isNoInput() {
+        return noInput;
+    }
+
+    public long getTimeout() {
+        return timeoutMillis;
+    }
+
+    public boolean confirm(String txt) {
+        return confirm(txt, null);
+    }
+
+    /**
+     * Asks a yes/no question. The answer comes from the answer sources if they have one, is yes if
+     * {@link #isAssumeYes() assumed}, and is otherwise read like {@link #read(String, String)}.
+     *
+     * @param txt          question
+     * @param defaultValue answer if none is entered, or null to require one
+     * @return answer
+     */
+    public boolean confirm(String txt, Boolean defaultValue) {
+        String answer = getAnswer(txt);
+        if (answer != null) {
+            Boolean value = parseConfirmation(answer);
+            if (value == null) {
+                throw new UserDisplayableException("Invalid answer '" + answer + "' to '" + txt + "', it must be either: yes, no, n, y, true, false");
+            }
+            return value;
+        } else if (assumeYes) {
+            return true;
+        }
+        for (; ; ) {
+            String defValStr = null;
+            if (defaultValue != null && defaultValue) {
+                defValStr = "yes";
+            } else if (defaultValue != null && !defaultValue) {
+                defValStr = "no";
+            }
+            String val = read(txt, defValStr);
+            if (val != null) {
+                Boolean value = parseConfirmation(val);
+                if (value != null) {
+                    return value;
+                }
+                System.out.println("Response must be either: yes, no, n, y, true, false");
+            }
+        }
+    }
+
+    private static Boolean parseConfirmation(String val) {
+        switch (val.trim().toLowerCase()) {
+            case "yes":
+            case "y":
+            case "true":
+                return true;
+            case "no":
+            case "n":
+            case "false":
+                return false;
+            default:
+                return null;
+        }
+    }
+
+    public String read(String txt, String defVal) {
+        return read(txt, defVal, false);
+    }
+
+    /**
+     * Asks for a value. The answer comes from the answer sources if they have one. Otherwise, it's read from the
+     * current terminal, unless {@link #isNoInput() input is disabled}, in which case the default value is used. If a
+     * {@link #getTimeout() timeout} is set and no answer is entered in time, the default value is used too (an answer
+     * entered later is discarded).
+     *
+     * @param txt      prompt
+     * @param defVal   answer if none is entered, or null to require one
+     * @param password whether the value is a password, which isn't echoed
+     * @return answer
+     * @throws UserDisplayableException if an answer is required but input is disabled, or none was entered in time
+     * @throws NoSuchElementException   if the end of the input was reached
+     */
+    public String read(String txt, String defVal, boolean password) {
+        String answer = getAnswer(txt);
+        if (answer != null) {
+            return answer;
+        } else if (noInput) {
+            if (defVal != null) {
+                return defVal;
+            }
+            throw new UserDisplayableException("No answer to '" + txt + "' and input is disabled");
+        }
+        // output written before the prompt must be visible
+        CliHelper.flushActiveOutputs();
+        for (; ; ) {
+            System.out.print(txt);
+            if (defVal != null) {
+                System.out.print(" [" + (password ? "********" : defVal) + "]");
+            }
+            System.out.print(": ");
+            System.out.flush();
+            String val;
+            if (timeoutMillis > 0 || PromptReader.isBlocked()) {
+                try {
+                    val = PromptReader.read(password, timeoutMillis);
+                } catch (TimeoutException e) {
+                    System.out.println();
+                    if (defVal != null) {
+                        return defVal;
+                    }
+                    throw new UserDisplayableException("No answer to '" + txt + "'" + (e.getMessage() != null ? ": " + e.getMessage() : " after " + timeoutMillis / 1000 + " seconds"));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UserDisplayableException("Interrupted while waiting for an answer to '" + txt + "'", e);
+                }
+            } else {
+                val = password ? CliHelper.readPassword() : CliHelper.readLine();
+            }
+            if (val != null) {
+                val = val.trim();
+                if (!val.isEmpty()) {
+                    return val;
+                }
+                if (defVal != null) {
+                    return defVal;
+                }
+            }
+        }
+    }
+
+    private String getAnswer(String txt) {
+        for (AnswerSource source : answers) {
+            String answer = source.getAnswer(txt);
+            if (answer != null) {
+                return answer;
+            }
+        }
+        return null;
+    }
+}
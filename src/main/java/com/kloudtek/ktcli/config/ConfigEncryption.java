@@ -0,0 +1,205 @@
+package com.kloudtek.ktcli.config;
+
+import com.kloudtek.ktcli.CliHelper;
+import com.kloudtek.util.UserDisplayableException;
+import org.jetbrains.annotations.NotNull;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encrypts and decrypts configuration values using AES-GCM, with a key derived from a password using PBKDF2.
+ * <p>
+ * Key derivation is deliberately slow, so derived keys are cached for the life of the process: the password is only
+ * requested (using {@link CliHelper#readPassword()} by default) and the key only derived the first time a value is
+ * decrypted, no matter how many encrypted values the configuration contains. Values encrypted during the same
+ * process share the same salt, which is the salt of the values already in the configuration file they're saved to (see
+ * {@link #useSaltOf(String)}), so that all values of a file can be decrypted with a single key derivation.
+ */
+public class ConfigEncryption {
+    private static final byte FORMAT_VERSION = 1;
+    private static final int SALT_LENGTH = 16;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 128;
+    private static final int KEY_LENGTH = 256;
+    private static final int ITERATIONS = 100000;
+    private static final SecureRandom random = new SecureRandom();
+    private static final Map<String, SecretKey> keys = new ConcurrentHashMap<>();
+    private static PasswordProvider passwordProvider = () -> CliHelper.read("Configuration password", null, true).toCharArray();
+    private static char[] password;
+    private static byte[] currentSalt;
+
+    private ConfigEncryption() {
+    }
+
+    /**
+     * Encrypts a value.
+     *
+     * @param value value to encrypt
+     * @return base64 encoded encrypted value
+     */
+    @NotNull
+    public static String encrypt(@NotNull String value) {
+        try {
+            byte[] salt = getCurrentSalt();
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, getKey(salt), new GCMParameterSpec(TAG_LENGTH, iv));
+            byte[] encrypted = cipher.doFinal(value.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.allocate(1 + SALT_LENGTH + IV_LENGTH + encrypted.length);
+            buffer.put(FORMAT_VERSION).put(salt).put(iv).put(encrypted);
+            return Base64.getEncoder().encodeToString(buffer.array());
+        } catch (GeneralSecurityException e) {
+            throw new UserDisplayableException("Unable to encrypt configuration value: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decrypts a value.
+     *
+     * @param encryptedValue base64 encoded encrypted value (as returned by {@link #encrypt(String)})
+     * @return decrypted value
+     * @throws UserDisplayableException if the value is invalid or the password incorrect
+     */
+    @NotNull
+    public static String decrypt(@NotNull String encryptedValue) {
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Base64.getDecoder().decode(encryptedValue.trim()));
+        } catch (IllegalArgumentException e) {
+            throw new UserDisplayableException("Invalid encrypted configuration value", e);
+        }
+        if (buffer.remaining() <= 1 + SALT_LENGTH + IV_LENGTH || buffer.get() != FORMAT_VERSION) {
+            throw new UserDisplayableException("Invalid encrypted configuration value");
+        }
+        byte[] salt = new byte[SALT_LENGTH];
+        byte[] iv = new byte[IV_LENGTH];
+        buffer.get(salt).get(iv);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, getKey(salt), new GCMParameterSpec(TAG_LENGTH, iv));
+            byte[] decrypted = cipher.doFinal(buffer.array(), buffer.position(), buffer.remaining());
+            synchronized (ConfigEncryption.class) {
+                if (currentSalt == null) {
+                    currentSalt = salt;
+                }
+            }
+            return new String(decrypted, StandardCharsets.UTF_8);
+        } catch (AEADBadTagException e) {
+            // most likely the wrong password, so make sure it's requested again next time
+            keys.remove(toKey(salt));
+            clearPassword();
+            throw new UserDisplayableException("Unable to decrypt configuration value (invalid password ?)", e);
+        } catch (GeneralSecurityException e) {
+            throw new UserDisplayableException("Unable to decrypt configuration value: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Makes values encrypted from now on use the same salt as an existing encrypted value (normally one of the
+     * configuration file they'll be saved to, see {@link Secret#findEncryptedValue(com.fasterxml.jackson.databind.JsonNode)}), so that no additional
+     * key derivation is needed to decrypt them. Invalid values are ignored.
+     *
+     * @param encryptedValue encrypted value, using the {@code ENC(...)} syntax or not
+     */
+    public static void useSaltOf(@NotNull String encryptedValue) {
+        if (Secret.isEncrypted(encryptedValue)) {
+            encryptedValue = encryptedValue.substring(Secret.PREFIX.length(), encryptedValue.length() - Secret.SUFFIX.length());
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(encryptedValue.trim()));
+            if (buffer.remaining() > 1 + SALT_LENGTH + IV_LENGTH && buffer.get() == FORMAT_VERSION) {
+                byte[] salt = new byte[SALT_LENGTH];
+                buffer.get(salt);
+                synchronized (ConfigEncryption.class) {
+                    currentSalt = salt;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // invalid value, which fails when it's decrypted
+        }
+    }
+
+    /**
+     * Sets how the password will be obtained when a key needs to be derived.
+     *
+     * @param passwordProvider password provider
+     */
+    public static synchronized void setPasswordProvider(@NotNull PasswordProvider passwordProvider) {
+        ConfigEncryption.passwordProvider = passwordProvider;
+        clearKeys();
+    }
+
+    /**
+     * Removes all cached keys and the cached password.
+     */
+    public static synchronized void clearKeys() {
+        keys.clear();
+        currentSalt = null;
+        clearPassword();
+    }
+
+    private static synchronized void clearPassword() {
+        if (password != null) {
+            Arrays.fill(password, '\0');
+            password = null;
+        }
+    }
+
+    private static synchronized byte[] getCurrentSalt() {
+        if (currentSalt == null) {
+            currentSalt = new byte[SALT_LENGTH];
+            random.nextBytes(currentSalt);
+        }
+        return currentSalt;
+    }
+
+    private static SecretKey getKey(byte[] salt) throws GeneralSecurityException {
+        String cacheKey = toKey(salt);
+        SecretKey key = keys.get(cacheKey);
+        if (key == null) {
+            synchronized (ConfigEncryption.class) {
+                key = keys.get(cacheKey);
+                if (key == null) {
+                    if (password == null) {
+                        password = passwordProvider.getPassword();
+                    }
+                    SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+                    PBEKeySpec spec = new PBEKeySpec(password, salt, ITERATIONS, KEY_LENGTH);
+                    try {
+                        key = new SecretKeySpec(factory.generateSecret(spec).getEncoded(), "AES");
+                    } finally {
+                        spec.clearPassword();
+                    }
+                    keys.put(cacheKey, key);
+                }
+            }
+        }
+        return key;
+    }
+
+    private static String toKey(byte[] salt) {
+        return Base64.getEncoder().encodeToString(salt);
+    }
+
+    /**
+     * Supplies the password used to derive encryption keys.
+     */
+    public interface PasswordProvider {
+        char[] getPassword();
+    }
+}
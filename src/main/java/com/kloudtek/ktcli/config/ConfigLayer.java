@@ -0,0 +1,196 @@
+package com.kloudtek.ktcli.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.kloudtek.ktcli.CliHelper;
+import com.kloudtek.util.UserDisplayableException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A single source of configuration (system file, user file, project file or environment variables), flattened
+ * into a map of {@link LayeredConfig#path(String...) paths} to leaf values.
+ * <p>
+ * File layers are cached for the life of the process and are only re-read when the file's size or modification time
+ * changes, so repeated runs in the same JVM (batch or daemon mode) don't re-parse unchanged files.
+ */
+public class ConfigLayer {
+    private static final Map<File, ConfigLayer> fileCache = new ConcurrentHashMap<>();
+    private final Source source;
+    private final File file;
+    private final long lastModified;
+    private final long length;
+    private final ObjectNode tree;
+    private final Map<String, JsonNode> values;
+
+    private ConfigLayer(Source source, File file, long lastModified, long length, ObjectNode tree, Map<String, JsonNode> values) {
+        this.source = source;
+        this.file = file;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.tree = tree;
+        this.values = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Loads a configuration file, re-using the previously loaded layer if the file hasn't changed since.
+     *
+     * @param source layer source
+     * @param file   configuration file
+     * @return layer or null if the file doesn't exist
+     */
+    @Nullable
+    public static ConfigLayer load(@NotNull Source source, @Nullable File file) {
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        File key = file.getAbsoluteFile();
+        long lastModified = key.lastModified();
+        long length = key.length();
+        ConfigLayer cached = fileCache.get(key);
+        if (cached != null && cached.source == source && cached.lastModified == lastModified && cached.length == length) {
+            return cached;
+        }
+        try {
+            JsonNode node = CliHelper.getObjectMapper().readTree(key);
+            if (node == null || node.getNodeType() != JsonNodeType.OBJECT) {
+                throw new UserDisplayableException("Invalid configuration file " + file.getPath() + " is not a json object");
+            }
+            ObjectNode tree = (ObjectNode) node;
+            ConfigLayer layer = new ConfigLayer(source, key, lastModified, length, tree, flatten(tree));
+            fileCache.put(key, layer);
+            return layer;
+        } catch (IOException e) {
+            throw new UserDisplayableException("Unable to read configuration file " + file.getPath() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates a layer from environment variables. Any variable named {@code <prefix><path>} is included, where
+     * path segments are separated by a double underscore. For example with the prefix {@code MYTOOL_CFG_},
+     * {@code MYTOOL_CFG_subcommands__deploy__url} maps to the path {@code /subcommands/deploy/url}.
+     * <p>
+     * Segments written entirely in upper case are lower-cased, as environment variables usually are upper case, so
+     * {@code MYTOOL_CFG_SUBCOMMANDS__DEPLOY__URL} maps to the same path. Other segments are case-sensitive: a
+     * property with upper case letters like {@code serverUrl} must be written with its exact case.
+     *
+     * @param prefix      variable name prefix
+     * @param environment environment variables
+     * @return layer or null if no variable matches the prefix
+     */
+    @Nullable
+    public static ConfigLayer fromEnvironment(@NotNull String prefix, @NotNull Map<String, String> environment) {
+        Map<String, JsonNode> values = new HashMap<>();
+        for (Map.Entry<String, String> entry : environment.entrySet()) {
+            String name = entry.getKey();
+            if (name.length() > prefix.length() && name.startsWith(prefix)) {
+                String[] segments = name.substring(prefix.length()).split("__");
+                for (int i = 0; i < segments.length; i++) {
+                    if (segments[i].equals(segments[i].toUpperCase(Locale.ROOT))) {
+                        segments[i] = segments[i].toLowerCase(Locale.ROOT);
+                    }
+                }
+                values.put(LayeredConfig.path(segments), TextNode.valueOf(entry.getValue()));
+            }
+        }
+        return values.isEmpty() ? null : new ConfigLayer(Source.ENVIRONMENT, null, 0, 0, null, values);
+    }
+
+    /**
+     * Creates a layer from an in-memory configuration tree. The tree must not be modified afterwards.
+     *
+     * @param source layer source
+     * @param tree   configuration
+     * @return layer
+     */
+    public static ConfigLayer fromTree(@NotNull Source source, @NotNull ObjectNode tree) {
+        return new ConfigLayer(source, null, 0, 0, tree, flatten(tree));
+    }
+
+    /**
+     * Removes all cached file layers, forcing them to be re-read next time they are loaded.
+     */
+    public static void clearCache() {
+        fileCache.clear();
+    }
+
+    /**
+     * Removes a file from the cache, forcing it to be re-read next time it is loaded.
+     *
+     * @param file configuration file
+     */
+    public static void invalidate(@NotNull File file) {
+        fileCache.remove(file.getAbsoluteFile());
+    }
+
+    private static Map<String, JsonNode> flatten(ObjectNode tree) {
+        Map<String, JsonNode> values = new HashMap<>();
+        flatten("", tree, values);
+        return values;
+    }
+
+    private static void flatten(String path, ObjectNode node, Map<String, JsonNode> values) {
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String fieldPath = LayeredConfig.child(path, field.getKey());
+            JsonNode value = field.getValue();
+            if (value.isObject() && value.size() > 0) {
+                flatten(fieldPath, (ObjectNode) value, values);
+            } else {
+                values.put(fieldPath, value);
+            }
+        }
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the file this layer was loaded from.
+     *
+     * @return file or null if this layer wasn't loaded from a file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the configuration tree this layer was created from. This must be treated as read-only, use
+     * {@link ObjectNode#deepCopy()} to obtain a modifiable copy.
+     *
+     * @return configuration tree, or null for environment layers
+     */
+    public ObjectNode getTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the flattened values of this layer.
+     *
+     * @return read-only map of paths to leaf values
+     */
+    public Map<String, JsonNode> getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return source + (file != null ? " " + file.getPath() : "");
+    }
+
+    /**
+     * Configuration sources, in increasing order of precedence.
+     */
+    public enum Source {
+        SYSTEM, USER, PROJECT, ENVIRONMENT
+    }
+}
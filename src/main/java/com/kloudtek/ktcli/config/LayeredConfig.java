@@ -0,0 +1,237 @@
+package com.kloudtek.ktcli.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Merges several {@link ConfigLayer}s into a single index of paths to values, with layers added later taking
+ * precedence over earlier ones. Objects are merged recursively, while any other value (including arrays and empty
+ * objects) replaces the value of lower layers.
+ * <p>
+ * Paths use the JSON pointer syntax (ie: {@code /profiles/default/subcommands/deploy/url}). The index is built once on
+ * first access, and the most recently built index is re-used if the same layers are merged again.
+ */
+public class LayeredConfig {
+    private static final char SEPARATOR = '/';
+    // the character following the separator, used as exclusive upper bound for sub-tree lookups
+    private static final char SEPARATOR_END = SEPARATOR + 1;
+    private static volatile LayeredConfig lastBuilt;
+    private final List<ConfigLayer> layers = new ArrayList<>();
+    private final List<String> mountPaths = new ArrayList<>();
+    private NavigableMap<String, JsonNode> index;
+
+    /**
+     * Adds a layer at the root of the configuration.
+     *
+     * @param layer layer to add (null layers are ignored)
+     * @return this object
+     */
+    public LayeredConfig add(@Nullable ConfigLayer layer) {
+        return add(layer, "");
+    }
+
+    /**
+     * Adds a layer which will have its values mounted under the specified path.
+     *
+     * @param layer     layer to add (null layers are ignored)
+     * @param mountPath path the layer's values are relative to
+     * @return this object
+     */
+    public LayeredConfig add(@Nullable ConfigLayer layer, @NotNull String mountPath) {
+        if (layer != null) {
+            layers.add(layer);
+            mountPaths.add(mountPath);
+            index = null;
+        }
+        return this;
+    }
+
+    public List<ConfigLayer> getLayers() {
+        return Collections.unmodifiableList(layers);
+    }
+
+    /**
+     * Returns the merged index.
+     *
+     * @return read-only sorted map of paths to leaf values
+     */
+    public synchronized NavigableMap<String, JsonNode> getIndex() {
+        if (index == null) {
+            LayeredConfig previous = lastBuilt;
+            if (previous != null && previous.index != null && previous.layers.equals(layers) && previous.mountPaths.equals(mountPaths)) {
+                index = previous.index;
+            } else {
+                index = Collections.unmodifiableNavigableMap(buildIndex());
+                lastBuilt = this;
+            }
+        }
+        return index;
+    }
+
+    private TreeMap<String, JsonNode> buildIndex() {
+        TreeMap<String, JsonNode> merged = new TreeMap<>();
+        for (int i = 0; i < layers.size(); i++) {
+            String mountPath = mountPaths.get(i);
+            for (Map.Entry<String, JsonNode> entry : layers.get(i).getValues().entrySet()) {
+                merge(merged, mountPath + entry.getKey(), entry.getValue());
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Sets a value in an index, replacing any value it overrides or is nested within.
+     */
+    static void merge(NavigableMap<String, JsonNode> index, String path, JsonNode value) {
+        index.subMap(path + SEPARATOR, true, path + SEPARATOR_END, false).clear();
+        for (int idx = path.lastIndexOf(SEPARATOR); idx > 0; idx = path.lastIndexOf(SEPARATOR, idx - 1)) {
+            index.remove(path.substring(0, idx));
+        }
+        index.put(path, value);
+    }
+
+    /**
+     * Returns all values nested under a path.
+     *
+     * @param index index to look up
+     * @param path  parent path
+     * @return read-only view of the values
+     */
+    static NavigableMap<String, JsonNode> subTree(NavigableMap<String, JsonNode> index, String path) {
+        return index.subMap(path + SEPARATOR, true, path + SEPARATOR_END, false);
+    }
+
+    /**
+     * Returns a single value. If the index hasn't been built yet, the layers will be looked up directly instead.
+     *
+     * @param path value path
+     * @return value or null if not found
+     */
+    @Nullable
+    public JsonNode get(@NotNull String path) {
+        synchronized (this) {
+            if (index != null) {
+                return index.get(path);
+            }
+        }
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            String mountPath = mountPaths.get(i);
+            if (path.startsWith(mountPath)) {
+                JsonNode value = layers.get(i).getValues().get(path.substring(mountPath.length()));
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a single text value.
+     *
+     * @param path         value path
+     * @param defaultValue value to return if not found
+     * @return value
+     */
+    public String getString(@NotNull String path, String defaultValue) {
+        JsonNode value = get(path);
+        return value != null && !value.isNull() ? value.asText() : defaultValue;
+    }
+
+    /**
+     * Rebuilds the configuration object found at the specified path.
+     *
+     * @param path          object path
+     * @param excludedChild name of a child of that object that should be left out, or null
+     * @return object (empty if there is no value under that path)
+     */
+    @NotNull
+    public ObjectNode getObject(@NotNull String path, @Nullable String excludedChild) {
+        return getObject(getIndex(), path, excludedChild);
+    }
+
+    /**
+     * Rebuilds the configuration object found at the specified path of an index.
+     *
+     * @param index         index to look up
+     * @param path          object path
+     * @param excludedChild name of a child of that object that should be left out, or null
+     * @return object (empty if there is no value under that path)
+     */
+    @NotNull
+    public static ObjectNode getObject(@NotNull NavigableMap<String, JsonNode> index, @NotNull String path, @Nullable String excludedChild) {
+        NavigableMap<String, JsonNode> values = subTree(index, path);
+        ObjectNode result = new ObjectNode(JsonNodeFactory.instance);
+        if (excludedChild != null) {
+            String excluded = child(path, excludedChild);
+            addAll(result, path, values.headMap(excluded, false));
+            addAll(result, path, values.subMap(excluded, false, excluded + SEPARATOR, false));
+            addAll(result, path, values.tailMap(excluded + SEPARATOR_END, true));
+        } else {
+            addAll(result, path, values);
+        }
+        return result;
+    }
+
+    private static void addAll(ObjectNode result, String path, Map<String, JsonNode> values) {
+        for (Map.Entry<String, JsonNode> entry : values.entrySet()) {
+            String[] segments = split(entry.getKey().substring(path.length()));
+            ObjectNode node = result;
+            for (int i = 0; i < segments.length - 1; i++) {
+                JsonNode childNode = node.get(segments[i]);
+                node = childNode instanceof ObjectNode ? (ObjectNode) childNode : node.putObject(segments[i]);
+            }
+            JsonNode value = entry.getValue();
+            // empty objects are shared with the layer they come from
+            node.set(segments[segments.length - 1], value.isObject() ? value.deepCopy() : value);
+        }
+    }
+
+    /**
+     * Creates a path from (unescaped) segments.
+     *
+     * @param segments path segments
+     * @return path
+     */
+    public static String path(String... segments) {
+        StringBuilder path = new StringBuilder();
+        for (String segment : segments) {
+            path.append(SEPARATOR).append(escape(segment));
+        }
+        return path.toString();
+    }
+
+    /**
+     * Appends a segment to a path.
+     *
+     * @param path    parent path
+     * @param segment unescaped segment to append
+     * @return child path
+     */
+    public static String child(String path, String segment) {
+        return path + SEPARATOR + escape(segment);
+    }
+
+    private static String escape(String segment) {
+        if (segment.indexOf('~') == -1 && segment.indexOf(SEPARATOR) == -1) {
+            return segment;
+        }
+        return segment.replace("~", "~0").replace("/", "~1");
+    }
+
+    private static String[] split(String path) {
+        // path always starts with a separator
+        String[] segments = path.substring(1).split(String.valueOf(SEPARATOR), -1);
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i].indexOf('~') != -1) {
+                segments[i] = segments[i].replace("~1", "/").replace("~0", "~");
+            }
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,153 @@
+package com.kloudtek.ktcli.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.kloudtek.ktcli.CliHelper;
+import com.kloudtek.util.UserDisplayableException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the effective configuration of a profile, taking into account the profiles it extends. A profile declares
+ * the profiles it inherits from using an {@code extends} property containing either a profile name or an array of
+ * profile names, for example:
+ * <pre>
+ * "profiles": {
+ *     "base": { "url": "https://example.com" },
+ *     "dev": { "extends": ["base"], "user": "dev" }
+ * }
+ * </pre>
+ * Base profiles are applied in the order they are listed, and the profile's own values take precedence over all of
+ * them.
+ * <p>
+ * Resolved profiles are cached for the life of the process. A cached profile is re-used as long as neither it nor any
+ * of the profiles it inherits from has changed, so only the profiles affected by a configuration change are resolved
+ * again.
+ */
+public class ProfileResolver {
+    public static final String EXTENDS = "extends";
+    private static final Map<String, ResolvedProfile> cache = new ConcurrentHashMap<>();
+
+    private ProfileResolver() {
+    }
+
+    /**
+     * Resolves a profile.
+     *
+     * @param config  configuration
+     * @param profile profile name
+     * @return read-only sorted map of paths (relative to the profile) to values, excluding the {@code extends} property
+     * @throws UserDisplayableException if a base profile doesn't exist, or if profiles inherit from each other in a cycle
+     */
+    @NotNull
+    public static NavigableMap<String, JsonNode> resolve(@NotNull LayeredConfig config, @NotNull String profile) {
+        return resolve(config.getIndex(), profile, new LinkedHashSet<String>()).values;
+    }
+
+    /**
+     * Returns true if the profile explicitly extends other profiles.
+     *
+     * @param config  configuration
+     * @param profile profile name
+     * @return true if the profile has an {@code extends} property
+     */
+    public static boolean hasParents(@NotNull LayeredConfig config, @NotNull String profile) {
+        return config.get(LayeredConfig.path(CliHelper.PROFILES, profile, EXTENDS)) != null;
+    }
+
+    /**
+     * Removes all cached profiles.
+     */
+    public static void clearCache() {
+        cache.clear();
+    }
+
+    private static ResolvedProfile resolve(NavigableMap<String, JsonNode> index, String profile, LinkedHashSet<String> resolving) {
+        ResolvedProfile resolved = cache.get(profile);
+        if (resolved != null && resolved.isValid(index)) {
+            if (resolved.index != index) {
+                resolved = new ResolvedProfile(index, resolved.values, resolved.sources);
+                cache.put(profile, resolved);
+            }
+            return resolved;
+        }
+        if (!resolving.add(profile)) {
+            StringBuilder cycle = new StringBuilder();
+            for (String name : resolving) {
+                cycle.append(name).append(" -> ");
+            }
+            throw new UserDisplayableException("Profile inheritance cycle detected: " + cycle + profile);
+        }
+        String profilePath = LayeredConfig.path(CliHelper.PROFILES, profile);
+        NavigableMap<String, JsonNode> ownValues = LayeredConfig.subTree(index, profilePath);
+        String extendsPath = LayeredConfig.child(profilePath, EXTENDS);
+        TreeMap<String, JsonNode> values = new TreeMap<>();
+        Map<String, NavigableMap<String, JsonNode>> sources = new HashMap<>();
+        for (String parent : getParents(index.get(extendsPath), profile)) {
+            if (!index.containsKey(LayeredConfig.path(CliHelper.PROFILES, parent)) && LayeredConfig.subTree(index, LayeredConfig.path(CliHelper.PROFILES, parent)).isEmpty()) {
+                throw new UserDisplayableException("Profile '" + profile + "' extends profile '" + parent + "' which doesn't exist");
+            }
+            ResolvedProfile parentProfile = resolve(index, parent, resolving);
+            for (Map.Entry<String, JsonNode> entry : parentProfile.values.entrySet()) {
+                LayeredConfig.merge(values, entry.getKey(), entry.getValue());
+            }
+            sources.putAll(parentProfile.sources);
+        }
+        for (Map.Entry<String, JsonNode> entry : ownValues.entrySet()) {
+            if (!entry.getKey().equals(extendsPath)) {
+                LayeredConfig.merge(values, entry.getKey().substring(profilePath.length()), entry.getValue());
+            }
+        }
+        sources.put(profile, ownValues);
+        resolving.remove(profile);
+        resolved = new ResolvedProfile(index, Collections.unmodifiableNavigableMap(values), sources);
+        cache.put(profile, resolved);
+        return resolved;
+    }
+
+    private static List<String> getParents(JsonNode extendsNode, String profile) {
+        if (extendsNode == null || extendsNode.isNull()) {
+            return Collections.emptyList();
+        } else if (extendsNode.isTextual()) {
+            return Collections.singletonList(extendsNode.textValue());
+        } else if (extendsNode.isArray()) {
+            List<String> parents = new ArrayList<>(extendsNode.size());
+            for (JsonNode parent : extendsNode) {
+                if (!parent.isTextual()) {
+                    throw new UserDisplayableException("Profile '" + profile + "' has an invalid '" + EXTENDS + "' value: " + extendsNode);
+                }
+                parents.add(parent.textValue());
+            }
+            return parents;
+        } else {
+            throw new UserDisplayableException("Profile '" + profile + "' has an invalid '" + EXTENDS + "' value: " + extendsNode);
+        }
+    }
+
+    private static class ResolvedProfile {
+        private final NavigableMap<String, JsonNode> index;
+        private final NavigableMap<String, JsonNode> values;
+        // own values of this profile and of all the profiles it inherits from, at the time it was resolved
+        private final Map<String, NavigableMap<String, JsonNode>> sources;
+
+        private ResolvedProfile(NavigableMap<String, JsonNode> index, NavigableMap<String, JsonNode> values, Map<String, NavigableMap<String, JsonNode>> sources) {
+            this.index = index;
+            this.values = values;
+            this.sources = sources;
+        }
+
+        private boolean isValid(NavigableMap<String, JsonNode> currentIndex) {
+            if (index == currentIndex) {
+                return true;
+            }
+            for (Map.Entry<String, NavigableMap<String, JsonNode>> source : sources.entrySet()) {
+                String profilePath = LayeredConfig.path(CliHelper.PROFILES, source.getKey());
+                if (!source.getValue().equals(LayeredConfig.subTree(currentIndex, profilePath))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.kloudtek.ktcli.config;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+
+/**
+ * A sensitive configuration value, stored encrypted in configuration files using the {@code ENC(<encrypted value>)}
+ * syntax. Fields of this type can be used both as configuration properties and as command line options.
+ * <p>
+ * Encrypted values are only decrypted the first time {@link #getValue()} is called, so secrets that a command doesn't
+ * use never require the password. Values set in plain text (for example from the command line) are only encrypted
+ * when the configuration is saved.
+ *
+ * @see ConfigEncryption
+ */
+public final class Secret {
+    public static final String PREFIX = "ENC(";
+    public static final String SUFFIX = ")";
+    private volatile String encrypted;
+    private volatile String value;
+
+    private Secret(String encrypted, String value) {
+        this.encrypted = encrypted;
+        this.value = value;
+    }
+
+    /**
+     * Creates a secret from a configuration or command line value.
+     *
+     * @param text either an encrypted value using the {@code ENC(...)} syntax, or a plain text value
+     * @return secret or null if text is null
+     */
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    @Nullable
+    public static Secret valueOf(@Nullable String text) {
+        if (text == null) {
+            return null;
+        } else if (isEncrypted(text)) {
+            return new Secret(text, null);
+        } else {
+            return new Secret(null, text);
+        }
+    }
+
+    /**
+     * Creates a secret from a plain text value.
+     *
+     * @param value plain text value
+     * @return secret
+     */
+    @NotNull
+    public static Secret of(@NotNull String value) {
+        return new Secret(null, value);
+    }
+
+    /**
+     * Checks if a text uses the {@code ENC(...)} syntax.
+     *
+     * @param text text
+     * @return true if the text is an encrypted value
+     */
+    public static boolean isEncrypted(@Nullable String text) {
+        return text != null && text.startsWith(PREFIX) && text.endsWith(SUFFIX);
+    }
+
+    /**
+     * Returns the first encrypted value of a configuration.
+     *
+     * @param config configuration
+     * @return encrypted value (using the {@code ENC(...)} syntax), or null if the configuration doesn't contain any
+     */
+    @Nullable
+    public static String findEncryptedValue(@NotNull JsonNode config) {
+        if (config.isTextual()) {
+            return isEncrypted(config.textValue()) ? config.textValue() : null;
+        }
+        for (Iterator<JsonNode> it = config.elements(); it.hasNext(); ) {
+            String encrypted = findEncryptedValue(it.next());
+            if (encrypted != null) {
+                return encrypted;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the plain text value, decrypting it if necessary.
+     *
+     * @return plain text value
+     */
+    @NotNull
+    public String getValue() {
+        String result = value;
+        if (result == null) {
+            synchronized (this) {
+                if (value == null) {
+                    value = ConfigEncryption.decrypt(encrypted.substring(PREFIX.length(), encrypted.length() - SUFFIX.length()));
+                }
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the encrypted value (using the {@code ENC(...)} syntax), encrypting it if necessary.
+     *
+     * @return encrypted value
+     */
+    @JsonValue
+    @NotNull
+    public String getEncryptedValue() {
+        String result = encrypted;
+        if (result == null) {
+            synchronized (this) {
+                if (encrypted == null) {
+                    encrypted = PREFIX + ConfigEncryption.encrypt(value) + SUFFIX;
+                }
+                result = encrypted;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "********";
+    }
+}
@@ -13,14 +13,15 @@ package picocli;
    limitations under the License.
  */
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.lang.ref.SoftReference;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,7 +36,7 @@ import picocli.CommandLine.Parameters;
 import static java.lang.String.*;
 
 /**
- * Stand-alone tool that generates bash auto-complete scripts for picocli-based command line applications.
+ * Stand-alone tool that generates bash, zsh and fish auto-complete scripts for picocli-based command line applications.
  */
 public class AutoComplete {
     private AutoComplete() { }
@@ -78,6 +79,9 @@ public class AutoComplete {
         @Option(names = {"-f", "--force"}, description = "Overwrite existing script files.")
         boolean overwriteIfExists;
 
+        @Option(names = {"-s", "--shell"}, description = "Shell to generate a completion script for: bash (the default), zsh or fish.")
+        String shell = "bash";
+
         @Option(names = { "-h", "--help"}, usageHelp = true, description = "Display this help message and quit.")
         boolean usageHelpRequested;
 
@@ -102,7 +106,20 @@ public class AutoComplete {
                 if (commandScript != null && !overwriteIfExists && checkExists(commandScript)) { return; }
                 if (!overwriteIfExists && checkExists(autoCompleteScript)) { return; }
 
-                AutoComplete.bash(commandName, autoCompleteScript, commandScript, commandLine);
+                if ("zsh".equals(shell) || "fish".equals(shell)) {
+                    Writer writer = new BufferedWriter(new FileWriter(autoCompleteScript));
+                    try {
+                        if ("zsh".equals(shell)) {
+                            AutoComplete.zsh(commandName, model(commandLine), null, writer);
+                        } else {
+                            AutoComplete.fish(commandName, model(commandLine), null, writer);
+                        }
+                    } finally {
+                        writer.close();
+                    }
+                } else {
+                    AutoComplete.bash(commandName, autoCompleteScript, commandScript, commandLine);
+                }
 
             } catch (Exception ex) {
                 ex.printStackTrace();
@@ -179,20 +196,90 @@ public class AutoComplete {
         for (T t : list) { if (filter.test(t)) { result.add(t); } }
         return result;
     }
-    /** Package-private for tests; consider this class private. */
-    static class CommandDescriptor {
-        final String functionName;
-        final String commandName;
-        CommandDescriptor(String functionName, String commandName) {
-            this.functionName = functionName;
-            this.commandName = commandName;
+    private static String firstLine(String[] text) {
+        if (text == null || text.length == 0) { return ""; }
+        return CommandLine.Help.Ansi.OFF.new Text(text[0].replace("%n", " ")).plainString().trim();
+    }
+
+    /**
+     * The commands, options and subcommands of a picocli-based application that completion scripts are generated for,
+     * extracted from its {@code CommandLine} tree in a single pass. The same model can be rendered as bash, zsh and
+     * fish completion scripts without walking the command tree again.
+     * @see #model(CommandLine)
+     */
+    public static final class CompletionModel {
+        private final List<CompletionCommand> commands = new ArrayList<CompletionCommand>();
+
+        private CompletionModel(CommandLine commandLine) {
+            CompletionCommand root = new CompletionCommand(null, new ArrayList<String>(), commandLine);
+            commands.add(root);
+            addSubcommands(root, commandLine);
         }
-        public int hashCode() { return functionName.hashCode() * 37 + commandName.hashCode(); }
-        public boolean equals(Object obj) {
-            if (!(obj instanceof CommandDescriptor)) { return false; }
-            if (obj == this) { return true; }
-            CommandDescriptor other = (CommandDescriptor) obj;
-            return other.functionName.equals(functionName) && other.commandName.equals(commandName);
+        private void addSubcommands(CompletionCommand parent, CommandLine commandLine) {
+            // list all subcommands of the command, then recursively do the same for each subcommand
+            for (Map.Entry<String, CommandLine> entry : commandLine.getSubcommands().entrySet()) {
+                List<String> path = new ArrayList<String>(parent.path);
+                path.add(entry.getKey());
+                CompletionCommand command = new CompletionCommand(entry.getKey(), path, entry.getValue());
+                parent.subcommands.put(entry.getKey(), command);
+                commands.add(command);
+            }
+            for (Map.Entry<String, CommandLine> entry : commandLine.getSubcommands().entrySet()) {
+                addSubcommands(parent.subcommands.get(entry.getKey()), entry.getValue());
+            }
+        }
+        /** Returns {@code true} if no options or subcommands were added to the command tree since this model was built. */
+        boolean isCurrent() {
+            for (CompletionCommand command : commands) {
+                if (command.spec.modCount() != command.modCount) { return false; }
+            }
+            return true;
+        }
+        /** Returns the top-level command, followed by all subcommands of each command before their own subcommands. */
+        List<CompletionCommand> commands() { return commands; }
+    }
+    /** A command of a {@link CompletionModel}. */
+    static final class CompletionCommand {
+        final String name; // null for the top-level command, which is named after the script
+        final List<String> path; // subcommand names from the top-level command
+        final CommandSpec spec;
+        final int modCount;
+        final String description;
+        final List<OptionSpec> flagOptions;
+        final List<OptionSpec> argOptions;
+        final List<OptionSpec> enumOptions;
+        final Map<String, CompletionCommand> subcommands = new LinkedHashMap<String, CompletionCommand>();
+        CompletionCommand(String name, List<String> path, CommandLine commandLine) {
+            this.name = name;
+            this.path = path;
+            this.spec = commandLine.getCommandSpec();
+            this.modCount = spec.modCount();
+            this.description = firstLine(spec.header().length > 0 ? spec.header() : spec.description());
+            this.flagOptions = filter(spec.options(), new BooleanArgFilter());
+            this.argOptions = filter(spec.options(), negate(new BooleanArgFilter()));
+            this.enumOptions = filter(spec.options(), new EnumArgFilter());
+        }
+        String name(String scriptName) { return name == null ? scriptName : name; }
+    }
+
+    private static SoftReference<CompletionModel> lastModel = new SoftReference<CompletionModel>(null);
+
+    /**
+     * Returns the completion model of the specified command and its subcommands. The model of the last command tree
+     * is cached until options or subcommands are added to that tree, so generating completion scripts for several
+     * shells only walks the command tree once.
+     * @param commandLine the {@code CommandLine} instance for the command line application
+     * @return the completion model
+     */
+    public static CompletionModel model(CommandLine commandLine) {
+        if (commandLine == null) { throw new NullPointerException("commandLine"); }
+        synchronized (AutoComplete.class) {
+            CompletionModel model = lastModel.get();
+            if (model == null || model.commands().get(0).spec != commandLine.getCommandSpec() || !model.isCurrent()) {
+                model = new CompletionModel(commandLine);
+                lastModel = new SoftReference<CompletionModel>(model);
+            }
+            return model;
         }
     }
 
@@ -255,6 +342,28 @@ public class AutoComplete {
             "}\n" +
             "\n";
 
+    private static final String INDEX_LOOKUP = "" +
+            "# _picocli_lookup_%1$s takes two arguments: the path of subcommand names of a command\n" +
+            "# (empty for the top-level command) and the name of an option of that command.\n" +
+            "# It looks the option up in the completion index, where each line lists the command path,\n" +
+            "# the option name and the space-separated values of the option, separated by '|'.\n" +
+            "#\n" +
+            "# Returns zero (no error) and sets INDEX_VALUES if the index lists values for the option,\n" +
+            "# otherwise returns 1 (error).\n" +
+            "function _picocli_lookup_%1$s() {\n" +
+            "  local lIndex lPath lOption lValues\n" +
+            "  lIndex=\"%2$s\"\n" +
+            "  [ -r \"$lIndex\" ] || return 1\n" +
+            "  while IFS='|' read -r lPath lOption lValues; do\n" +
+            "    if [ \"$lPath\" == \"$1\" ] && [ \"$lOption\" == \"$2\" ]; then\n" +
+            "      INDEX_VALUES=\"$lValues\"\n" +
+            "      return 0\n" +
+            "    fi\n" +
+            "  done < \"$lIndex\"\n" +
+            "  return 1\n" +
+            "}\n" +
+            "\n";
+
     private static final String FOOTER = "" +
             "\n" +
             "# Define a completion specification (a compspec) for the\n" +
@@ -277,12 +386,11 @@ public class AutoComplete {
      * @throws IOException if a problem occurred writing to the specified files
      */
     public static void bash(String scriptName, File out, File command, CommandLine commandLine) throws IOException {
-        String autoCompleteScript = bash(scriptName, commandLine);
         Writer completionWriter = null;
         Writer scriptWriter = null;
         try {
-            completionWriter = new FileWriter(out);
-            completionWriter.write(autoCompleteScript);
+            completionWriter = new BufferedWriter(new FileWriter(out));
+            bash(scriptName, commandLine, completionWriter);
 
             if (command != null) {
                 scriptWriter = new FileWriter(command);
@@ -306,25 +414,76 @@ public class AutoComplete {
      * @return source code for an autocompletion bash script
      */
     public static String bash(String scriptName, CommandLine commandLine) {
+        StringBuilder result = new StringBuilder(4096);
+        try {
+            bash(scriptName, commandLine, result);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // StringBuilder doesn't throw IOException
+        }
+        return result.toString();
+    }
+
+    /**
+     * Generates the source code for an autocompletion bash script for the specified picocli-based application, and
+     * writes it to the specified {@code Appendable} as it is generated. Generation takes time proportional to the size
+     * of the command tree, and apart from a list of the functions to generate, nothing is kept in memory.
+     * @param scriptName the name of the command to generate a bash autocompletion script for
+     * @param commandLine the {@code CommandLine} instance for the command line application
+     * @param out the {@code Appendable} to write the autocompletion bash script source code to
+     * @throws IOException if a problem occurred writing to the specified {@code Appendable}
+     */
+    public static void bash(String scriptName, CommandLine commandLine, Appendable out) throws IOException {
+        bash(scriptName, commandLine, null, out);
+    }
+
+    /**
+     * Generates the source code for an autocompletion bash script for the specified picocli-based application, which
+     * completes option parameters with the values listed in a completion index file, and writes it to the specified
+     * {@code Appendable} as it is generated. The index is read by the script itself, so completion never starts a JVM.
+     * Each line of the index lists the path of subcommand names of a command (separated by spaces, empty for the
+     * top-level command), the name of an option of that command and the space-separated values of that option,
+     * separated by {@code '|'}. In the bash, zsh and fish scripts alike, values listed in the index take precedence
+     * over the completions derived from the type of the option (enum constants, file names or host names), which are
+     * only used when the index doesn't list values for the option.
+     * @param scriptName the name of the command to generate a bash autocompletion script for
+     * @param commandLine the {@code CommandLine} instance for the command line application
+     * @param indexFile path of the completion index file, which may refer to shell variables like {@code ${HOME}}, or
+     *          {@code null} if option parameters should not be looked up in an index
+     * @param out the {@code Appendable} to write the autocompletion bash script source code to
+     * @throws IOException if a problem occurred writing to the specified {@code Appendable}
+     */
+    public static void bash(String scriptName, CommandLine commandLine, String indexFile, Appendable out) throws IOException {
+        bash(scriptName, model(commandLine), indexFile, out);
+    }
+
+    /**
+     * Generates the source code for an autocompletion bash script from the specified completion model, and writes it
+     * to the specified {@code Appendable} as it is generated.
+     * @param scriptName the name of the command to generate a bash autocompletion script for
+     * @param model the completion model of the command line application
+     * @param indexFile path of the completion index file (see {@link #bash(String, CommandLine, String, Appendable)}),
+     *          or {@code null} if option parameters should not be looked up in an index
+     * @param out the {@code Appendable} to write the autocompletion bash script source code to
+     * @throws IOException if a problem occurred writing to the specified {@code Appendable}
+     */
+    public static void bash(String scriptName, CompletionModel model, String indexFile, Appendable out) throws IOException {
         if (scriptName == null)  { throw new NullPointerException("scriptName"); }
-        if (commandLine == null) { throw new NullPointerException("commandLine"); }
-        String result = "";
-        result += format(HEADER, scriptName, CommandLine.VERSION);
+        if (model == null)       { throw new NullPointerException("model"); }
+        out.append(format(HEADER, scriptName, CommandLine.VERSION));
+        if (indexFile != null) {
+            out.append(format(INDEX_LOOKUP, scriptName, indexFile));
+        }
 
-        Map<CommandDescriptor, CommandLine> function2command = new LinkedHashMap<CommandDescriptor, CommandLine>();
-        result += generateEntryPointFunction(scriptName, commandLine, function2command);
+        generateEntryPointFunction(scriptName, model, out);
 
-        for (Map.Entry<CommandDescriptor, CommandLine> functionSpec : function2command.entrySet()) {
-            CommandDescriptor descriptor = functionSpec.getKey();
-            result += generateFunctionForCommand(descriptor.functionName, descriptor.commandName, functionSpec.getValue());
+        for (CompletionCommand command : model.commands()) {
+            String indexLookup = indexFile == null ? null : format("_picocli_lookup_%s \"%s\"", scriptName, concat(" ", command.path));
+            generateFunctionForCommand(scriptName, command, indexLookup, out);
         }
-        result += format(FOOTER, scriptName);
-        return result;
+        out.append(format(FOOTER, scriptName));
     }
 
-    private static String generateEntryPointFunction(String scriptName,
-                                                     CommandLine commandLine,
-                                                     Map<CommandDescriptor, CommandLine> function2command) {
+    private static void generateEntryPointFunction(String scriptName, CompletionModel model, Appendable out) throws IOException {
         String HEADER = "" +
                 "# Bash completion entry point function.\n" +
                 "# _complete_%1$s finds which commands and subcommands have been specified\n" +
@@ -351,48 +510,27 @@ public class AutoComplete {
                 "  _picocli_%1$s; return $?;\n" +
                 "}\n";
 
-        StringBuilder buff = new StringBuilder(1024);
-        buff.append(format(HEADER, scriptName));
-
-        List<String> predecessors = new ArrayList<String>();
-        List<String> functionCallsToArrContains = new ArrayList<String>();
+        out.append(format(HEADER, scriptName));
 
-        function2command.put(new CommandDescriptor("_picocli_" + scriptName, scriptName), commandLine);
-        generateFunctionCallsToArrContains(scriptName, predecessors, commandLine, buff, functionCallsToArrContains, function2command);
-
-        buff.append("\n");
-        Collections.reverse(functionCallsToArrContains);
-        for (String func : functionCallsToArrContains) {
-            buff.append(func);
+        // CMDS<n> lists the subcommand path of the command at index n + 1 of the model
+        List<CompletionCommand> commands = model.commands();
+        for (int i = 1; i < commands.size(); i++) {
+            out.append("  CMDS").append(String.valueOf(i - 1)).append("=(")
+                    .append(concat(" ", commands.get(i).path, null, new Bashify())).append(")\n");
         }
-        buff.append(format(FOOTER, scriptName));
-        return buff.toString();
-    }
 
-    private static void generateFunctionCallsToArrContains(String scriptName,
-                                                           List<String> predecessors,
-                                                           CommandLine commandLine,
-                                                           StringBuilder buff,
-                                                           List<String> functionCalls,
-                                                           Map<CommandDescriptor, CommandLine> function2command) {
-
-        // breadth-first: generate command lists and function calls for predecessors + each subcommand
-        for (Map.Entry<String, CommandLine> entry : commandLine.getSubcommands().entrySet()) {
-            int count = functionCalls.size();
-            String functionName = "_picocli_" + scriptName + "_" + concat("_", predecessors, entry.getKey(), new Bashify());
-            functionCalls.add(format("  ArrContains COMP_WORDS CMDS%2$d && { %1$s; return $?; }\n", functionName, count));
-            buff.append(      format("  CMDS%2$d=(%1$s)\n", concat(" ", predecessors, entry.getKey(), new Bashify()), count));
-
-            // remember the function name and associated subcommand so we can easily generate a function later
-            function2command.put(new CommandDescriptor(functionName, entry.getKey()), entry.getValue());
+        out.append("\n");
+        // most specific (last listed) subcommands first
+        for (int i = commands.size() - 1; i >= 1; i--) {
+            out.append("  ArrContains COMP_WORDS CMDS").append(String.valueOf(i - 1))
+                    .append(" && { ").append(bashFunctionName(scriptName, commands.get(i))).append("; return $?; }\n");
         }
+        out.append(format(FOOTER, scriptName));
+    }
 
-        // then recursively do the same for all nested subcommands
-        for (Map.Entry<String, CommandLine> entry : commandLine.getSubcommands().entrySet()) {
-            predecessors.add(entry.getKey());
-            generateFunctionCallsToArrContains(scriptName, predecessors, entry.getValue(), buff, functionCalls, function2command);
-            predecessors.remove(predecessors.size() - 1);
-        }
+    private static String bashFunctionName(String scriptName, CompletionCommand command) {
+        if (command.path.isEmpty()) { return "_picocli_" + scriptName; }
+        return "_picocli_" + scriptName + "_" + concat("_", command.path, null, new Bashify());
     }
     private static String concat(String infix, String... values) {
         return concat(infix, Arrays.asList(values));
@@ -411,7 +549,7 @@ public class AutoComplete {
         return sb.append(normalize.apply(lastValue)).toString();
     }
 
-    private static String generateFunctionForCommand(String functionName, String commandName, CommandLine commandLine) {
+    private static void generateFunctionForCommand(String scriptName, CompletionCommand command, String indexLookup, Appendable out) throws IOException {
         String HEADER = "" +
                 "\n" +
                 "# Generates completions for the options and subcommands of the `%s` %scommand.\n" +
@@ -429,25 +567,20 @@ public class AutoComplete {
                 "  COMPREPLY=( $(compgen -W \"${FLAG_OPTS} ${ARG_OPTS} ${COMMANDS}\" -- ${CURR_WORD}) )\n" +
                 "}\n";
 
-        // Get the fields annotated with @Option and @Parameters for the specified CommandLine.
-        CommandSpec commandSpec = commandLine.getCommandSpec();
-
-        // Build a list of "flag" options that take no parameters and "arg" options that do take parameters, and subcommands.
-        String flagOptionNames = optionNames(filter(commandSpec.options(), new BooleanArgFilter()));
-        List<OptionSpec> argOptionFields = filter(commandSpec.options(), negate(new BooleanArgFilter()));
+        // The model lists "flag" options that take no parameters and "arg" options that do take parameters, and subcommands.
+        String flagOptionNames = optionNames(command.flagOptions);
+        List<OptionSpec> argOptionFields = command.argOptions;
         String argOptionNames = optionNames(argOptionFields);
-        String commands = concat(" ", new ArrayList<String>(commandLine.getSubcommands().keySet())).trim();
+        String commands = concat(" ", new ArrayList<String>(command.subcommands.keySet())).trim();
 
         // Generate the header: the function declaration, CURR_WORD, PREV_WORD and COMMANDS, FLAG_OPTS and ARG_OPTS.
-        StringBuilder buff = new StringBuilder(1024);
-        String sub = functionName.equals("_picocli_" + commandName) ? "" : "sub";
-        buff.append(format(HEADER, commandName, sub, functionName, commands, flagOptionNames, argOptionNames));
+        String sub = command.path.isEmpty() ? "" : "sub";
+        out.append(format(HEADER, command.name(scriptName), sub, bashFunctionName(scriptName, command), commands, flagOptionNames, argOptionNames));
 
         // Generate completion lists for options with a known set of valid values.
         // Starting with java enums.
-        List<OptionSpec> enumOptions = filter(commandSpec.options(), new EnumArgFilter());
-        for (OptionSpec f : enumOptions) {
-            buff.append(format("  %s_OPTION_ARGS=\"%s\" # %s values\n",
+        for (OptionSpec f : command.enumOptions) {
+            out.append(format("  %s_OPTION_ARGS=\"%s\" # %s values\n",
                     bashify(f.paramLabel()),
                     concat(" ", Arrays.asList((Enum[]) f.type().getEnumConstants()), null, new EnumNameFunction()).trim(),
                     f.type().getSimpleName()));
@@ -458,54 +591,391 @@ public class AutoComplete {
         // java.security.AlgorithmParameterGenerator, java.security.AlgorithmParameters, java.security.KeyFactory, java.security.KeyPairGenerator, java.security.KeyStore, java.security.MessageDigest, java.security.Signature
         // sql.Types?
 
+        // Values listed in the completion index take precedence over the types of options
+        if (indexLookup != null) {
+            out.append("\n");
+            out.append("  if ").append(indexLookup).append(" \"${PREV_WORD}\"; then\n");
+            out.append("    COMPREPLY=( $( compgen -W \"${INDEX_VALUES}\" -- ${CURR_WORD} ) )\n");
+            out.append("    return $?\n");
+            out.append("  fi\n");
+        }
+
         // Now generate the "case" switches for the options whose arguments we can generate completions for
-        buff.append(generateOptionsSwitch(argOptionFields, enumOptions));
+        generateOptionsSwitch(argOptionFields, out);
 
         // Generate the footer: a default COMPREPLY to fall back to, and the function closing brace.
-        buff.append(format(FOOTER));
-        return buff.toString();
+        out.append(FOOTER);
+    }
+
+    private static void generateOptionsSwitch(List<OptionSpec> argOptions, Appendable out) throws IOException {
+        if (!hasOptionsCases(argOptions)) {
+            return;
+        }
+        out.append("\n");
+        out.append("  case ${CURR_WORD} in\n"); // outer case
+        generateOptionsCases(argOptions, "", "\"\"", out);
+        out.append("    *)\n");
+        out.append("      case ${PREV_WORD} in\n"); // inner case
+        generateOptionsCases(argOptions, "    ", "$CURR_WORD", out);
+        out.append("      esac\n"); // end inner case
+        out.append("  esac\n"); // end outer case
     }
 
-    private static String generateOptionsSwitch(List<OptionSpec> argOptions, List<OptionSpec> enumOptions) {
-        StringBuilder buff = new StringBuilder(1024);
-        buff.append("\n");
-        buff.append("  case ${CURR_WORD} in\n"); // outer case
-        String outerCases = generateOptionsCases(argOptions, enumOptions, "", "\"\"");
-        if (outerCases.length() == 0) {
-            return "";
+    private static boolean hasOptionsCases(List<OptionSpec> argOptionFields) {
+        for (OptionSpec option : argOptionFields) {
+            if (option.type().isEnum() || isPath(option) || option.type().equals(InetAddress.class)) { return true; }
         }
-        buff.append(outerCases);
-        buff.append("    *)\n");
-        buff.append("      case ${PREV_WORD} in\n"); // inner case
-        buff.append(generateOptionsCases(argOptions, enumOptions, "    ", "$CURR_WORD"));
-        buff.append("      esac\n"); // end inner case
-        buff.append("  esac\n"); // end outer case
-        return buff.toString();
+        return false;
+    }
+    private static boolean isPath(OptionSpec option) {
+        return option.type().equals(File.class) || "java.nio.file.Path".equals(option.type().getName());
     }
 
-    private static String generateOptionsCases(List<OptionSpec> argOptionFields, List<OptionSpec> enumOptions, String indent, String currWord) {
-        StringBuilder buff = new StringBuilder(1024);
+    private static void generateOptionsCases(List<OptionSpec> argOptionFields, String indent, String currWord, Appendable out) throws IOException {
         for (OptionSpec option : argOptionFields) {
-            if (enumOptions.contains(option)) {
-                buff.append(format("%s    %s)\n", indent, concat("|", option.names()))); // "    -u|--timeUnit)\n"
-                buff.append(format("%s      COMPREPLY=( $( compgen -W \"${%s_OPTION_ARGS}\" -- %s ) )\n", indent, bashify(option.paramLabel()), currWord));
-                buff.append(format("%s      return $?\n", indent));
-                buff.append(format("%s      ;;\n", indent));
-            } else if (option.type().equals(File.class) || "java.nio.file.Path".equals(option.type().getName())) {
-                buff.append(format("%s    %s)\n", indent, concat("|", option.names()))); // "    -f|--file)\n"
-                buff.append(format("%s      compopt -o filenames\n", indent));
-                buff.append(format("%s      COMPREPLY=( $( compgen -f -- %s ) ) # files\n", indent, currWord));
-                buff.append(format("%s      return $?\n", indent));
-                buff.append(format("%s      ;;\n", indent));
+            if (option.type().isEnum()) {
+                out.append(indent).append("    ").append(concat("|", option.names())).append(")\n"); // "    -u|--timeUnit)\n"
+                out.append(indent).append("      COMPREPLY=( $( compgen -W \"${").append(bashify(option.paramLabel()))
+                        .append("_OPTION_ARGS}\" -- ").append(currWord).append(" ) )\n");
+                out.append(indent).append("      return $?\n");
+                out.append(indent).append("      ;;\n");
+            } else if (isPath(option)) {
+                out.append(indent).append("    ").append(concat("|", option.names())).append(")\n"); // "    -f|--file)\n"
+                out.append(indent).append("      compopt -o filenames\n");
+                out.append(indent).append("      COMPREPLY=( $( compgen -f -- ").append(currWord).append(" ) ) # files\n");
+                out.append(indent).append("      return $?\n");
+                out.append(indent).append("      ;;\n");
             } else if (option.type().equals(InetAddress.class)) {
-                buff.append(format("%s    %s)\n", indent, concat("|", option.names()))); // "    -h|--host)\n"
-                buff.append(format("%s      compopt -o filenames\n", indent));
-                buff.append(format("%s      COMPREPLY=( $( compgen -A hostname -- %s ) )\n", indent, currWord));
-                buff.append(format("%s      return $?\n", indent));
-                buff.append(format("%s      ;;\n", indent));
+                out.append(indent).append("    ").append(concat("|", option.names())).append(")\n"); // "    -h|--host)\n"
+                out.append(indent).append("      compopt -o filenames\n");
+                out.append(indent).append("      COMPREPLY=( $( compgen -A hostname -- ").append(currWord).append(" ) )\n");
+                out.append(indent).append("      return $?\n");
+                out.append(indent).append("      ;;\n");
             }
         }
-        return buff.toString();
+    }
+
+    private static final String ZSH_HEADER = "" +
+            "#compdef %1$s\n" +
+            "#\n" +
+            "# %1$s Zsh Completion\n" +
+            "# ======================\n" +
+            "#\n" +
+            "# Zsh completion support for the `%1$s` command,\n" +
+            "# generated by [picocli](http://picocli.info/) version %2$s.\n" +
+            "#\n" +
+            "# Installation\n" +
+            "# ------------\n" +
+            "#\n" +
+            "# Save this file as `_%1$s` in a folder of your `fpath`, and open a new zsh console.\n" +
+            "#\n" +
+            "\n";
+
+    private static final String ZSH_INDEX_LOOKUP = "" +
+            "# _picocli_lookup_%1$s takes two arguments: the path of subcommand names of a command\n" +
+            "# (empty for the top-level command) and the name of an option of that command.\n" +
+            "# Returns zero (no error) and sets INDEX_VALUES if the completion index lists values\n" +
+            "# for the option, otherwise returns 1 (error).\n" +
+            "function _picocli_lookup_%1$s() {\n" +
+            "  local lIndex lPath lOption lValues\n" +
+            "  lIndex=\"%2$s\"\n" +
+            "  [[ -r \"$lIndex\" ]] || return 1\n" +
+            "  while IFS='|' read -r lPath lOption lValues; do\n" +
+            "    if [[ \"$lPath\" == \"$1\" && \"$lOption\" == \"$2\" ]]; then\n" +
+            "      INDEX_VALUES=(${=lValues})\n" +
+            "      return 0\n" +
+            "    fi\n" +
+            "  done < \"$lIndex\"\n" +
+            "  return 1\n" +
+            "}\n" +
+            "\n";
+
+    /**
+     * Generates and returns the source code for an autocompletion zsh script for the specified picocli-based application.
+     * @param scriptName the name of the command to generate a zsh autocompletion script for
+     * @param commandLine the {@code CommandLine} instance for the command line application
+     * @return source code for an autocompletion zsh script
+     */
+    public static String zsh(String scriptName, CommandLine commandLine) {
+        StringBuilder result = new StringBuilder(4096);
+        try {
+            zsh(scriptName, model(commandLine), null, result);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // StringBuilder doesn't throw IOException
+        }
+        return result.toString();
+    }
+
+    /**
+     * Generates the source code for an autocompletion zsh script from the specified completion model, and writes it
+     * to the specified {@code Appendable} as it is generated.
+     * @param scriptName the name of the command to generate a zsh autocompletion script for
+     * @param model the completion model of the command line application
+     * @param indexFile path of the completion index file (see {@link #bash(String, CommandLine, String, Appendable)}),
+     *          which may refer to shell variables like {@code ${HOME}}, or {@code null} if option parameters should
+     *          not be looked up in an index
+     * @param out the {@code Appendable} to write the autocompletion zsh script source code to
+     * @throws IOException if a problem occurred writing to the specified {@code Appendable}
+     */
+    public static void zsh(String scriptName, CompletionModel model, String indexFile, Appendable out) throws IOException {
+        if (scriptName == null)  { throw new NullPointerException("scriptName"); }
+        if (model == null)       { throw new NullPointerException("model"); }
+        out.append(format(ZSH_HEADER, scriptName, CommandLine.VERSION));
+        if (indexFile != null) {
+            out.append(format(ZSH_INDEX_LOOKUP, scriptName, indexFile));
+        }
+
+        // entry point: find the last specified subcommand and delegate to its function
+        out.append("# Zsh completion entry point function.\n");
+        out.append("# _").append(scriptName).append(" finds which subcommands have been specified on the command line\n");
+        out.append("# and delegates to the function generating completions for the last specified subcommand.\n");
+        out.append("function _").append(scriptName).append("() {\n");
+        out.append("  local lPath='' lWord\n");
+        out.append("  for lWord in \"${(@)words[2,CURRENT-1]}\"; do\n");
+        out.append("    case \"${lPath}|${lWord}\" in\n");
+        for (CompletionCommand command : model.commands()) {
+            for (CompletionCommand sub : command.subcommands.values()) {
+                out.append("      ").append(shellQuote(concat(" ", command.path) + "|" + sub.name))
+                        .append(") lPath=").append(shellQuote(concat(" ", sub.path))).append(" ;;\n");
+            }
+        }
+        out.append("    esac\n");
+        out.append("  done\n");
+        out.append("  case \"${lPath}\" in\n");
+        for (CompletionCommand command : model.commands()) {
+            out.append("    ").append(shellQuote(concat(" ", command.path))).append(") ")
+                    .append(bashFunctionName(scriptName, command)).append(" ;;\n");
+        }
+        out.append("  esac\n");
+        out.append("}\n");
+
+        for (CompletionCommand command : model.commands()) {
+            generateZshFunctionForCommand(scriptName, command, indexFile != null, out);
+        }
+        out.append("\n_").append(scriptName).append(" \"$@\"\n");
+    }
+
+    private static void generateZshFunctionForCommand(String scriptName, CompletionCommand command, boolean index, Appendable out) throws IOException {
+        out.append("\n");
+        out.append("# Generates completions for the options and subcommands of the `").append(command.name(scriptName))
+                .append(command.path.isEmpty() ? "` command.\n" : "` subcommand.\n");
+        out.append("function ").append(bashFunctionName(scriptName, command)).append("() {\n");
+        out.append("  local -a lCommands lOptions INDEX_VALUES\n");
+        out.append("  lCommands=(\n");
+        for (CompletionCommand sub : command.subcommands.values()) {
+            out.append("    ").append(shellQuote(sub.name.replace(":", "\\:") + ":" + sub.description)).append("\n");
+        }
+        out.append("  )\n");
+        out.append("  lOptions=(\n");
+        for (OptionSpec option : command.spec.options()) {
+            if (option.hidden()) { continue; }
+            for (String name : option.names()) {
+                out.append("    ").append(shellQuote(name.replace(":", "\\:") + ":" + firstLine(option.description()))).append("\n");
+            }
+        }
+        out.append("  )\n");
+        if (index) {
+            out.append("  if _picocli_lookup_").append(scriptName).append(" ").append(shellQuote(concat(" ", command.path)))
+                    .append(" \"${words[CURRENT-1]}\"; then\n");
+            out.append("    compadd -- \"${INDEX_VALUES[@]}\"\n");
+            out.append("    return\n");
+            out.append("  fi\n");
+        }
+        List<OptionSpec> argOptions = new ArrayList<OptionSpec>();
+        for (OptionSpec option : command.argOptions) {
+            if (!option.hidden()) { argOptions.add(option); }
+        }
+        if (!argOptions.isEmpty()) {
+            out.append("  case \"${words[CURRENT-1]}\" in\n");
+            for (OptionSpec option : argOptions) {
+                out.append("    ").append(shellQuotedNames(option)).append(")\n");
+                if (option.type().isEnum()) {
+                    out.append("      compadd -- ").append(concat(" ", Arrays.asList((Enum[]) option.type().getEnumConstants()), null, new EnumNameFunction()).trim()).append("\n");
+                } else if (isPath(option)) {
+                    out.append("      _files\n");
+                } else if (option.type().equals(InetAddress.class)) {
+                    out.append("      _hosts\n");
+                } else {
+                    out.append("      _message ").append(shellQuote(option.paramLabel())).append("\n");
+                }
+                out.append("      return\n");
+                out.append("      ;;\n");
+            }
+            out.append("  esac\n");
+        }
+        out.append("  _describe -t commands 'subcommand' lCommands\n");
+        out.append("  _describe -t options 'option' lOptions\n");
+        out.append("}\n");
+    }
+
+    private static String shellQuotedNames(OptionSpec option) {
+        List<String> result = new ArrayList<String>();
+        for (String name : option.names()) { result.add(shellQuote(name)); }
+        return concat("|", result);
+    }
+    /** Quotes a value for bash and zsh: single quotes, with any single quote in the value closed, escaped and reopened. */
+    private static String shellQuote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+
+    private static final String FISH_HEADER = "" +
+            "#\n" +
+            "# %1$s Fish Completion\n" +
+            "# =======================\n" +
+            "#\n" +
+            "# Fish completion support for the `%1$s` command,\n" +
+            "# generated by [picocli](http://picocli.info/) version %2$s.\n" +
+            "#\n" +
+            "# Installation\n" +
+            "# ------------\n" +
+            "#\n" +
+            "# Save this file as `~/.config/fish/completions/%1$s.fish`, and open a new fish console.\n" +
+            "#\n" +
+            "\n";
+
+    private static final String FISH_INDEX_LOOKUP = "" +
+            "# Prints the values that the completion index lists for the command whose path of subcommand\n" +
+            "# names is the first argument, and the option named by any of the other arguments.\n" +
+            "# Returns 1 (error) if the index doesn't list values for the option.\n" +
+            "function __picocli_%1$s_values\n" +
+            "    set -l lIndex \"%2$s\"\n" +
+            "    test -r \"$lIndex\"; or return 1\n" +
+            "    while read -l lLine\n" +
+            "        set -l lFields (string split -m 2 '|' -- $lLine)\n" +
+            "        if test \"$lFields[1]\" = \"$argv[1]\"; and contains -- \"$lFields[2]\" $argv[2..-1]\n" +
+            "            string split ' ' -- $lFields[3]\n" +
+            "            return 0\n" +
+            "        end\n" +
+            "    end < \"$lIndex\"\n" +
+            "    return 1\n" +
+            "end\n" +
+            "\n";
+
+    /**
+     * Generates and returns the source code for an autocompletion fish script for the specified picocli-based application.
+     * @param scriptName the name of the command to generate a fish autocompletion script for
+     * @param commandLine the {@code CommandLine} instance for the command line application
+     * @return source code for an autocompletion fish script
+     */
+    public static String fish(String scriptName, CommandLine commandLine) {
+        StringBuilder result = new StringBuilder(4096);
+        try {
+            fish(scriptName, model(commandLine), null, result);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // StringBuilder doesn't throw IOException
+        }
+        return result.toString();
+    }
+
+    /**
+     * Generates the source code for an autocompletion fish script from the specified completion model, and writes it
+     * to the specified {@code Appendable} as it is generated.
+     * @param scriptName the name of the command to generate a fish autocompletion script for
+     * @param model the completion model of the command line application
+     * @param indexFile path of the completion index file (see {@link #bash(String, CommandLine, String, Appendable)}),
+     *          which may refer to fish variables like {@code $HOME}, or {@code null} if option parameters should not
+     *          be looked up in an index
+     * @param out the {@code Appendable} to write the autocompletion fish script source code to
+     * @throws IOException if a problem occurred writing to the specified {@code Appendable}
+     */
+    public static void fish(String scriptName, CompletionModel model, String indexFile, Appendable out) throws IOException {
+        if (scriptName == null)  { throw new NullPointerException("scriptName"); }
+        if (model == null)       { throw new NullPointerException("model"); }
+        out.append(format(FISH_HEADER, scriptName, CommandLine.VERSION));
+        if (indexFile != null) {
+            out.append(format(FISH_INDEX_LOOKUP, scriptName, indexFile));
+        }
+
+        out.append("# Prints the path of subcommand names specified on the command line.\n");
+        out.append("function __picocli_").append(scriptName).append("_path\n");
+        out.append("    set -l lPath ''\n");
+        out.append("    set -l lWords (commandline -opc)\n");
+        out.append("    set -e lWords[1]\n");
+        out.append("    for lWord in $lWords\n");
+        out.append("        switch \"$lPath|$lWord\"\n");
+        for (CompletionCommand command : model.commands()) {
+            for (CompletionCommand sub : command.subcommands.values()) {
+                out.append("            case ").append(fishQuote(concat(" ", command.path) + "|" + sub.name)).append("\n");
+                out.append("                set lPath ").append(fishQuote(concat(" ", sub.path))).append("\n");
+            }
+        }
+        out.append("        end\n");
+        out.append("    end\n");
+        out.append("    echo $lPath\n");
+        out.append("end\n");
+        out.append("\n");
+        out.append("# Returns zero (no error) if the path of subcommand names specified on the command line is the first argument.\n");
+        out.append("function __picocli_").append(scriptName).append("_using\n");
+        out.append("    set -l lPath (__picocli_").append(scriptName).append("_path)\n");
+        out.append("    test \"$lPath\" = \"$argv[1]\"\n");
+        out.append("end\n");
+        out.append("\n");
+        out.append("# Only complete file names for options that take a file\n");
+        out.append("complete -c ").append(scriptName).append(" -f\n");
+
+        for (CompletionCommand command : model.commands()) {
+            String complete = "complete -c " + scriptName + " -n "
+                    + fishQuote("__picocli_" + scriptName + "_using " + fishQuote(concat(" ", command.path)));
+            out.append("\n");
+            out.append("# `").append(command.name(scriptName)).append(command.path.isEmpty() ? "` command\n" : "` subcommand\n");
+            for (CompletionCommand sub : command.subcommands.values()) {
+                out.append(complete).append(" -a ").append(fishQuote(sub.name)).append(fishDescription(sub.description)).append("\n");
+            }
+            for (OptionSpec option : command.spec.options()) {
+                String names = fishOptionNames(option);
+                if (option.hidden() || names.length() == 0) { continue; }
+                out.append(complete).append(names).append(fishDescription(firstLine(option.description())));
+                if (command.argOptions.contains(option)) {
+                    out.append(" -r");
+                    String enumValues = option.type().isEnum()
+                            ? concat(" ", Arrays.asList((Enum[]) option.type().getEnumConstants()), null, new EnumNameFunction()).trim()
+                            : null;
+                    if (indexFile != null) {
+                        // as in bash and zsh, values listed in the completion index take precedence over the option type
+                        List<String> arguments = new ArrayList<String>();
+                        arguments.add(fishQuote(concat(" ", command.path)));
+                        for (String name : option.names()) { arguments.add(fishQuote(name)); }
+                        String values = "__picocli_" + scriptName + "_values " + concat(" ", arguments);
+                        if (enumValues != null) {
+                            values += "; or string split ' ' -- " + fishQuote(enumValues);
+                        } else if (isPath(option)) {
+                            values += "; or __fish_complete_path (commandline -ct)";
+                        } else if (option.type().equals(InetAddress.class)) {
+                            values += "; or __fish_print_hostnames";
+                        }
+                        out.append(" -a ").append(fishQuote("(" + values + ")"));
+                    } else if (enumValues != null) {
+                        out.append(" -a ").append(fishQuote(enumValues));
+                    } else if (isPath(option)) {
+                        out.append(" -F");
+                    } else if (option.type().equals(InetAddress.class)) {
+                        out.append(" -a '(__fish_print_hostnames)'");
+                    }
+                }
+                out.append("\n");
+            }
+        }
+    }
+
+    private static String fishOptionNames(OptionSpec option) {
+        StringBuilder result = new StringBuilder();
+        for (String name : option.names()) {
+            if (name.startsWith("--") && name.length() > 2) {
+                result.append(" -l ").append(fishQuote(name.substring(2)));
+            } else if (name.startsWith("-") && name.length() == 2) {
+                result.append(" -s ").append(fishQuote(name.substring(1)));
+            } else if (name.startsWith("-") && name.length() > 2) {
+                result.append(" -o ").append(fishQuote(name.substring(1)));
+            }
+        }
+        return result.toString();
+    }
+    private static String fishDescription(String description) {
+        return description.length() == 0 ? "" : " -d " + fishQuote(description);
+    }
+    /** Quotes a value for fish: single quotes, with backslashes and single quotes in the value escaped. */
+    private static String fishQuote(String value) {
+        return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
     }
 
     private static String optionNames(List<OptionSpec> options) {
@@ -38,7 +38,9 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Date;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import static java.util.Locale.ENGLISH;
 import static picocli.CommandLine.ArgSpecBuilder.abbreviate;
@@ -107,14 +109,18 @@ public class CommandLine {
 
     private final Tracer tracer = new Tracer();
     private final CommandSpec commandSpec;
-    private final Interpreter interpreter;
+    private final Map<Class<?>, ITypeConverter<?>> converterRegistry = new ConcurrentHashMap<Class<?>, ITypeConverter<?>>();
     private final IFactory factory;
 
     private boolean overwrittenOptionsAllowed = false;
     private boolean unmatchedArgumentsAllowed = false;
+    private boolean abbreviatedOptionsAllowed = false;
     private boolean expandAtFiles = true;
+    private boolean streamAtFiles = false;
+    private Charset atFileEncoding = Charset.defaultCharset();
 
     private List<String> unmatchedArguments = new ArrayList<String>();
+    private ParseResult parseResult;
     private boolean usageHelpRequested;
     private boolean versionHelpRequested;
     private boolean ignoreRequired;
@@ -149,7 +155,7 @@ public class CommandLine {
      * @since 2.2 */
     public CommandLine(Object command, IFactory factory) {
         this.factory = Assert.notNull(factory, "factory");
-        interpreter = new Interpreter();
+        registerBuiltInConverters();
         commandSpec = CommandSpecBuilder.build(command, factory);
         commandSpec.commandLine(this);
         commandSpec.validate();
@@ -369,6 +375,32 @@ public class CommandLine {
         return this;
     }
 
+    /** Returns whether options can be abbreviated on the command line, by specifying a prefix of an option name that
+     * only matches the names of a single option. For example {@code --verb} for {@code --verbose}.
+     * The default is {@code false}.
+     * @return {@code true} if options can be abbreviated, {@code false} otherwise
+     */
+    public boolean isAbbreviatedOptionsAllowed() {
+        return abbreviatedOptionsAllowed;
+    }
+
+    /** Sets whether options can be abbreviated on the command line, by specifying a prefix of an option name that
+     * only matches the names of a single option. Ambiguous prefixes are not matched to any option.
+     * <p>The specified setting will be registered with this {@code CommandLine} and the full hierarchy of its
+     * subcommands and nested sub-subcommands <em>at the moment this method is called</em>. Subcommands added
+     * later will have the default setting. To ensure a setting is applied to all
+     * subcommands, call the setter last, after adding subcommands.</p>
+     * @param newValue the new setting
+     * @return this {@code CommandLine} object, to allow method chaining
+     */
+    public CommandLine setAbbreviatedOptionsAllowed(boolean newValue) {
+        this.abbreviatedOptionsAllowed = newValue;
+        for (CommandLine command : getCommandSpec().subcommands().values()) {
+            command.setAbbreviatedOptionsAllowed(newValue);
+        }
+        return this;
+    }
+
     /** Returns the list of unmatched command line arguments, if any.
      * @return the list of unmatched command line arguments or an empty list
      * @see #isUnmatchedArgumentsAllowed()
@@ -419,7 +451,38 @@ public class CommandLine {
      *      {@link ParameterException#getCommandLine()} to get the command or subcommand whose user input was invalid
      */
     public List<CommandLine> parse(String... args) {
-        return interpreter.parse(args);
+        Interpreter interpreter = new Interpreter(true);
+        List<CommandLine> result = interpreter.parse(args);
+        parseResult = interpreter.result;
+        return result;
+    }
+
+    /** Returns the options, positional parameters and subcommands that were matched by the last call to
+     * {@link #parse(String...)} on this {@code CommandLine}, and the values they were set to.
+     * @return the parse result of the last {@code parse} call, or {@code null} if this {@code CommandLine} wasn't parsed */
+    public ParseResult getParseResult() {
+        return parseResult;
+    }
+
+    /** Parses the specified command line arguments without modifying this {@code CommandLine}, its {@code CommandSpec}
+     * or the annotated user object: the options, positional parameters and subcommands that were matched and their
+     * values are returned as an immutable {@link ParseResult}, which can then be {@linkplain ParseResult#bind(Object)
+     * bound} to a command instance. As with {@link #parse(String...)}, the values of arrays, collections and maps are
+     * added to their initial value in the user object (to a copy of it, which is the parsed value).
+     * <p>
+     * This method can be called concurrently from several threads with the same {@code CommandLine}, as long as the
+     * configuration of the command (including its registered converters) isn't modified at the same time, and the
+     * type converters used are thread-safe (all built-in converters are).
+     * </p>
+     * @param args the command line arguments to parse
+     * @return the parse result of the top-level command
+     * @throws ParameterException if the specified command line arguments are invalid; use
+     *      {@link ParameterException#getCommandLine()} to get the command or subcommand whose user input was invalid
+     */
+    public ParseResult parseArgs(String... args) {
+        Interpreter interpreter = new Interpreter(false);
+        interpreter.parse(args);
+        return interpreter.result;
     }
     /**
      * Represents a function that can process a List of {@code CommandLine} objects resulting from successfully
@@ -485,6 +548,22 @@ public class CommandLine {
             return Collections.emptyList();
         }
     }
+    /**
+     * Returns whether {@link #printHelpIfRequested(List, PrintStream, Help.Ansi)} would print help for the specified
+     * {@code CommandLine} objects, so that callers can avoid preparing to print help (like detecting whether the
+     * terminal supports ANSI escape codes) when it isn't requested.
+     * @param parsedCommands the list of {@code CommandLine} objects to check if help was requested
+     * @return {@code true} if usage or version help was requested, or the help subcommand was parsed */
+    public static boolean isHelpRequested(List<CommandLine> parsedCommands) {
+        for (int i = 0; i < parsedCommands.size(); i++) {
+            CommandLine parsed = parsedCommands.get(i);
+            if (parsed.isUsageHelpRequested() || parsed.isVersionHelpRequested()
+                    || (i > 0 && parsed.getCommand() instanceof AutoHelpMixin.HelpCommand)) {
+                return true;
+            }
+        }
+        return false;
+    }
     /**
      * Helper method that may be useful when processing the list of {@code CommandLine} objects that result from successfully
      * {@linkplain #parse(String...) parsing} command line arguments. This method prints out
@@ -820,6 +899,10 @@ public class CommandLine {
      *         .append(help.footer());
      * out.print(sb);
      * </pre>
+     * <p>The message is actually written with {@link Help#writeTo(Appendable)}, which writes the option, parameter and
+     * command lists row by row as they are laid out, so that commands with many options or subcommands don't require
+     * the whole message to be held in memory. The output is the same as the concatenation above, but the lists don't
+     * come from {@link Help#parameterList()}, {@link Help#optionList()} and {@link Help#commandList()}.</p>
      * <p>Annotate your class with {@link Command} to control many aspects of the usage help message, including
      * the program name, text of section headings and section contents, and some aspects of the auto-generated sections
      * of the usage help message.
@@ -831,23 +914,35 @@ public class CommandLine {
      * @param colorScheme the {@code ColorScheme} defining the styles for options, parameters and commands when ANSI is enabled
      */
     public void usage(PrintStream out, Help.ColorScheme colorScheme) {
-        Help help = new Help(getCommandSpec(), colorScheme);
-        StringBuilder sb = new StringBuilder()
-                .append(help.headerHeading())
-                .append(help.header())
-                .append(help.synopsisHeading())      //e.g. Usage:
-                .append(help.synopsis(help.synopsisHeadingLength())) //e.g. &lt;main class&gt; [OPTIONS] &lt;command&gt; [COMMAND-OPTIONS] [ARGUMENTS]
-                .append(help.descriptionHeading())   //e.g. %nDescription:%n%n
-                .append(help.description())          //e.g. {"Converts foos to bars.", "Use options to control conversion mode."}
-                .append(help.parameterListHeading()) //e.g. %nPositional parameters:%n%n
-                .append(help.parameterList())        //e.g. [FILE...] the files to convert
-                .append(help.optionListHeading())    //e.g. %nOptions:%n%n
-                .append(help.optionList())           //e.g. -h, --help   displays this help and exits
-                .append(help.commandListHeading())   //e.g. %nCommands:%n%n
-                .append(help.commandList())          //e.g.    add       adds the frup to the frooble
-                .append(help.footerHeading())
-                .append(help.footer());
-        out.print(sb);
+        PrintStreamBuffer buffer = new PrintStreamBuffer(out);
+        try {
+            new Help(getCommandSpec(), colorScheme).writeTo(buffer); // the message is written as it is laid out
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // PrintStreamBuffer doesn't throw IOException
+        }
+        buffer.flush();
+    }
+
+    /** Collects text written to a {@code PrintStream} in chunks of bounded size, so that text written piecemeal
+     * doesn't cause a write (and with auto-flush, a flush) of the underlying stream for every line. */
+    private static class PrintStreamBuffer implements Appendable {
+        private static final int CAPACITY = 8192;
+        private final PrintStream out;
+        private final StringBuilder buffer = new StringBuilder(CAPACITY);
+
+        PrintStreamBuffer(PrintStream out) { this.out = Assert.notNull(out, "out"); }
+
+        public Appendable append(CharSequence csq) { buffer.append(csq); return flushIfFull(); }
+        public Appendable append(CharSequence csq, int start, int end) { buffer.append(csq, start, end); return flushIfFull(); }
+        public Appendable append(char c) { buffer.append(c); return flushIfFull(); }
+        private Appendable flushIfFull() {
+            if (buffer.length() >= CAPACITY) { flush(); }
+            return this;
+        }
+        void flush() {
+            out.print(buffer);
+            buffer.setLength(0);
+        }
     }
 
     /**
@@ -1076,7 +1171,7 @@ public class CommandLine {
      * @see #addSubcommand(String, Object)
      */
     public <K> CommandLine registerConverter(Class<K> cls, ITypeConverter<K> converter) {
-        interpreter.converterRegistry.put(Assert.notNull(cls, "class"), Assert.notNull(converter, "converter"));
+        converterRegistry.put(Assert.notNull(cls, "class"), Assert.notNull(converter, "converter"));
         for (CommandLine command : getCommandSpec().commands.values()) {
             command.registerConverter(cls, converter);
         }
@@ -1132,6 +1227,36 @@ public class CommandLine {
         this.expandAtFiles = expandAtFiles;
         return this;
     }
+
+    /** Returns whether {@code @files} are read lazily while parsing, instead of being fully expanded before parsing starts.
+     * This property is {@code false} by default.
+     * @return whether argument files are streamed into the parser
+     * @see #setStreamAtFiles(boolean) */
+    public boolean isStreamAtFiles() { return streamAtFiles; }
+
+    /** Sets whether {@code @files} are read lazily while parsing. When enabled, arguments are tokenized from the file
+     * only when the parser needs them, so that very large argument files (for example millions of paths bound to a
+     * {@code List<File>} positional parameter) don't need to be held in memory as strings before being converted.
+     * The downside is that errors reading an argument file are only reported once the parser reaches it, after
+     * preceding arguments have already been applied. ({@code false} by default.)
+     * @param streamAtFiles whether argument files should be streamed into the parser
+     * @return this {@code CommandLine} object, to allow method chaining */
+    public CommandLine setStreamAtFiles(boolean streamAtFiles) {
+        this.streamAtFiles = streamAtFiles;
+        return this;
+    }
+
+    /** Returns the character encoding used to read {@code @files}. This is the platform default encoding by default.
+     * @return the character encoding of argument files */
+    public Charset getAtFileEncoding() { return atFileEncoding; }
+
+    /** Sets the character encoding used to read {@code @files}. (The platform default encoding by default.)
+     * @param atFileEncoding the character encoding of argument files
+     * @return this {@code CommandLine} object, to allow method chaining */
+    public CommandLine setAtFileEncoding(Charset atFileEncoding) {
+        this.atFileEncoding = Assert.notNull(atFileEncoding, "atFileEncoding");
+        return this;
+    }
     private static boolean empty(String str) { return str == null || str.trim().length() == 0; }
     private static boolean empty(Object[] array) { return array == null || array.length == 0; }
     private static boolean empty(Text txt) { return txt == null || txt.plain.toString().trim().length() == 0; }
@@ -1846,6 +1971,45 @@ public class CommandLine {
          */
         K convert(String value) throws Exception;
     }
+    /**
+     * A converter to {@code int} values. When a converter implementing this interface is used for an {@code int[]}
+     * option or positional parameter, values are stored without being boxed to {@code Integer}.
+     */
+    public interface IntConverter extends ITypeConverter<Integer> {
+        /**
+         * Converts the specified command line argument value to an {@code int}.
+         * @param value the command line argument String value
+         * @return the resulting value
+         * @throws Exception an exception detailing what went wrong during the conversion
+         */
+        int convertInt(String value) throws Exception;
+    }
+    /**
+     * A converter to {@code long} values. When a converter implementing this interface is used for a {@code long[]}
+     * option or positional parameter, values are stored without being boxed to {@code Long}.
+     */
+    public interface LongConverter extends ITypeConverter<Long> {
+        /**
+         * Converts the specified command line argument value to a {@code long}.
+         * @param value the command line argument String value
+         * @return the resulting value
+         * @throws Exception an exception detailing what went wrong during the conversion
+         */
+        long convertLong(String value) throws Exception;
+    }
+    /**
+     * A converter to {@code double} values. When a converter implementing this interface is used for a {@code double[]}
+     * option or positional parameter, values are stored without being boxed to {@code Double}.
+     */
+    public interface DoubleConverter extends ITypeConverter<Double> {
+        /**
+         * Converts the specified command line argument value to a {@code double}.
+         * @param value the command line argument String value
+         * @return the resulting value
+         * @throws Exception an exception detailing what went wrong during the conversion
+         */
+        double convertDouble(String value) throws Exception;
+    }
 
     /**
      * Provides version information for a command. Commands may configure a provider with the
@@ -2083,10 +2247,6 @@ public class CommandLine {
         Collections.reverse(stack);
         return stack;
     }
-    private static <T> List<T> reverseList(List<T> list) {
-        Collections.reverse(list);
-        return list;
-    }
     private static <T> T[] copy(T[] array, Class<T> cls) {
         try {
             T[] result = (T[]) Array.newInstance(cls, array.length);
@@ -2434,6 +2594,9 @@ public class CommandLine {
         private final Map<String, CommandLine> commands = new LinkedHashMap<String, CommandLine>();
         private final Map<String, OptionSpec> optionsByNameMap = new LinkedHashMap<String, OptionSpec>();
         private final Map<Character, OptionSpec> posixOptionsByKeyMap = new LinkedHashMap<Character, OptionSpec>();
+        private volatile OptionTrie optionTrie; // built lazily, discarded when options are added
+        private volatile SuggestionIndex suggestionIndex; // built on the first unmatched argument, discarded when options or subcommands are added
+        private volatile int modCount; // incremented when options or subcommands are added, so models derived from this spec can tell they are stale
         private final Map<String, CommandSpec> mixins = new LinkedHashMap<String, CommandSpec>();
         private final List<ArgSpec> requiredArgs = new ArrayList<ArgSpec>();
         private final List<OptionSpec> options = new ArrayList<OptionSpec>();
@@ -2515,6 +2678,8 @@ public class CommandLine {
          * @return this {@code CommandLine} object for method chaining */
         public CommandSpec addSubcommand(String name, CommandLine commandLine) {
             commands.put(name, commandLine);
+            suggestionIndex = null;
+            modCount++;
             commandLine.getCommandSpec().parent(this);
             return this;
         }
@@ -2522,6 +2687,9 @@ public class CommandLine {
         /** Returns the parent command of this subcommand, or {@code null} if this is a top-level command. */
         public CommandSpec parent() { return parent; }
 
+        /** Returns the number of times options or subcommands were added to this command. */
+        int modCount() { return modCount; }
+
         /** Sets the parent command of this subcommand.
          * @return this CommandSpec for method chaining */
         public CommandSpec parent(CommandSpec parent) { this.parent = parent; return this; }
@@ -2538,6 +2706,9 @@ public class CommandLine {
         public CommandSpec add(OptionSpec option) {
             option.validate();
             options.add(option);
+            optionTrie = null;
+            suggestionIndex = null;
+            modCount++;
             for (String name : option.names()) { // cannot be null or empty
                 ArgSpec existing = optionsByNameMap.put(name, option);
                 if (existing != null && !existing.equals(option)) {
@@ -2619,6 +2790,22 @@ public class CommandLine {
          * @return an immutable map of options that this command recognizes. */
         public Map<Character, OptionSpec> posixOptionsMap() { return Collections.unmodifiableMap(posixOptionsByKeyMap); }
 
+        /** Returns the trie used by the parser to match arguments to the options of this command. */
+        private OptionTrie optionTrie() {
+            OptionTrie result = optionTrie;
+            if (result == null) { optionTrie = result = new OptionTrie(optionsByNameMap, posixOptionsByKeyMap); }
+            return result;
+        }
+
+        /** Returns the option or subcommand names that the specified unmatched arguments were most likely meant to be. */
+        private List<String> suggestions(List<String> unmatched) {
+            SuggestionIndex index = suggestionIndex;
+            if (index == null) { suggestionIndex = index = new SuggestionIndex(this); }
+            Set<String> result = new LinkedHashSet<String>();
+            for (String arg : unmatched) { result.addAll(index.suggest(arg, separator())); }
+            return new ArrayList<String>(result);
+        }
+
         /** Returns the list of required options and positional parameters configured for this command.
          * @return an immutable list of the required options and positional parameters for this command. */
         public List<ArgSpec> requiredArgs() { return Collections.unmodifiableList(requiredArgs); }
@@ -2831,6 +3018,8 @@ public class CommandLine {
         private boolean required;
         private String paramLabel;
         private String splitRegex;
+        private Pattern splitPattern; // null if values are not split, or split on a single character
+        private char splitChar;       // 0 unless values are split on a single literal character
         private boolean hidden;
         private Class<?> type;
         private Class[] auxiliaryTypes;
@@ -2984,7 +3173,26 @@ public class CommandLine {
         public T converters(ITypeConverter<?>... cs) { this.converters = cs; return self(); }
 
         /** Sets a regular expression to split option parameter values or {@code ""} if the value should not be split. */
-        public T splitRegex(String splitRegex)       { this.splitRegex = splitRegex; return self(); }
+        public T splitRegex(String splitRegex)       { this.splitRegex = splitRegex; compileSplitRegex(); return self(); }
+
+        /** Compiles the split regex once, or detects that it is a single literal character which can be split on
+         * without using a regular expression at all. */
+        private void compileSplitRegex() {
+            splitPattern = null;
+            splitChar = 0;
+            if (splitRegex == null || splitRegex.length() == 0) { return; }
+            if (splitRegex.length() == 1 && ".$|()[{^?*+\\".indexOf(splitRegex.charAt(0)) < 0) {
+                splitChar = splitRegex.charAt(0);
+            } else if (splitRegex.length() == 2 && splitRegex.charAt(0) == '\\' && !Character.isLetterOrDigit(splitRegex.charAt(1))) {
+                splitChar = splitRegex.charAt(1);
+            } else {
+                try {
+                    splitPattern = Pattern.compile(splitRegex);
+                } catch (PatternSyntaxException ex) {
+                    throw new InitializationException("Invalid split regex '" + splitRegex + "': " + ex.getMessage(), ex);
+                }
+            }
+        }
 
         /** Sets whether this option should be excluded from the usage message. */
         public T hidden(boolean hidden)              { this.hidden = hidden; return self(); }
@@ -3030,7 +3238,29 @@ public class CommandLine {
         public String toString() { return toString; }
 
         private String[] splitValue(String value) {
-            return splitRegex().length() == 0 ? new String[]{value} : value.split(splitRegex());
+            if (splitChar != 0) {
+                List<String> result = new ArrayList<String>();
+                int end = splitEnd(value);
+                for (int start = 0; start <= end; ) {
+                    int next = nextSplit(value, start, end);
+                    result.add(value.substring(start, next));
+                    start = next + 1;
+                }
+                return result.toArray(new String[result.size()]);
+            }
+            return splitPattern == null ? new String[]{value} : splitPattern.split(value);
+        }
+        /** Returns the end of the last value to split from the specified value, ignoring trailing empty values like
+         * {@link String#split(String)} does (or -1 if there is none). Only used when splitting on a single character. */
+        private int splitEnd(String value) {
+            int end = value.length();
+            while (end > 0 && value.charAt(end - 1) == splitChar) { end--; }
+            return end == 0 && value.length() > 0 ? -1 : end;
+        }
+        /** Returns the end of the value starting at the specified index. Only used when splitting on a single character. */
+        private int nextSplit(String value, int start, int end) {
+            int next = value.indexOf(splitChar, start);
+            return next < 0 || next > end ? end : next;
         }
 
         /**
@@ -3271,73 +3501,658 @@ public class CommandLine {
                     && Assert.equals(this.index, other.index);
         }
     }
-    /**
-     * Helper class responsible for processing command line arguments.
-     */
+    /** The immutable result of {@linkplain CommandLine#parseArgs(String...) parsing} command line arguments for a command: the
+     * options and positional parameters that were matched with their values, the unmatched arguments and the result
+     * for the subcommand that was matched, if any.
+     * <p>
+     * Note that multi-value objects (arrays, collections and maps) are not copied, and are shared with the command
+     * instances the result is {@linkplain #bind(Object) bound} to.
+     * </p> */
+    public static final class ParseResult {
+        private final CommandSpec commandSpec;
+        private final List<OptionSpec> matchedOptions;
+        private final List<PositionalParamSpec> matchedPositionals;
+        private final Map<ArgSpec, Object> values;
+        private final List<String> unmatched;
+        private final boolean usageHelpRequested;
+        private final boolean versionHelpRequested;
+        private final ParseResult subcommand;
+
+        private ParseResult(CommandSpec commandSpec, List<ArgSpec> matched, Map<ArgSpec, Object> values, List<String> unmatched,
+                            boolean usageHelpRequested, boolean versionHelpRequested, ParseResult subcommand) {
+            this.commandSpec = commandSpec;
+            List<OptionSpec> options = new ArrayList<OptionSpec>();
+            List<PositionalParamSpec> positionals = new ArrayList<PositionalParamSpec>();
+            for (ArgSpec argSpec : matched) {
+                if (argSpec.isOption()) { options.add((OptionSpec) argSpec); } else { positionals.add((PositionalParamSpec) argSpec); }
+            }
+            this.matchedOptions = Collections.unmodifiableList(options);
+            this.matchedPositionals = Collections.unmodifiableList(positionals);
+            this.values = Collections.unmodifiableMap(new IdentityHashMap<ArgSpec, Object>(values));
+            this.unmatched = Collections.unmodifiableList(new ArrayList<String>(unmatched));
+            this.usageHelpRequested = usageHelpRequested;
+            this.versionHelpRequested = versionHelpRequested;
+            this.subcommand = subcommand;
+        }
+        /** Returns the specification of the command this result is for. */
+        public CommandSpec commandSpec() { return commandSpec; }
+        /** Returns the options that were matched, in the order they were first encountered. */
+        public List<OptionSpec> matchedOptions() { return matchedOptions; }
+        /** Returns the positional parameters that were matched, in the order they were first encountered. */
+        public List<PositionalParamSpec> matchedPositionals() { return matchedPositionals; }
+        /** Returns whether the option with the specified name was matched. */
+        public boolean hasMatchedOption(String name) {
+            OptionSpec option = commandSpec.optionsMap().get(name);
+            return option != null && values.containsKey(option);
+        }
+        /** Returns the value parsed for the specified option or positional parameter, or {@code null} if it wasn't matched. */
+        @SuppressWarnings("unchecked")
+        public <T> T matchedValue(ArgSpec argSpec) { return (T) values.get(argSpec); }
+        /** Returns the value parsed for the option with the specified name, or the specified default value if it wasn't matched. */
+        @SuppressWarnings("unchecked")
+        public <T> T matchedOptionValue(String name, T defaultValue) {
+            OptionSpec option = commandSpec.optionsMap().get(name);
+            return option != null && values.containsKey(option) ? (T) values.get(option) : defaultValue;
+        }
+        /** Returns the arguments that could not be matched (if {@linkplain CommandLine#setUnmatchedArgumentsAllowed(boolean) allowed}). */
+        public List<String> unmatched() { return unmatched; }
+        /** Returns whether an option annotated with {@link Option#usageHelp()} was matched. */
+        public boolean isUsageHelpRequested() { return usageHelpRequested; }
+        /** Returns whether an option annotated with {@link Option#versionHelp()} was matched. */
+        public boolean isVersionHelpRequested() { return versionHelpRequested; }
+        /** Returns the result for the subcommand that was matched, or {@code null} if there is none. */
+        public ParseResult subcommand() { return subcommand; }
+        /** Returns the names of this command and of the subcommands that were matched, from the top-level command down. */
+        public List<String> commandPath() {
+            List<String> result = new ArrayList<String>();
+            for (ParseResult pr = this; pr != null; pr = pr.subcommand) { result.add(pr.commandSpec.name()); }
+            return Collections.unmodifiableList(result);
+        }
+        /** Sets the values of the matched options and positional parameters of this command (not of its subcommands)
+         * on the specified command instance, which must be of the same class as the user object of the command spec.
+         * Annotated fields are set directly on the specified instance, and options of {@link Mixin @Mixin} fields are
+         * set on the mixin referenced by the corresponding field of that instance (which is created if it is {@code null}).
+         * Options of mixins that were {@linkplain CommandLine#addMixin(String, Object) added programmatically} aren't part
+         * of the command instance and aren't bound: their values are available from {@link #matchedValue(ArgSpec)}.
+         * @param command the command instance to set values on
+         * @return the specified command instance
+         * @throws PicocliException if a value could not be set, or if an option or positional parameter of the command
+         *          has a custom {@link ArgSpec.ISetter setter}, which can't target another instance */
+        public <T> T bind(T command) {
+            Map<Object, Object> targets = new IdentityHashMap<Object, Object>();
+            mapTargets(commandSpec, command, targets);
+            for (Map.Entry<ArgSpec, Object> entry : values.entrySet()) {
+                ArgSpec argSpec = entry.getKey();
+                if (!(argSpec.setter() instanceof ArgSpecBuilder.FieldSetter)) {
+                    throw new PicocliException("Could not bind value to " + argSpec + ": it has a custom setter");
+                }
+                ArgSpecBuilder.FieldSetter setter = (ArgSpecBuilder.FieldSetter) argSpec.setter();
+                Object target = targets.get(setter.scope);
+                if (target == null) { continue; } // programmatic mixin
+                try {
+                    setter.field.set(target, entry.getValue());
+                } catch (Exception ex) {
+                    throw new PicocliException("Could not bind value to " + argSpec + ": " + ex, ex);
+                }
+            }
+            return command;
+        }
+        /** Maps the user object of the specified spec and of its {@code @Mixin} fields (recursively) to the
+         * corresponding objects of the specified target instance. */
+        private static void mapTargets(CommandSpec spec, Object target, Map<Object, Object> targets) {
+            Object userObject = spec.userObject();
+            targets.put(userObject, target);
+            for (CommandSpec mixin : spec.mixins().values()) {
+                Field field = mixinField(userObject.getClass(), userObject, mixin.userObject());
+                if (field == null) { continue; } // added programmatically: not part of the instance
+                try {
+                    Object mixinTarget = field.get(target);
+                    if (mixinTarget == null) {
+                        mixinTarget = new DefaultFactory().create(field.getType());
+                        field.set(target, mixinTarget);
+                    }
+                    mapTargets(mixin, mixinTarget, targets);
+                } catch (PicocliException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    throw new PicocliException("Could not bind mixin field " + field + ": " + ex, ex);
+                }
+            }
+        }
+        private static Field mixinField(Class<?> cls, Object userObject, Object mixin) {
+            for (Class<?> c = cls; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!CommandSpecBuilder.isMixin(field)) { continue; }
+                    try {
+                        field.setAccessible(true);
+                        if (field.get(userObject) == mixin) { return field; }
+                    } catch (Exception ignored) {}
+                }
+            }
+            return null;
+        }
+    }
+    /** An argument file being tokenized. Tokens are separated by whitespace, may be quoted with {@code '} or {@code "},
+     * and anything following a {@code #} is a comment. */
+    private static class ArgumentFile {
+        private final String fileName;
+        private final Reader reader;
+        private final StreamTokenizer tokenizer;
+
+        ArgumentFile(String fileName, File file, Charset charset) {
+            this.fileName = fileName;
+            try {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), charset));
+            } catch (Exception ex) {
+                throw new InitializationException("Could not read argument file @" + fileName, ex);
+            }
+            tokenizer = new StreamTokenizer(reader);
+            tokenizer.resetSyntax();
+            tokenizer.wordChars(' ', 255);
+            tokenizer.whitespaceChars(0, ' ');
+            tokenizer.commentChar('#');
+            tokenizer.quoteChar('"');
+            tokenizer.quoteChar('\'');
+        }
+        /** Returns the next token, or {@code null} at the end of the file. */
+        String nextToken() {
+            try {
+                return tokenizer.nextToken() == StreamTokenizer.TT_EOF ? null : tokenizer.sval;
+            } catch (Exception ex) {
+                close();
+                throw new InitializationException("Could not read argument file @" + fileName, ex);
+            }
+        }
+        void close() {
+            try { reader.close(); } catch (Exception ignored) {}
+        }
+    }
+    /** A cursor over the arguments remaining to be parsed. Arguments are read by index from an array (normally the
+     * original command line arguments, which are not copied), followed by arguments pulled lazily from a source when
+     * {@code @files} are streamed. Arguments pushed back (like an option parameter split from its option) are returned
+     * before the cursor advances any further. This class is not thread-safe. */
+    private static class ArgumentCursor {
+        private final String[] args;
+        private int index;
+        private final Iterator<String> source; // null unless @files are streamed
+        // arguments pushed back first, followed by arguments read ahead from the source
+        private final ArrayDeque<String> pending;
+        private int consumed;
+
+        ArgumentCursor(String[] args, Iterator<String> source) {
+            this(args, 0, source, new ArrayDeque<String>(), 0);
+        }
+        private ArgumentCursor(String[] args, int index, Iterator<String> source, ArrayDeque<String> pending, int consumed) {
+            this.args = args;
+            this.index = index;
+            this.source = source;
+            this.pending = pending;
+            this.consumed = consumed;
+        }
+        boolean isEmpty() { return pending.isEmpty() && index >= args.length && (source == null || !source.hasNext()); }
+        String pop() {
+            if (isEmpty()) { throw new NoSuchElementException("No more arguments"); }
+            consumed++;
+            if (!pending.isEmpty()) { return pending.pop(); }
+            return index < args.length ? args[index++] : source.next();
+        }
+        String peek() {
+            if (!pending.isEmpty()) { return pending.peek(); }
+            if (index < args.length) { return args[index]; }
+            if (source == null || !source.hasNext()) { throw new NoSuchElementException("No more arguments"); }
+            pending.addLast(source.next());
+            return pending.peek();
+        }
+        void push(String arg) {
+            consumed--;
+            pending.push(arg);
+        }
+        /** Returns whether at least the specified number of arguments remain, reading no more of the source than needed. */
+        boolean hasAtLeast(int count) {
+            int available = pending.size() + args.length - index;
+            while (available < count && source != null && source.hasNext()) {
+                pending.addLast(source.next());
+                available++;
+            }
+            return available >= count;
+        }
+        /** Returns the number of arguments popped minus the number of arguments pushed back. Without {@code @files},
+         * this is the index in the original arguments of the next argument. */
+        int consumed() { return consumed; }
+        /** Returns an independent cursor at the same position. When streaming {@code @files}, this reads the whole source. */
+        ArgumentCursor copy() {
+            drainSource();
+            return new ArgumentCursor(args, index, null, new ArrayDeque<String>(pending), consumed);
+        }
+        /** Returns the remaining arguments in the order they will be popped. When streaming {@code @files}, this reads the whole source. */
+        List<String> remainder() {
+            drainSource();
+            List<String> result = new ArrayList<String>(pending);
+            result.addAll(Arrays.asList(args).subList(index, args.length));
+            return result;
+        }
+        private void drainSource() {
+            while (source != null && source.hasNext()) { pending.addLast(source.next()); }
+        }
+    }
+    /** Accumulates the values of an array option or positional parameter while parsing, so that an option specified
+     * many times doesn't have its array copied each time. The array is created once, when parsing of the command
+     * finishes. Arrays of {@code int}, {@code long} and {@code double} are accumulated without boxing. */
+    private abstract static class ArrayBuffer {
+        int size;
+
+        static ArrayBuffer create(Class<?> type) {
+            if (type == Integer.TYPE) { return new IntArrayBuffer(); }
+            if (type == Long.TYPE)    { return new LongArrayBuffer(); }
+            if (type == Double.TYPE)  { return new DoubleArrayBuffer(); }
+            return new ObjectArrayBuffer(type);
+        }
+        abstract void add(Object value);
+        abstract Object toArray();
+        abstract Object last();
+        /** Converts a value and adds the result. Subclasses for primitive types avoid boxing when the converter allows it. */
+        void convertAndAdd(ITypeConverter<?> converter, String value) throws Exception {
+            Object converted = converter.convert(value);
+            if (converted instanceof Collection<?>) {
+                for (Object element : (Collection<?>) converted) { add(element); }
+            } else {
+                add(converted);
+            }
+        }
+        void addArray(Object array) {
+            if (array == null) { return; }
+            int length = Array.getLength(array);
+            for (int i = 0; i < length; i++) { add(Array.get(array, i)); }
+        }
+        static int grow(int capacity) { return Math.max(16, capacity + (capacity >> 1)); }
+    }
+    private static class IntArrayBuffer extends ArrayBuffer {
+        private int[] values = new int[0];
+        void add(Object value) {
+            if (size == values.length) { values = Arrays.copyOf(values, grow(size)); }
+            values[size++] = (Integer) value;
+        }
+        void convertAndAdd(ITypeConverter<?> converter, String value) throws Exception {
+            if (!(converter instanceof IntConverter)) { super.convertAndAdd(converter, value); return; }
+            int converted = ((IntConverter) converter).convertInt(value);
+            if (size == values.length) { values = Arrays.copyOf(values, grow(size)); }
+            values[size++] = converted;
+        }
+        Object toArray() { return Arrays.copyOf(values, size); }
+        Object last() { return values[size - 1]; }
+    }
+    private static class LongArrayBuffer extends ArrayBuffer {
+        private long[] values = new long[0];
+        void add(Object value) {
+            if (size == values.length) { values = Arrays.copyOf(values, grow(size)); }
+            values[size++] = (Long) value;
+        }
+        void convertAndAdd(ITypeConverter<?> converter, String value) throws Exception {
+            if (!(converter instanceof LongConverter)) { super.convertAndAdd(converter, value); return; }
+            long converted = ((LongConverter) converter).convertLong(value);
+            if (size == values.length) { values = Arrays.copyOf(values, grow(size)); }
+            values[size++] = converted;
+        }
+        Object toArray() { return Arrays.copyOf(values, size); }
+        Object last() { return values[size - 1]; }
+    }
+    private static class DoubleArrayBuffer extends ArrayBuffer {
+        private double[] values = new double[0];
+        void add(Object value) {
+            if (size == values.length) { values = Arrays.copyOf(values, grow(size)); }
+            values[size++] = (Double) value;
+        }
+        void convertAndAdd(ITypeConverter<?> converter, String value) throws Exception {
+            if (!(converter instanceof DoubleConverter)) { super.convertAndAdd(converter, value); return; }
+            double converted = ((DoubleConverter) converter).convertDouble(value);
+            if (size == values.length) { values = Arrays.copyOf(values, grow(size)); }
+            values[size++] = converted;
+        }
+        Object toArray() { return Arrays.copyOf(values, size); }
+        Object last() { return values[size - 1]; }
+    }
+    private static class ObjectArrayBuffer extends ArrayBuffer {
+        private final Class<?> type;
+        private Object[] values = new Object[0];
+        ObjectArrayBuffer(Class<?> type) { this.type = type; }
+        void add(Object value) {
+            if (size == values.length) { values = Arrays.copyOf(values, grow(size)); }
+            values[size++] = value;
+        }
+        Object toArray() {
+            Object array = Array.newInstance(type, size);
+            if (type.isPrimitive()) { // other primitive types are rare enough to be copied one by one
+                for (int i = 0; i < size; i++) { Array.set(array, i, values[i]); }
+            } else {
+                System.arraycopy(values, 0, array, 0, size);
+            }
+            return array;
+        }
+        Object last() { return values[size - 1]; }
+        void addTo(Collection<Object> collection) {
+            for (int i = 0; i < size; i++) { collection.add(values[i]); }
+        }
+    }
+    private void registerBuiltInConverters() {
+        converterRegistry.put(Object.class,        new BuiltIn.StringConverter());
+        converterRegistry.put(String.class,        new BuiltIn.StringConverter());
+        converterRegistry.put(StringBuilder.class, new BuiltIn.StringBuilderConverter());
+        converterRegistry.put(CharSequence.class,  new BuiltIn.CharSequenceConverter());
+        converterRegistry.put(Byte.class,          new BuiltIn.ByteConverter());
+        converterRegistry.put(Byte.TYPE,           new BuiltIn.ByteConverter());
+        converterRegistry.put(Boolean.class,       new BuiltIn.BooleanConverter());
+        converterRegistry.put(Boolean.TYPE,        new BuiltIn.BooleanConverter());
+        converterRegistry.put(Character.class,     new BuiltIn.CharacterConverter());
+        converterRegistry.put(Character.TYPE,      new BuiltIn.CharacterConverter());
+        converterRegistry.put(Short.class,         new BuiltIn.ShortConverter());
+        converterRegistry.put(Short.TYPE,          new BuiltIn.ShortConverter());
+        converterRegistry.put(Integer.class,       new BuiltIn.IntegerConverter());
+        converterRegistry.put(Integer.TYPE,        new BuiltIn.IntegerConverter());
+        converterRegistry.put(Long.class,          new BuiltIn.LongConverter());
+        converterRegistry.put(Long.TYPE,           new BuiltIn.LongConverter());
+        converterRegistry.put(Float.class,         new BuiltIn.FloatConverter());
+        converterRegistry.put(Float.TYPE,          new BuiltIn.FloatConverter());
+        converterRegistry.put(Double.class,        new BuiltIn.DoubleConverter());
+        converterRegistry.put(Double.TYPE,         new BuiltIn.DoubleConverter());
+        converterRegistry.put(File.class,          new BuiltIn.FileConverter());
+        // converters of other types are only created when an option of that type is found (see BuiltIn.lazyConverter),
+        // so that their classes and the classes they convert to (like java.sql and java.time) aren't loaded otherwise
+    }
+
+    /** A trie of the option names of a command, built once per {@code CommandSpec} and shared by all parses. An argument
+     * is matched against all option names, including any option parameter attached with a separator, in a single scan
+     * that doesn't allocate. Each node also knows how many option names and which options are below it, which is used
+     * to resolve abbreviated option names and to decide whether an unmatched argument resembles an option. */
+    private static final class OptionTrie {
+        private final Node root = new Node();
+        private final OptionSpec[] asciiPosixOptions = new OptionSpec[128];
+        private final Map<Character, OptionSpec> posixOptions;
+
+        OptionTrie(Map<String, OptionSpec> options, Map<Character, OptionSpec> posixOptions) {
+            for (Map.Entry<String, OptionSpec> entry : options.entrySet()) {
+                String name = entry.getKey();
+                Node node = root;
+                for (int i = 0; i < name.length(); i++) { node = node.add(name.charAt(i)); }
+                node.name = name;
+                node.option = entry.getValue();
+            }
+            summarize(root);
+            this.posixOptions = posixOptions;
+            for (Map.Entry<Character, OptionSpec> entry : posixOptions.entrySet()) {
+                if (entry.getKey() < asciiPosixOptions.length) { asciiPosixOptions[entry.getKey()] = entry.getValue(); }
+            }
+        }
+        private static void summarize(Node node) {
+            node.nameCount = node.name == null ? 0 : 1;
+            node.unique = node.option;
+            node.uniqueName = node.name;
+            boolean ambiguous = false;
+            for (Node child : node.children) {
+                summarize(child);
+                node.nameCount += child.nameCount;
+                if (child.unique == null || (node.unique != null && node.unique != child.unique)) {
+                    ambiguous = true;
+                } else if (node.unique == null) {
+                    node.unique = child.unique;
+                    node.uniqueName = child.uniqueName;
+                }
+            }
+            if (ambiguous) { node.unique = null; node.uniqueName = null; }
+        }
+
+        /** Returns the number of option names in this trie. */
+        int size() { return root.nameCount; }
+
+        /** Returns the option with the specified single character name, or {@code null} if there is no such option. */
+        OptionSpec posixOption(char c) {
+            return c < asciiPosixOptions.length ? asciiPosixOptions[c] : posixOptions.get(c);
+        }
+
+        /** Matches the specified argument to an option. The whole argument is preferred, otherwise the part before the
+         * first separator is matched and the remainder is an attached option parameter. When {@code abbreviations} are
+         * allowed, an argument that is the prefix of the names of a single option (and is more than just dashes)
+         * matches that option.
+         * @return {@code true} if an option was matched, in which case {@code result} holds the details */
+        boolean match(String arg, String separator, boolean abbreviations, OptionMatch result) {
+            Node node = root;
+            Node key = null;
+            int separatorIndex = -1;
+            int i = 0;
+            for (; i < arg.length() && node != null; i++) {
+                if (separatorIndex < 0 && i > 0 && separator.length() > 0 && arg.startsWith(separator, i)) {
+                    separatorIndex = i;
+                    key = node;
+                }
+                node = node.child(arg.charAt(i));
+            }
+            if (node != null && node.option != null) { return result.set(node.option, node.name, -1, false); }
+            if (key != null && key.option != null) { return result.set(key.option, key.name, separatorIndex + separator.length(), false); }
+            if (!abbreviations) { return false; }
+            if (separatorIndex < 0) { key = node; }
+            int keyLength = separatorIndex < 0 ? i : separatorIndex;
+            if (key == null || key.unique == null || !hasNameCharacter(arg, keyLength)) { return false; }
+            return result.set(key.unique, key.uniqueName, separatorIndex < 0 ? -1 : separatorIndex + separator.length(), true);
+        }
+        private static boolean hasNameCharacter(String arg, int length) {
+            for (int i = 0; i < length; i++) { if (Character.isLetterOrDigit(arg.charAt(i))) { return true; } }
+            return false;
+        }
+
+        /** Returns the total number of leading characters that the specified argument has in common with each option name. */
+        int commonPrefixCount(String arg) {
+            int count = 0;
+            Node node = root;
+            for (int i = 0; i < arg.length(); i++) {
+                node = node.child(arg.charAt(i));
+                if (node == null) { break; }
+                count += node.nameCount;
+            }
+            return count;
+        }
+
+        private static final class Node {
+            private static final char[] NO_KEYS = new char[0];
+            private static final Node[] NO_CHILDREN = new Node[0];
+            private char[] keys = NO_KEYS; // sorted
+            private Node[] children = NO_CHILDREN;
+            private String name; // the option name ending at this node, if any
+            private OptionSpec option;
+            private int nameCount; // the number of option names ending at or below this node
+            private OptionSpec unique; // the only option named at or below this node, or null if there are several
+            private String uniqueName;
+
+            Node child(char c) {
+                int i = Arrays.binarySearch(keys, c);
+                return i < 0 ? null : children[i];
+            }
+            Node add(char c) {
+                int i = Arrays.binarySearch(keys, c);
+                if (i >= 0) { return children[i]; }
+                i = -i - 1;
+                char[] newKeys = new char[keys.length + 1];
+                Node[] newChildren = new Node[children.length + 1];
+                System.arraycopy(keys, 0, newKeys, 0, i);
+                System.arraycopy(children, 0, newChildren, 0, i);
+                System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+                System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+                newKeys[i] = c;
+                newChildren[i] = new Node();
+                keys = newKeys;
+                children = newChildren;
+                return newChildren[i];
+            }
+        }
+    }
+    /** The option matched by {@link OptionTrie#match(String, String, boolean, OptionMatch)}. Each interpreter re-uses
+     * a single instance, so fields must be copied before the next match. */
+    private static final class OptionMatch {
+        private OptionSpec option;
+        private String name;
+        private int valueStart; // index of the attached option parameter in the argument, or -1 if there is none
+        private boolean abbreviated;
+
+        boolean set(OptionSpec option, String name, int valueStart, boolean abbreviated) {
+            this.option = option;
+            this.name = name;
+            this.valueStart = valueStart;
+            this.abbreviated = abbreviated;
+            return true;
+        }
+    }
+
+    /** An index of the option and subcommand names of a command, used to suggest what the user may have meant when an
+     * argument could not be matched. It is only built the first time an argument is unmatched, so successful parses
+     * don't pay for it. Names are held in BK-trees using the Levenshtein distance, and the candidates found within twice
+     * the allowed distance are filtered using the optimal string alignment distance, which also counts a transposition
+     * of two adjacent characters (like {@code --vrebose}) as a single edit. */
+    private static final class SuggestionIndex {
+        private static final int MAX_SUGGESTIONS = 3;
+        private final BkNode options;
+        private final BkNode subcommands;
+
+        SuggestionIndex(CommandSpec spec) {
+            BkNode options = null;
+            for (OptionSpec option : spec.options()) {
+                if (option.hidden()) { continue; }
+                for (String name : option.names()) { options = BkNode.add(options, name); }
+            }
+            BkNode subcommands = null;
+            for (String name : spec.subcommands().keySet()) { subcommands = BkNode.add(subcommands, name); }
+            this.options = options;
+            this.subcommands = subcommands;
+        }
+
+        /** Returns the option names (if the argument starts with a dash) or subcommand names closest to the specified
+         * unmatched argument, closest first. */
+        List<String> suggest(String arg, String separator) {
+            boolean option = arg.startsWith("-");
+            int separatorIndex = option && separator.length() > 0 ? arg.indexOf(separator) : -1;
+            String word = separatorIndex > 0 ? arg.substring(0, separatorIndex) : arg;
+            BkNode root = option ? options : subcommands;
+            if (root == null || word.length() == 0) { return Collections.emptyList(); }
+            int maxDistance = Math.max(1, Math.min(3, word.length() / 3));
+            List<Set<String>> byDistance = new ArrayList<Set<String>>();
+            for (int i = 0; i <= maxDistance; i++) { byDistance.add(new TreeSet<String>()); }
+            ArrayDeque<BkNode> stack = new ArrayDeque<BkNode>();
+            stack.push(root);
+            int radius = 2 * maxDistance; // a transposition is two Levenshtein edits
+            while (!stack.isEmpty()) {
+                BkNode node = stack.pop();
+                int d = levenshtein(word, node.name);
+                if (d <= radius) {
+                    int distance = osaDistance(word, node.name, maxDistance);
+                    if (distance > 0 && distance <= maxDistance) { byDistance.get(distance).add(node.name); }
+                }
+                for (Map.Entry<Integer, BkNode> child : node.children.entrySet()) {
+                    if (Math.abs(child.getKey() - d) <= radius) { stack.push(child.getValue()); }
+                }
+            }
+            List<String> result = new ArrayList<String>();
+            for (Set<String> names : byDistance) {
+                for (String name : names) {
+                    if (result.size() < MAX_SUGGESTIONS) { result.add(name); }
+                }
+            }
+            return result;
+        }
+
+        static int levenshtein(String a, String b) {
+            int[] previous = new int[b.length() + 1];
+            int[] current = new int[b.length() + 1];
+            for (int j = 0; j <= b.length(); j++) { previous[j] = j; }
+            for (int i = 1; i <= a.length(); i++) {
+                current[0] = i;
+                for (int j = 1; j <= b.length(); j++) {
+                    int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                    current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                }
+                int[] swap = previous; previous = current; current = swap;
+            }
+            return previous[b.length()];
+        }
+
+        /** Returns the optimal string alignment distance between two strings, or {@code max + 1} as soon as it is
+         * known to be greater than {@code max}. */
+        static int osaDistance(String a, String b, int max) {
+            if (Math.abs(a.length() - b.length()) > max) { return max + 1; }
+            int[] beforePrevious = new int[b.length() + 1];
+            int[] previous = new int[b.length() + 1];
+            int[] current = new int[b.length() + 1];
+            for (int j = 0; j <= b.length(); j++) { previous[j] = j; }
+            for (int i = 1; i <= a.length(); i++) {
+                current[0] = i;
+                int rowMin = i;
+                for (int j = 1; j <= b.length(); j++) {
+                    int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                    current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                    if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                        current[j] = Math.min(current[j], beforePrevious[j - 2] + 1);
+                    }
+                    rowMin = Math.min(rowMin, current[j]);
+                }
+                if (rowMin > max) { return max + 1; }
+                int[] swap = beforePrevious; beforePrevious = previous; previous = current; current = swap;
+            }
+            return previous[b.length()];
+        }
+
+        private static final class BkNode {
+            private final String name;
+            private final Map<Integer, BkNode> children = new HashMap<Integer, BkNode>(4);
+
+            BkNode(String name) { this.name = name; }
+
+            static BkNode add(BkNode root, String name) {
+                if (root == null) { return new BkNode(name); }
+                BkNode node = root;
+                while (true) {
+                    int d = levenshtein(node.name, name);
+                    if (d == 0) { return root; }
+                    BkNode child = node.children.get(d);
+                    if (child == null) { node.children.put(d, new BkNode(name)); return root; }
+                    node = child;
+                }
+            }
+        }
+    }
+
+    /** Parses command line arguments for a command. A new interpreter is used for each parse, so that all the state of
+     * a parse is held here rather than in the {@code CommandLine} or {@code CommandSpec}, which are only read. When
+     * {@code bind} is {@code false}, values are collected in a {@link ParseResult} instead of being set on the
+     * {@code ArgSpec}s, which makes it safe to parse concurrently with the same {@code CommandLine}. */
     private class Interpreter {
-        private final Map<Class<?>, ITypeConverter<?>> converterRegistry = new HashMap<Class<?>, ITypeConverter<?>>();
+        private final boolean bind;
         private boolean isHelpRequested;
+        private boolean usageHelpRequested;
+        private boolean versionHelpRequested;
         private int position;
-
-        Interpreter() { registerBuiltInConverters(); }
-
-        private void registerBuiltInConverters() {
-            converterRegistry.put(Object.class,        new BuiltIn.StringConverter());
-            converterRegistry.put(String.class,        new BuiltIn.StringConverter());
-            converterRegistry.put(StringBuilder.class, new BuiltIn.StringBuilderConverter());
-            converterRegistry.put(CharSequence.class,  new BuiltIn.CharSequenceConverter());
-            converterRegistry.put(Byte.class,          new BuiltIn.ByteConverter());
-            converterRegistry.put(Byte.TYPE,           new BuiltIn.ByteConverter());
-            converterRegistry.put(Boolean.class,       new BuiltIn.BooleanConverter());
-            converterRegistry.put(Boolean.TYPE,        new BuiltIn.BooleanConverter());
-            converterRegistry.put(Character.class,     new BuiltIn.CharacterConverter());
-            converterRegistry.put(Character.TYPE,      new BuiltIn.CharacterConverter());
-            converterRegistry.put(Short.class,         new BuiltIn.ShortConverter());
-            converterRegistry.put(Short.TYPE,          new BuiltIn.ShortConverter());
-            converterRegistry.put(Integer.class,       new BuiltIn.IntegerConverter());
-            converterRegistry.put(Integer.TYPE,        new BuiltIn.IntegerConverter());
-            converterRegistry.put(Long.class,          new BuiltIn.LongConverter());
-            converterRegistry.put(Long.TYPE,           new BuiltIn.LongConverter());
-            converterRegistry.put(Float.class,         new BuiltIn.FloatConverter());
-            converterRegistry.put(Float.TYPE,          new BuiltIn.FloatConverter());
-            converterRegistry.put(Double.class,        new BuiltIn.DoubleConverter());
-            converterRegistry.put(Double.TYPE,         new BuiltIn.DoubleConverter());
-            converterRegistry.put(File.class,          new BuiltIn.FileConverter());
-            converterRegistry.put(URI.class,           new BuiltIn.URIConverter());
-            converterRegistry.put(URL.class,           new BuiltIn.URLConverter());
-            converterRegistry.put(Date.class,          new BuiltIn.ISO8601DateConverter());
-            converterRegistry.put(Time.class,          new BuiltIn.ISO8601TimeConverter());
-            converterRegistry.put(BigDecimal.class,    new BuiltIn.BigDecimalConverter());
-            converterRegistry.put(BigInteger.class,    new BuiltIn.BigIntegerConverter());
-            converterRegistry.put(Charset.class,       new BuiltIn.CharsetConverter());
-            converterRegistry.put(InetAddress.class,   new BuiltIn.InetAddressConverter());
-            converterRegistry.put(Pattern.class,       new BuiltIn.PatternConverter());
-            converterRegistry.put(UUID.class,          new BuiltIn.UUIDConverter());
-            converterRegistry.put(Currency.class,      new BuiltIn.CurrencyConverter());
-            converterRegistry.put(TimeZone.class,      new BuiltIn.TimeZoneConverter());
-            converterRegistry.put(ByteOrder.class,     new BuiltIn.ByteOrderConverter());
-            converterRegistry.put(Class.class,         new BuiltIn.ClassConverter());
-            converterRegistry.put(Connection.class,    new BuiltIn.ConnectionConverter());
-            converterRegistry.put(Driver.class,        new BuiltIn.DriverConverter());
-            converterRegistry.put(Timestamp.class,     new BuiltIn.TimestampConverter());
-            converterRegistry.put(NetworkInterface.class, new BuiltIn.NetworkInterfaceConverter());
-
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.time.Duration", "parse", CharSequence.class);
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.time.Instant", "parse", CharSequence.class);
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.time.LocalDate", "parse", CharSequence.class);
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.time.LocalDateTime", "parse", CharSequence.class);
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.time.LocalTime", "parse", CharSequence.class);
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.time.MonthDay", "parse", CharSequence.class);
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.time.OffsetDateTime", "parse", CharSequence.class);
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.time.OffsetTime", "parse", CharSequence.class);
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.time.Period", "parse", CharSequence.class);
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.time.Year", "parse", CharSequence.class);
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.time.YearMonth", "parse", CharSequence.class);
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.time.ZonedDateTime", "parse", CharSequence.class);
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.time.ZoneId", "of", String.class);
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.time.ZoneOffset", "of", String.class);
-
-            BuiltIn.registerIfAvailable(converterRegistry, tracer, "java.nio.file.Path", "java.nio.file.Paths", "get", String.class, String[].class);
+        private final List<String> unmatched = new ArrayList<String>();
+        private final Map<ArgSpec, ArrayBuffer> arrayValues = new LinkedHashMap<ArgSpec, ArrayBuffer>();
+        private final Map<ArgSpec, Object> parsedValues = new IdentityHashMap<ArgSpec, Object>();
+        private final List<ArgSpec> matched = new ArrayList<ArgSpec>();
+        private ParseResult subcommandResult;
+        private ParseResult result;
+        private final OptionTrie optionTrie = commandSpec.optionTrie();
+        private final OptionMatch optionMatch = new OptionMatch();
+
+        Interpreter(boolean bind) { this.bind = bind; }
+
+        /** Returns the current value of the option or positional parameter. When not binding, this is the value parsed so
+         * far or, if it wasn't matched yet, its initial value (which must not be modified), so that values are added to
+         * the initial value of arrays, collections and maps as {@link CommandLine#parse(String...)} does. */
+        private Object getValue(ArgSpec argSpec) throws Exception {
+            if (!bind && parsedValues.containsKey(argSpec)) { return parsedValues.get(argSpec); }
+            return argSpec.getValue();
+        }
+        private void setValue(ArgSpec argSpec, Object value) throws Exception {
+            if (bind) { argSpec.setValue(value); }
+            recordValue(argSpec, value);
+        }
+        /** Records the value of a matched option or positional parameter, including collections and maps that
+         * values are added to in place, without calling {@link #setValue(ArgSpec, Object)}. */
+        private void recordValue(ArgSpec argSpec, Object value) {
+            if (!parsedValues.containsKey(argSpec)) { matched.add(argSpec); }
+            parsedValues.put(argSpec, value);
         }
 
         /**
@@ -3349,74 +4164,102 @@ public class CommandLine {
         List<CommandLine> parse(String... args) {
             Assert.notNull(args, "argument array");
             if (tracer.isInfo()) {tracer.info("Parsing %d command line args %s%n", args.length, Arrays.toString(args));}
-            List<String> expanded = new ArrayList<String>();
-            for (String arg : args) { addOrExpand(arg, expanded, new LinkedHashSet<String>()); }
-            Stack<String> arguments = new Stack<String>();
-            arguments.addAll(reverseList(expanded));
-            List<CommandLine> result = new ArrayList<CommandLine>();
-            parse(result, arguments, args);
-            return result;
-        }
-
-        private void addOrExpand(String arg, List<String> arguments, Set<String> visited) {
-            if (expandAtFiles && !arg.equals("@") && arg.startsWith("@")) {
-                arg = arg.substring(1);
-                if (arg.startsWith("@")) {
-                    if (tracer.isInfo()) { tracer.info("Not expanding @-escaped argument %s (trimmed leading '@' char)%n", arg); }
+            ArgumentExpander expander = hasAtFiles(args) ? new ArgumentExpander(args) : null;
+            try {
+                ArgumentCursor cursor;
+                if (expander == null) {
+                    cursor = new ArgumentCursor(args, null);
+                } else if (streamAtFiles) {
+                    cursor = new ArgumentCursor(new String[0], expander);
                 } else {
-                    if (tracer.isInfo()) { tracer.info("Expanding argument file @%s%n", arg); }
-                    expandArgumentFile(arg, arguments, visited);
-                    return;
+                    List<String> expanded = new ArrayList<String>();
+                    while (expander.hasNext()) { expanded.add(expander.next()); }
+                    cursor = new ArgumentCursor(expanded.toArray(new String[expanded.size()]), null);
                 }
+                List<CommandLine> result = new ArrayList<CommandLine>();
+                parse(result, cursor, args);
+                return result;
+            } finally {
+                if (expander != null) { expander.close(); }
             }
-            arguments.add(arg);
         }
-        private void expandArgumentFile(String fileName, List<String> arguments, Set<String> visited) {
-            File file = new File(fileName);
-            if (!file.canRead()) {
-                if (tracer.isInfo()) {tracer.info("File %s does not exist or cannot be read; treating argument literally%n", fileName);}
-                arguments.add("@" + fileName);
-            } else if (visited.contains(file.getAbsolutePath())) {
-                if (tracer.isInfo()) {tracer.info("Already visited file %s; ignoring...%n", file.getAbsolutePath());}
-            } else {
-                expandValidArgumentFile(fileName, file, arguments, visited);
+        private boolean hasAtFiles(String[] args) {
+            if (!expandAtFiles) { return false; }
+            for (String arg : args) {
+                if (arg.startsWith("@") && !arg.equals("@")) { return true; }
             }
+            return false;
         }
-        private void expandValidArgumentFile(String fileName, File file, List<String> arguments, Set<String> visited) {
-            visited.add(file.getAbsolutePath());
-            List<String> result = new ArrayList<String>();
-            LineNumberReader reader = null;
-            try {
-                reader = new LineNumberReader(new FileReader(file));
-                StreamTokenizer tok = new StreamTokenizer(reader);
-                tok.resetSyntax();
-                tok.wordChars(' ', 255);
-                tok.whitespaceChars(0, ' ');
-                tok.commentChar('#');
-                tok.quoteChar('"');
-                tok.quoteChar('\'');
-                while (tok.nextToken() != StreamTokenizer.TT_EOF) {
-                    addOrExpand(tok.sval, result, visited);
+
+        /** Iterates over the command line arguments, replacing {@code @files} by their content. Argument files are
+         * tokenized lazily as the iterator advances, and nested argument files are opened when they are reached. */
+        private class ArgumentExpander implements Iterator<String> {
+            private final String[] args;
+            private final ArrayDeque<ArgumentFile> files = new ArrayDeque<ArgumentFile>();
+            private Set<String> visited;
+            private int index;
+            private String next;
+
+            ArgumentExpander(String[] args) { this.args = args; }
+
+            public boolean hasNext() {
+                if (next == null) { next = fetch(); }
+                return next != null;
+            }
+            public String next() {
+                if (!hasNext()) { throw new NoSuchElementException(); }
+                String result = next;
+                next = null;
+                return result;
+            }
+            public void remove() { throw new UnsupportedOperationException("remove"); }
+
+            private String fetch() {
+                while (true) {
+                    String arg;
+                    if (!files.isEmpty()) {
+                        arg = files.peek().nextToken();
+                        if (arg == null) {
+                            ArgumentFile file = files.pop();
+                            file.close();
+                            if (tracer.isInfo()) {tracer.info("Expanded file @%s%n", file.fileName);}
+                            continue;
+                        }
+                    } else if (index < args.length) {
+                        arg = args[index++];
+                        visited = new LinkedHashSet<String>();
+                    } else {
+                        return null;
+                    }
+                    if (expandAtFiles && !arg.equals("@") && arg.startsWith("@")) {
+                        arg = arg.substring(1);
+                        if (arg.startsWith("@")) {
+                            if (tracer.isInfo()) { tracer.info("Not expanding @-escaped argument %s (trimmed leading '@' char)%n", arg); }
+                        } else {
+                            if (tracer.isInfo()) { tracer.info("Expanding argument file @%s%n", arg); }
+                            File file = new File(arg);
+                            if (!file.canRead()) {
+                                if (tracer.isInfo()) {tracer.info("File %s does not exist or cannot be read; treating argument literally%n", arg);}
+                                return "@" + arg;
+                            } else if (visited.contains(file.getAbsolutePath())) {
+                                if (tracer.isInfo()) {tracer.info("Already visited file %s; ignoring...%n", file.getAbsolutePath());}
+                            } else {
+                                visited.add(file.getAbsolutePath());
+                                files.push(new ArgumentFile(arg, file, atFileEncoding));
+                            }
+                            continue;
+                        }
+                    }
+                    return arg;
                 }
-            } catch (Exception ex) {
-                throw new InitializationException("Could not read argument file @" + fileName, ex);
-            } finally {
-                if (reader != null) { try {reader.close();} catch (Exception ignored) {} }
             }
-            if (tracer.isInfo()) {tracer.info("Expanded file @%s to arguments %s%n", fileName, result);}
-            arguments.addAll(result);
-        }
 
-        private void clear() {
-            position = 0;
-            isHelpRequested = false;
-            CommandLine.this.versionHelpRequested = false;
-            CommandLine.this.usageHelpRequested = false;
-            CommandLine.this.unmatchedArguments.clear();
+            void close() {
+                while (!files.isEmpty()) { files.pop().close(); }
+            }
         }
 
-        private void parse(List<CommandLine> parsedCommands, Stack<String> argumentStack, String[] originalArgs) {
-            clear(); // first reset any state in case this CommandLine instance is being reused
+        private void parse(List<CommandLine> parsedCommands, ArgumentCursor args, String[] originalArgs) {
             if (tracer.isDebug()) {tracer.debug("Initializing %s: %d options, %d positional parameters, %d required, %d subcommands.%n",
                     commandSpec.toString(), new HashSet<ArgSpec>(commandSpec.optionsMap().values()).size(),
                     commandSpec.positionalParameters().size(), commandSpec.requiredArgs().size(), commandSpec
@@ -3426,11 +4269,20 @@ public class CommandLine {
             Set<ArgSpec> initialized = new HashSet<ArgSpec>();
             Collections.sort(required, new PositionalParametersSorter());
             try {
-                processArguments(parsedCommands, argumentStack, required, initialized, originalArgs);
+                try {
+                    processArguments(parsedCommands, args, required, initialized, originalArgs);
+                } finally {
+                    applyArrayValues();
+                    if (bind) { // the state of the last parse is available from the CommandLine
+                        CommandLine.this.unmatchedArguments = unmatched;
+                        CommandLine.this.usageHelpRequested = usageHelpRequested;
+                        CommandLine.this.versionHelpRequested = versionHelpRequested;
+                    }
+                }
             } catch (ParameterException ex) {
                 throw ex;
             } catch (Exception ex) {
-                int offendingArgIndex = originalArgs.length - argumentStack.size() - 1;
+                int offendingArgIndex = args.consumed() - 1;
                 String arg = offendingArgIndex >= 0 && offendingArgIndex < originalArgs.length ? originalArgs[offendingArgIndex] : "?";
                 throw ParameterException.create(CommandLine.this, ex, arg, offendingArgIndex, originalArgs);
             }
@@ -3439,18 +4291,19 @@ public class CommandLine {
                     if (missing.isOption() ) {
                         throw MissingParameterException.create(CommandLine.this, required, commandSpec.separator());
                     } else {
-                        assertNoMissingParameters(missing, missing.arity().min, argumentStack);
+                        assertNoMissingParameters(missing, missing.arity().min, args);
                     }
                 }
             }
-            if (!unmatchedArguments.isEmpty()) {
-                if (!isUnmatchedArgumentsAllowed()) { throw new UnmatchedArgumentException(CommandLine.this, unmatchedArguments); }
-                if (tracer.isWarn()) { tracer.warn("Unmatched arguments: %s%n", unmatchedArguments); }
+            if (!unmatched.isEmpty()) {
+                if (!isUnmatchedArgumentsAllowed()) { throw new UnmatchedArgumentException(CommandLine.this, unmatched); }
+                if (tracer.isWarn()) { tracer.warn("Unmatched arguments: %s%n", unmatched); }
             }
+            result = new ParseResult(commandSpec, matched, parsedValues, unmatched, usageHelpRequested, versionHelpRequested, subcommandResult);
         }
 
         private void processArguments(List<CommandLine> parsedCommands,
-                                      Stack<String> args,
+                                      ArgumentCursor args,
                                       Collection<ArgSpec> required,
                                       Set<ArgSpec> initialized,
                                       String[] originalArgs) throws Exception {
@@ -3466,7 +4319,7 @@ public class CommandLine {
             String separator = commandSpec.separator();
             while (!args.isEmpty()) {
                 String arg = args.pop();
-                if (tracer.isDebug()) {tracer.debug("Processing argument '%s'. Remainder=%s%n", arg, reverse((Stack<String>) args.clone()));}
+                if (tracer.isDebug()) {tracer.debug("Processing argument '%s'. Remainder=%s%n", arg, args.remainder());}
 
                 // Double-dash separates options from positional arguments.
                 // If found, then interpret the remaining args as positional parameters.
@@ -3482,7 +4335,9 @@ public class CommandLine {
                         throw MissingParameterException.create(CommandLine.this, required, separator);
                     }
                     if (tracer.isDebug()) {tracer.debug("Found subcommand '%s' (%s)%n", arg, commandSpec.subcommands().get(arg).commandSpec.toString());}
-                    commandSpec.subcommands().get(arg).interpreter.parse(parsedCommands, args, originalArgs);
+                    Interpreter subcommand = commandSpec.subcommands().get(arg).new Interpreter(bind);
+                    subcommand.parse(parsedCommands, args, originalArgs);
+                    subcommandResult = subcommand.result;
                     return; // remainder done by the command
                 }
 
@@ -3490,25 +4345,18 @@ public class CommandLine {
                 // A single option may be without option parameters, like "-v" or "--verbose" (a boolean value),
                 // or an option may have one or more option parameters.
                 // A parameter may be attached to the option.
-                boolean paramAttachedToOption = false;
-                int separatorIndex = arg.indexOf(separator);
-                if (separatorIndex > 0) {
-                    String key = arg.substring(0, separatorIndex);
-                    // be greedy. Consume the whole arg as an option if possible.
-                    if (commandSpec.optionsMap().containsKey(key) && !commandSpec.optionsMap().containsKey(arg)) {
-                        paramAttachedToOption = true;
-                        String optionParam = arg.substring(separatorIndex + separator.length());
+                // Be greedy: the whole arg is matched as an option if possible, before trying to separate it.
+                if (optionTrie.match(arg, separator, abbreviatedOptionsAllowed, optionMatch)) {
+                    OptionSpec option = optionMatch.option;
+                    String name = optionMatch.name;
+                    boolean paramAttachedToOption = optionMatch.valueStart >= 0;
+                    if (optionMatch.abbreviated && tracer.isDebug()) {tracer.debug("Resolved abbreviated option '%s' to '%s'%n", arg, name);}
+                    if (paramAttachedToOption) {
+                        String optionParam = arg.substring(optionMatch.valueStart);
                         args.push(optionParam);
-                        arg = key;
-                        if (tracer.isDebug()) {tracer.debug("Separated '%s' option from '%s' option parameter%n", key, optionParam);}
-                    } else {
-                        if (tracer.isDebug()) {tracer.debug("'%s' contains separator '%s' but '%s' is not a known option%n", arg, separator, key);}
+                        if (tracer.isDebug()) {tracer.debug("Separated '%s' option from '%s' option parameter%n", name, optionParam);}
                     }
-                } else {
-                    if (tracer.isDebug()) {tracer.debug("'%s' cannot be separated into <option>%s<option-parameter>%n", arg, separator);}
-                }
-                if (commandSpec.optionsMap().containsKey(arg)) {
-                    processStandaloneOption(required, initialized, arg, args, paramAttachedToOption);
+                    processStandaloneOption(required, initialized, option, name, args, paramAttachedToOption);
                 }
                 // Compact (single-letter) options can be grouped with other options or with an argument.
                 // only single-letter options can be combined with other options or with an argument
@@ -3528,48 +4376,45 @@ public class CommandLine {
             }
         }
         private boolean resemblesOption(String arg) {
-            int count = 0;
-            for (String optionName : commandSpec.optionsMap().keySet()) {
-                for (int i = 0; i < arg.length(); i++) {
-                    if (optionName.length() > i && arg.charAt(i) == optionName.charAt(i)) { count++; } else { break; }
-                }
-            }
-            boolean result = count > 0 && count * 10 >= commandSpec.optionsMap().size() * 9; // at least one prefix char in common with 9 out of 10 options
-            if (tracer.isDebug()) {tracer.debug("%s %s an option: %d matching prefix chars out of %d option names%n", arg, (result ? "resembles" : "doesn't resemble"), count, commandSpec
-                    .optionsMap().size());}
+            int count = optionTrie.commonPrefixCount(arg);
+            boolean result = count > 0 && count * 10 >= optionTrie.size() * 9; // at least one prefix char in common with 9 out of 10 options
+            if (tracer.isDebug()) {tracer.debug("%s %s an option: %d matching prefix chars out of %d option names%n", arg, (result ? "resembles" : "doesn't resemble"), count, optionTrie.size());}
             return result;
         }
-        private void handleUnmatchedArguments(String arg) {Stack<String> args = new Stack<String>(); args.add(arg); handleUnmatchedArguments(args);}
-        private void handleUnmatchedArguments(Stack<String> args) {
-            while (!args.isEmpty()) { unmatchedArguments.add(args.pop()); } // addAll would give args in reverse order
-        }
+        private void handleUnmatchedArguments(String arg) { unmatched.add(arg); }
 
-        private void processRemainderAsPositionalParameters(Collection<ArgSpec> required, Set<ArgSpec> initialized, Stack<String> args) throws Exception {
-            while (!args.empty()) {
+        private void processRemainderAsPositionalParameters(Collection<ArgSpec> required, Set<ArgSpec> initialized, ArgumentCursor args) throws Exception {
+            while (!args.isEmpty()) {
                 processPositionalParameter(required, initialized, args);
             }
         }
-        private void processPositionalParameter(Collection<ArgSpec> required, Set<ArgSpec> initialized, Stack<String> args) throws Exception {
-            if (tracer.isDebug()) {tracer.debug("Processing next arg as a positional parameter at index=%d. Remainder=%s%n", position, reverse((Stack<String>) args.clone()));}
+        private void processPositionalParameter(Collection<ArgSpec> required, Set<ArgSpec> initialized, ArgumentCursor args) throws Exception {
+            if (tracer.isDebug()) {tracer.debug("Processing next arg as a positional parameter at index=%d. Remainder=%s%n", position, args.remainder());}
             int consumed = 0;
+            int positionalCount = 0;
+            for (PositionalParamSpec positionalParam : commandSpec.positionalParameters()) {
+                if (positionalParam.index().contains(position)) { positionalCount++; }
+            }
             for (PositionalParamSpec positionalParam : commandSpec.positionalParameters()) {
                 Range indexRange = positionalParam.index();
                 if (!indexRange.contains(position)) {
                     continue;
                 }
-                @SuppressWarnings("unchecked")
-                Stack<String> argsCopy = (Stack<String>) args.clone();
+                // when several positional parameters share this position they all get the same arguments
+                ArgumentCursor argsCopy = positionalCount > 1 ? args.copy() : args;
                 Range arity = positionalParam.arity();
                 if (tracer.isDebug()) {tracer.debug("Position %d is in index range %s. Trying to assign args to %s, arity=%s%n", position, indexRange, positionalParam, arity);}
                 assertNoMissingParameters(positionalParam, arity.min, argsCopy);
-                int originalSize = argsCopy.size();
+                int originalConsumed = argsCopy.consumed();
                 applyOption(positionalParam, arity, argsCopy, initialized, "args[" + indexRange + "] at position " + position);
-                int count = originalSize - argsCopy.size();
+                int count = argsCopy.consumed() - originalConsumed;
                 if (count > 0) { required.remove(positionalParam); }
                 consumed = Math.max(consumed, count);
             }
             // remove processed args from the stack
-            for (int i = 0; i < consumed; i++) { args.pop(); }
+            if (positionalCount > 1) {
+                for (int i = 0; i < consumed; i++) { args.pop(); }
+            }
             position += consumed;
             if (tracer.isDebug()) {tracer.debug("Consumed %d arguments, moving position to index %d.%n", consumed, position);}
             if (consumed == 0 && !args.isEmpty()) {
@@ -3579,30 +4424,30 @@ public class CommandLine {
 
         private void processStandaloneOption(Collection<ArgSpec> required,
                                              Set<ArgSpec> initialized,
-                                             String arg,
-                                             Stack<String> args,
+                                             OptionSpec argSpec,
+                                             String name,
+                                             ArgumentCursor args,
                                              boolean paramAttachedToKey) throws Exception {
-            ArgSpec argSpec = commandSpec.optionsMap().get(arg);
             required.remove(argSpec);
             Range arity = argSpec.arity();
             if (paramAttachedToKey) {
                 arity = arity.min(Math.max(1, arity.min)); // if key=value, minimum arity is at least 1
             }
-            if (tracer.isDebug()) {tracer.debug("Found option named '%s': %s, arity=%s%n", arg, argSpec, arity);}
-            applyOption(argSpec, arity, args, initialized, "option " + arg);
+            if (tracer.isDebug()) {tracer.debug("Found option named '%s': %s, arity=%s%n", name, argSpec, arity);}
+            applyOption(argSpec, arity, args, initialized, "option " + name);
         }
 
         private void processClusteredShortOptions(Collection<ArgSpec> required,
                                                   Set<ArgSpec> initialized,
                                                   String arg,
-                                                  Stack<String> args)
+                                                  ArgumentCursor args)
                 throws Exception {
             String prefix = arg.substring(0, 1);
             String cluster = arg.substring(1);
             boolean paramAttachedToOption = true;
             do {
-                if (cluster.length() > 0 && commandSpec.posixOptionsMap().containsKey(cluster.charAt(0))) {
-                    ArgSpec argSpec = commandSpec.posixOptionsMap().get(cluster.charAt(0));
+                ArgSpec argSpec = cluster.length() > 0 ? optionTrie.posixOption(cluster.charAt(0)) : null;
+                if (argSpec != null) {
                     Range arity = argSpec.arity();
                     String argDescription = "option " + prefix + cluster.charAt(0);
                     if (tracer.isDebug()) {tracer.debug("Found option '%s%s' in %s: %s, arity=%s%n", prefix, cluster.charAt(0), arg,
@@ -3623,10 +4468,10 @@ public class CommandLine {
                     if (!empty(cluster)) {
                         args.push(cluster); // interpret remainder as option parameter (CAUTION: may be empty string!)
                     }
-                    int argCount = args.size();
+                    int argsConsumed = args.consumed();
                     int consumed = applyOption(argSpec, arity, args, initialized, argDescription);
                     // if cluster was consumed as a parameter or if this field was the last in the cluster we're done; otherwise continue do-while loop
-                    if (empty(cluster) || args.isEmpty() || args.size() < argCount) {
+                    if (empty(cluster) || args.isEmpty() || args.consumed() > argsConsumed) {
                         return;
                     }
                     cluster = args.pop();
@@ -3659,7 +4504,7 @@ public class CommandLine {
 
         private int applyOption(ArgSpec argSpec,
                                 Range arity,
-                                Stack<String> args,
+                                ArgumentCursor args,
                                 Set<ArgSpec> initialized,
                                 String argDescription) throws Exception {
             updateHelpRequested(argSpec);
@@ -3681,7 +4526,7 @@ public class CommandLine {
 
         private int applyValueToSingleValuedField(ArgSpec argSpec,
                                                   Range arity,
-                                                  Stack<String> args,
+                                                  ArgumentCursor args,
                                                   Class<?> cls,
                                                   Set<ArgSpec> initialized,
                                                   String argDescription) throws Exception {
@@ -3699,7 +4544,7 @@ public class CommandLine {
                     if (value != null) {
                         args.push(value); // we don't consume the value
                     }
-                    Boolean currentValue = (Boolean) argSpec.getValue();
+                    Boolean currentValue = (Boolean) getValue(argSpec);
                     value = String.valueOf(currentValue == null ? true : !currentValue); // #147 toggle existing boolean value
                 }
             }
@@ -3708,7 +4553,7 @@ public class CommandLine {
             }
             ITypeConverter<?> converter = getTypeConverter(cls, argSpec, 0);
             Object newValue = tryConvert(argSpec, -1, converter, value, cls);
-            Object oldValue = argSpec.getValue();
+            Object oldValue = getValue(argSpec);
             TraceLevel level = TraceLevel.INFO;
             String traceMessage = "Setting %s to '%3$s' (was '%2$s') for %4$s%n";
             if (initialized != null) {
@@ -3723,22 +4568,26 @@ public class CommandLine {
             }
             if (tracer.level.isEnabled(level)) { level.print(tracer, traceMessage, argSpec.toString(),
                     String.valueOf(oldValue), String.valueOf(newValue), argDescription); }
-            argSpec.setValue(newValue);
+            setValue(argSpec, newValue);
             return result;
         }
         private int applyValuesToMapField(ArgSpec argSpec,
                                           Range arity,
-                                          Stack<String> args,
+                                          ArgumentCursor args,
                                           Class<?> mapClass,
                                           String argDescription) throws Exception {
             Class<?>[] classes = argSpec.auxiliaryTypes();
             if (classes.length < 2) { throw new ParameterException(CommandLine.this, argSpec.toString() + " needs two types (one for the map key, one for the value) but only has " + classes.length + " types configured."); }
             ITypeConverter<?> keyConverter   = getTypeConverter(classes[0], argSpec, 0);
             ITypeConverter<?> valueConverter = getTypeConverter(classes[1], argSpec, 1);
-            Map<Object, Object> result = (Map<Object, Object>) argSpec.getValue();
-            if (result == null) {
+            Map<Object, Object> result = (Map<Object, Object>) getValue(argSpec);
+            if (result == null || !bind && !parsedValues.containsKey(argSpec)) {
+                Map<Object, Object> initial = result;
                 result = createMap(mapClass);
-                argSpec.setValue(result);
+                if (initial != null) { result.putAll(initial); }
+                setValue(argSpec, result);
+            } else {
+                recordValue(argSpec, result);
             }
             int originalSize = result.size();
             consumeMapArguments(argSpec, arity, args, classes, keyConverter, valueConverter, result, argDescription);
@@ -3747,7 +4596,7 @@ public class CommandLine {
 
         private void consumeMapArguments(ArgSpec argSpec,
                                          Range arity,
-                                         Stack<String> args,
+                                         ArgumentCursor args,
                                          Class<?>[] classes,
                                          ITypeConverter<?> keyConverter,
                                          ITypeConverter<?> valueConverter,
@@ -3769,7 +4618,7 @@ public class CommandLine {
         }
 
         private void consumeOneMapArgument(ArgSpec argSpec,
-                                           Stack<String> args,
+                                           ArgumentCursor args,
                                            Class<?>[] classes,
                                            ITypeConverter<?> keyConverter, ITypeConverter<?> valueConverter,
                                            Map<Object, Object> result,
@@ -3809,61 +4658,56 @@ public class CommandLine {
 
         private int applyValuesToArrayField(ArgSpec argSpec,
                                             Range arity,
-                                            Stack<String> args,
+                                            ArgumentCursor args,
                                             Class<?> cls,
                                             String argDescription) throws Exception {
-            Object existing = argSpec.getValue();
-            int length = existing == null ? 0 : Array.getLength(existing);
             Class<?> type = argSpec.auxiliaryTypes()[0];
-            List<Object> converted = consumeArguments(argSpec, arity, args, type, argDescription);
-            List<Object> newValues = new ArrayList<Object>();
-            for (int i = 0; i < length; i++) {
-                newValues.add(Array.get(existing, i));
-            }
-            for (Object obj : converted) {
-                if (obj instanceof Collection<?>) {
-                    newValues.addAll((Collection<?>) obj);
-                } else {
-                    newValues.add(obj);
-                }
+            ArrayBuffer values = arrayValues.get(argSpec);
+            if (values == null) {
+                values = ArrayBuffer.create(type);
+                values.addArray(getValue(argSpec));
+                arrayValues.put(argSpec, values);
             }
-            Object array = Array.newInstance(type, newValues.size());
-            argSpec.setValue(array);
-            for (int i = 0; i < newValues.size(); i++) {
-                Array.set(array, i, newValues.get(i));
+            return consumeArguments(argSpec, arity, args, type, values, argDescription); // return how many values were added
+        }
+
+        /** Sets the array values accumulated while parsing this command. */
+        private void applyArrayValues() throws Exception {
+            for (Map.Entry<ArgSpec, ArrayBuffer> entry : arrayValues.entrySet()) {
+                setValue(entry.getKey(), entry.getValue().toArray());
             }
-            return converted.size(); // return how many args were consumed
+            arrayValues.clear();
         }
 
         @SuppressWarnings("unchecked")
         private int applyValuesToCollectionField(ArgSpec argSpec,
                                                  Range arity,
-                                                 Stack<String> args,
+                                                 ArgumentCursor args,
                                                  Class<?> collectionType,
                                                  String argDescription) throws Exception {
-            Collection<Object> collection = (Collection<Object>) argSpec.getValue();
+            Collection<Object> collection = (Collection<Object>) getValue(argSpec);
             Class<?> type = argSpec.auxiliaryTypes()[0];
-            List<Object> converted = consumeArguments(argSpec, arity, args, type, argDescription);
-            if (collection == null) {
+            ObjectArrayBuffer converted = new ObjectArrayBuffer(type);
+            consumeArguments(argSpec, arity, args, type, converted, argDescription);
+            if (collection == null || !bind && !parsedValues.containsKey(argSpec)) {
+                Collection<Object> initial = collection;
                 collection = createCollection(collectionType);
-                argSpec.setValue(collection);
-            }
-            for (Object element : converted) {
-                if (element instanceof Collection<?>) {
-                    collection.addAll((Collection<?>) element);
-                } else {
-                    collection.add(element);
-                }
+                if (initial != null) { collection.addAll(initial); }
+                setValue(argSpec, collection);
+            } else {
+                recordValue(argSpec, collection);
             }
-            return converted.size();
+            converted.addTo(collection);
+            return converted.size;
         }
 
-        private List<Object> consumeArguments(ArgSpec argSpec,
-                                              Range arity,
-                                              Stack<String> args,
-                                              Class<?> type,
-                                              String argDescription) throws Exception {
-            List<Object> result = new ArrayList<Object>();
+        private int consumeArguments(ArgSpec argSpec,
+                                     Range arity,
+                                     ArgumentCursor args,
+                                     Class<?> type,
+                                     ArrayBuffer result,
+                                     String argDescription) throws Exception {
+            int originalSize = result.size;
 
             // first do the arity.min mandatory parameters
             for (int i = 0; i < arity.min; i++) {
@@ -3878,31 +4722,47 @@ public class CommandLine {
                 }
                 consumeOneArgument(argSpec, arity, args, type, result, i, argDescription);
             }
-            if (result.isEmpty() && arity.min == 0 && arity.max <= 1 && isBoolean(type)) {
-                return Arrays.asList((Object) Boolean.TRUE);
+            if (result.size == originalSize && arity.min == 0 && arity.max <= 1 && isBoolean(type)) {
+                result.add(Boolean.TRUE);
             }
-            return result;
+            return result.size - originalSize;
         }
 
         private int consumeOneArgument(ArgSpec argSpec,
                                        Range arity,
-                                       Stack<String> args,
+                                       ArgumentCursor args,
                                        Class<?> type,
-                                       List<Object> result,
+                                       ArrayBuffer result,
                                        int index,
                                        String argDescription) throws Exception {
-            String[] values = argSpec.splitValue(trim(args.pop()));
+            String arg = trim(args.pop());
             ITypeConverter<?> converter = getTypeConverter(type, argSpec, 0);
 
-            for (int j = 0; j < values.length; j++) {
-                result.add(tryConvert(argSpec, index, converter, values[j], type));
-                if (tracer.isInfo()) {
-                    tracer.info("Adding [%s] to %s for %s%n", String.valueOf(result.get(result.size() - 1)), argSpec.toString(), argDescription);
+            if (argSpec.splitChar != 0) { // fast path: convert each part as it is found, without splitting into an array first
+                int end = argSpec.splitEnd(arg);
+                for (int start = 0; start <= end; ) {
+                    int next = argSpec.nextSplit(arg, start, end);
+                    addValue(argSpec, index, converter, arg.substring(start, next), type, result, argDescription);
+                    start = next + 1;
+                }
+            } else if (argSpec.splitPattern == null) {
+                addValue(argSpec, index, converter, arg, type, result, argDescription);
+            } else {
+                String[] values = argSpec.splitPattern.split(arg);
+                for (int j = 0; j < values.length; j++) {
+                    addValue(argSpec, index, converter, values[j], type, result, argDescription);
                 }
             }
             //checkMaxArityExceeded(arity, max, field, values);
             return ++index;
         }
+        private void addValue(ArgSpec argSpec, int index, ITypeConverter<?> converter, String value, Class<?> type,
+                              ArrayBuffer result, String argDescription) throws Exception {
+            tryConvert(argSpec, index, converter, value, type, result);
+            if (tracer.isInfo()) {
+                tracer.info("Adding [%s] to %s for %s%n", String.valueOf(result.last()), argSpec.toString(), argDescription);
+            }
+        }
 
         /**
          * Called when parsing varargs parameters for a multi-value option.
@@ -3914,29 +4774,36 @@ public class CommandLine {
             if ("--".equals(arg)) {
                 return true;
             }
-            // not just arg prefix: we may be in the middle of parsing -xrvfFILE
-            if (commandSpec.optionsMap().containsKey(arg)) { // -v or -f or --file (not attached to param or other option)
+            // -v or -f or --file, or -f=FILE or --file==FILE (attached to param via separator)
+            if (optionTrie.match(arg, commandSpec.separator(), abbreviatedOptionsAllowed, optionMatch)) {
                 return true;
             }
-            int separatorIndex = arg.indexOf(commandSpec.separator());
-            if (separatorIndex > 0) { // -f=FILE or --file==FILE (attached to param via separator)
-                if (commandSpec.optionsMap().containsKey(arg.substring(0, separatorIndex))) {
-                    return true;
-                }
-            }
-            return (arg.length() > 2 && arg.startsWith("-") && commandSpec.posixOptionsMap().containsKey(arg.charAt(1)));
+            // not just arg prefix: we may be in the middle of parsing -xrvfFILE
+            return (arg.length() > 2 && arg.charAt(0) == '-' && optionTrie.posixOption(arg.charAt(1)) != null);
         }
         private Object tryConvert(ArgSpec argSpec, int index, ITypeConverter<?> converter, String value, Class<?> type)
                 throws Exception {
             try {
                 return converter.convert(value);
-            } catch (TypeConversionException ex) {
-                throw new ParameterException(CommandLine.this, ex.getMessage() + optionDescription(" for ", argSpec, index));
-            } catch (Exception other) {
-                String desc = optionDescription(" for ", argSpec, index) + ": " + other;
-                throw new ParameterException(CommandLine.this, "Could not convert '" + value + "' to " + type.getSimpleName() + desc, other);
+            } catch (Exception ex) {
+                throw conversionException(argSpec, index, value, type, ex);
             }
         }
+        private void tryConvert(ArgSpec argSpec, int index, ITypeConverter<?> converter, String value, Class<?> type, ArrayBuffer result)
+                throws Exception {
+            try {
+                result.convertAndAdd(converter, value);
+            } catch (Exception ex) {
+                throw conversionException(argSpec, index, value, type, ex);
+            }
+        }
+        private ParameterException conversionException(ArgSpec argSpec, int index, String value, Class<?> type, Exception ex) {
+            if (ex instanceof TypeConversionException) {
+                return new ParameterException(CommandLine.this, ex.getMessage() + optionDescription(" for ", argSpec, index));
+            }
+            String desc = optionDescription(" for ", argSpec, index) + ": " + ex;
+            return new ParameterException(CommandLine.this, "Could not convert '" + value + "' to " + type.getSimpleName() + desc, ex);
+        }
 
         private String optionDescription(String prefix, ArgSpec argSpec, int index) {
             String desc = "";
@@ -3960,8 +4827,8 @@ public class CommandLine {
             if (argSpec.isOption()) {
                 OptionSpec option = (OptionSpec) argSpec;
                 isHelpRequested                       |= is(argSpec, "help", option.help());
-                CommandLine.this.versionHelpRequested |= is(argSpec, "versionHelp", option.versionHelp());
-                CommandLine.this.usageHelpRequested   |= is(argSpec, "usageHelp", option.usageHelp());
+                versionHelpRequested |= is(argSpec, "versionHelp", option.versionHelp());
+                usageHelpRequested   |= is(argSpec, "usageHelp", option.usageHelp());
             }
         }
         private boolean is(ArgSpec p, String attribute, boolean value) {
@@ -3993,7 +4860,14 @@ public class CommandLine {
         }
         private ITypeConverter<?> getTypeConverter(final Class<?> type, ArgSpec argSpec, int index) {
             if (argSpec.converters().length > index) { return argSpec.converters()[index]; }
-            if (converterRegistry.containsKey(type)) { return converterRegistry.get(type); }
+            ITypeConverter<?> result = converterRegistry.get(type);
+            if (result == null) {
+                result = BuiltIn.lazyConverter(type, tracer);
+                // types without a built-in converter are registered too, so that the lookup isn't repeated for every value
+                if (result == null) { result = BuiltIn.NO_CONVERTER; }
+                converterRegistry.put(type, result);
+            }
+            if (result != BuiltIn.NO_CONVERTER) { return result; }
             if (type.isEnum()) {
                 return new ITypeConverter<Object>() {
                     @SuppressWarnings("unchecked")
@@ -4005,8 +4879,8 @@ public class CommandLine {
             throw new MissingTypeConverterException(CommandLine.this, "No TypeConverter registered for " + type.getName() + " of " + argSpec);
         }
 
-        private void assertNoMissingParameters(ArgSpec argSpec, int arity, Stack<String> args) {
-            if (arity > args.size()) {
+        private void assertNoMissingParameters(ArgSpec argSpec, int arity, ArgumentCursor args) {
+            if (!args.hasAtLeast(arity)) {
                 if (arity == 1) {
                     if (argSpec.isOption()) {
                         throw new MissingParameterException(CommandLine.this, "Missing required parameter for " +
@@ -4038,7 +4912,7 @@ public class CommandLine {
                             " requires at least " + arity + " values, but none were specified.");
                 }
                 throw new MissingParameterException(CommandLine.this, optionDescription("", argSpec, 0) +
-                        " requires at least " + arity + " values, but only " + args.size() + " were specified: " + reverse(args));
+                        " requires at least " + arity + " values, but only " + args.remainder().size() + " were specified: " + args.remainder());
             }
         }
         private String trim(String value) {
@@ -4101,18 +4975,21 @@ public class CommandLine {
             public Short convert(String value) { return Short.valueOf(value); }
         }
         /** Converts text to an {@code Integer} by delegating to {@link Integer#valueOf(String)}.*/
-        static class IntegerConverter implements ITypeConverter<Integer> {
+        static class IntegerConverter implements IntConverter {
             public Integer convert(String value) { return Integer.valueOf(value); }
+            public int convertInt(String value) { return Integer.parseInt(value); }
         }
         /** Converts text to a {@code Long} by delegating to {@link Long#valueOf(String)}.*/
-        static class LongConverter implements ITypeConverter<Long> {
+        static class LongConverter implements CommandLine.LongConverter {
             public Long convert(String value) { return Long.valueOf(value); }
+            public long convertLong(String value) { return Long.parseLong(value); }
         }
         static class FloatConverter implements ITypeConverter<Float> {
             public Float convert(String value) { return Float.valueOf(value); }
         }
-        static class DoubleConverter implements ITypeConverter<Double> {
+        static class DoubleConverter implements CommandLine.DoubleConverter {
             public Double convert(String value) { return Double.valueOf(value); }
+            public double convertDouble(String value) { return Double.parseDouble(value); }
         }
         static class FileConverter implements ITypeConverter<File> {
             public File convert(String value) { return new File(value); }
@@ -4212,23 +5089,60 @@ public class CommandLine {
         static class TimestampConverter implements ITypeConverter<Timestamp> {
             public Timestamp convert(String s) throws Exception { return Timestamp.valueOf(s); }
         }
-        static void registerIfAvailable(Map<Class<?>, ITypeConverter<?>> registry, Tracer tracer, String fqcn, String factoryMethodName, Class<?>... paramTypes) {
-            registerIfAvailable(registry, tracer, fqcn, fqcn, factoryMethodName, paramTypes);
-        }
-        static void registerIfAvailable(Map<Class<?>, ITypeConverter<?>> registry, Tracer tracer, String fqcn, String factoryClass, String factoryMethodName, Class<?>... paramTypes) {
+        /** Returns the built-in converter of a type that isn't registered when a {@code CommandLine} is created, or
+         * {@code null} if there is none. Types are matched by name, so that looking up a converter doesn't load any of
+         * the types that aren't used. */
+        static ITypeConverter<?> lazyConverter(Class<?> type, Tracer tracer) {
+            String name = type.getName();
+            if (name.equals("java.net.URI"))                { return new URIConverter(); }
+            if (name.equals("java.net.URL"))                { return new URLConverter(); }
+            if (name.equals("java.util.Date"))              { return new ISO8601DateConverter(); }
+            if (name.equals("java.sql.Time"))               { return new ISO8601TimeConverter(); }
+            if (name.equals("java.math.BigDecimal"))        { return new BigDecimalConverter(); }
+            if (name.equals("java.math.BigInteger"))        { return new BigIntegerConverter(); }
+            if (name.equals("java.nio.charset.Charset"))    { return new CharsetConverter(); }
+            if (name.equals("java.net.InetAddress"))        { return new InetAddressConverter(); }
+            if (name.equals("java.util.regex.Pattern"))     { return new PatternConverter(); }
+            if (name.equals("java.util.UUID"))              { return new UUIDConverter(); }
+            if (name.equals("java.util.Currency"))          { return new CurrencyConverter(); }
+            if (name.equals("java.util.TimeZone"))          { return new TimeZoneConverter(); }
+            if (name.equals("java.nio.ByteOrder"))          { return new ByteOrderConverter(); }
+            if (name.equals("java.lang.Class"))             { return new ClassConverter(); }
+            if (name.equals("java.sql.Connection"))         { return new ConnectionConverter(); }
+            if (name.equals("java.sql.Driver"))             { return new DriverConverter(); }
+            if (name.equals("java.sql.Timestamp"))          { return new TimestampConverter(); }
+            if (name.equals("java.net.NetworkInterface"))   { return new NetworkInterfaceConverter(); }
+            if (name.equals("java.time.ZoneId") || name.equals("java.time.ZoneOffset")) {
+                return reflectionConverter(tracer, name, name, "of", String.class);
+            }
+            if (name.equals("java.nio.file.Path")) {
+                return reflectionConverter(tracer, name, "java.nio.file.Paths", "get", String.class, String[].class);
+            }
+            if (name.startsWith("java.time.") && JAVA_TIME_PARSE_TYPES.contains(name.substring("java.time.".length()))) {
+                return reflectionConverter(tracer, name, name, "parse", CharSequence.class);
+            }
+            return null;
+        }
+        private static final List<String> JAVA_TIME_PARSE_TYPES = Arrays.asList("Duration", "Instant", "LocalDate",
+                "LocalDateTime", "LocalTime", "MonthDay", "OffsetDateTime", "OffsetTime", "Period", "Year", "YearMonth",
+                "ZonedDateTime");
+        static ITypeConverter<?> reflectionConverter(Tracer tracer, String fqcn, String factoryClass, String factoryMethodName, Class<?>... paramTypes) {
             try {
-                Class<?> cls = Class.forName(fqcn);
                 Class<?> factory = Class.forName(factoryClass);
                 Method method = factory.getDeclaredMethod(factoryMethodName, paramTypes);
-                registry.put(cls, new ReflectionConverter(method, paramTypes));
+                return new ReflectionConverter(method, paramTypes);
             } catch (Exception e) {
-                if (!traced.contains(fqcn)) {
+                if (traced.add(fqcn)) {
                     tracer.debug("Could not register converter for %s: %s%n", fqcn, e.toString());
                 }
-                traced.add(fqcn);
+                return null;
             }
         }
-        static Set<String> traced = new HashSet<String>();
+        static Set<String> traced = ConcurrentHashMap.newKeySet(); // added to by concurrent parses
+        /** Registered for types that have no built-in converter, once they were looked up. Never used to convert. */
+        static final ITypeConverter<Object> NO_CONVERTER = new ITypeConverter<Object>() {
+            public Object convert(String value) { throw new UnsupportedOperationException(); }
+        };
         static class ReflectionConverter implements ITypeConverter<Object> {
             private final Method method;
             private Class<?>[] paramTypes;
@@ -4318,11 +5232,12 @@ public class CommandLine {
         /** Constant String holding the default string that separates options from option parameters, value defined in {@link CommandSpec#DEFAULT_SEPARATOR}. */
         protected static final String DEFAULT_SEPARATOR = CommandSpec.DEFAULT_SEPARATOR;
 
-        private final static int usageHelpWidth = 80;
+        private final static int defaultUsageHelpWidth = 80;
+        private final static int minUsageHelpWidth = 55;
         private final static int optionsColumnWidth = 2 + 2 + 1 + 24;
         private final CommandSpec commandSpec;
         private final ColorScheme colorScheme;
-        private final Map<String, Help> commands = new LinkedHashMap<String, Help>();
+        private final Map<String, CommandSpec> commands = new LinkedHashMap<String, CommandSpec>();
 
         private IParamLabelRenderer parameterLabelRenderer;
 
@@ -4359,6 +5274,22 @@ public class CommandLine {
             parameterLabelRenderer = createDefaultParamLabelRenderer(); // uses help separator
         }
 
+        /** Returns the width of the usage help message: the value of system property {@code "picocli.usage.width"} if
+         * it is set, otherwise the width of the {@linkplain Terminal#current() current terminal} if it is interactive,
+         * and 80 otherwise (so that help written to files or pipes doesn't depend on the environment). It is at least 55
+         * characters, so that the option descriptions column isn't squeezed out.
+         * @return the width of the usage help message in characters */
+        public static int usageHelpWidth() {
+            int result = defaultUsageHelpWidth;
+            String property = System.getProperty("picocli.usage.width");
+            if (property != null) {
+                try { result = Integer.parseInt(property.trim()); } catch (NumberFormatException ignored) {}
+            } else if (Terminal.current().isTTY()) {
+                result = Terminal.current().width();
+            }
+            return Math.max(minUsageHelpWidth, result);
+        }
+
         /** Returns the {@code CommandSpec} model that this Help was constructed with.
          * @since 3.0 */
         CommandSpec commandSpec() { return commandSpec; }
@@ -4392,7 +5323,7 @@ public class CommandLine {
          * @param commandLine the {@code CommandLine} object to get more information from
          * @return this Help instance (for method chaining) */
         Help addSubcommand(String commandName, CommandLine commandLine) {
-            commands.put(commandName, new Help(commandLine.commandSpec));
+            commands.put(commandName, commandLine.commandSpec);
             return this;
         }
 
@@ -4403,7 +5334,7 @@ public class CommandLine {
          * @deprecated
          */
         public Help addSubcommand(String commandName, Object command) {
-            commands.put(commandName, new Help(CommandSpecBuilder.build(command, commandSpec.commandLine().factory)));
+            commands.put(commandName, CommandSpecBuilder.build(command, commandSpec.commandLine().factory));
             return this;
         }
 
@@ -4526,7 +5457,7 @@ public class CommandLine {
             int firstColumnLength = commandName.length() + synopsisHeadingLength;
 
             // synopsis heading ("Usage: ") may be on the same line, so adjust column width
-            TextTable textTable = new TextTable(ansi(), firstColumnLength, usageHelpWidth - firstColumnLength);
+            TextTable textTable = new TextTable(ansi(), firstColumnLength, usageHelpWidth() - firstColumnLength);
             textTable.indentWrappedLines = 1; // don't worry about first line: options (2nd column) always start with a space
 
             // right-adjust the command name by length of synopsis heading
@@ -4624,7 +5555,7 @@ public class CommandLine {
          * @return the specified StringBuilder */
         public static StringBuilder join(Ansi ansi, String[] values, StringBuilder sb, Object... params) {
             if (values != null) {
-                TextTable table = new TextTable(ansi, usageHelpWidth);
+                TextTable table = new TextTable(ansi, usageHelpWidth());
                 table.indentWrappedLines = 0;
                 for (String summaryLine : values) {
                     Text[] lines = ansi.new Text(format(summaryLine, params)).splitLines();
@@ -4729,25 +5660,68 @@ public class CommandLine {
         /** Returns a 2-column list with command names and the first line of their header or (if absent) description.
          * @return a usage help section describing the added commands */
         public String commandList() {
-            if (commands.isEmpty()) { return ""; }
+            StringBuilder result = new StringBuilder();
+            try {
+                writeCommandList(result);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex); // StringBuilder doesn't throw IOException
+            }
+            return result.toString();
+        }
+        private void writeCommandList(Appendable out) throws IOException {
+            if (commands.isEmpty()) { return; }
             int commandLength = maxLength(commands.keySet());
             Help.TextTable textTable = new Help.TextTable(ansi(),
                     new Help.Column(commandLength + 2, 2, Help.Column.Overflow.SPAN),
-                    new Help.Column(usageHelpWidth - (commandLength + 2), 2, Help.Column.Overflow.WRAP));
+                    new Help.Column(usageHelpWidth() - (commandLength + 2), 2, Help.Column.Overflow.WRAP));
 
-            for (Map.Entry<String, Help> entry : commands.entrySet()) {
-                Help help = entry.getValue();
-                CommandSpec command = help.commandSpec;
+            for (Map.Entry<String, CommandSpec> entry : commands.entrySet()) {
+                CommandSpec command = entry.getValue();
                 String header = command.header() != null && command.header().length > 0 ? command.header()[0]
                         : (command.description() != null && command.description().length > 0 ? command.description()[0] : "");
                 textTable.addRowValues(colorScheme.commandText(entry.getKey()), ansi().new Text(header));
+                textTable.flush(out);
             }
-            return textTable.toString();
         }
         private static int maxLength(Collection<String> any) {
-            List<String> strings = new ArrayList<String>(any);
-            Collections.sort(strings, Collections.reverseOrder(Help.shortestFirst()));
-            return strings.get(0).length();
+            int result = 0;
+            for (String s : any) { result = Math.max(result, s.length()); }
+            return result;
+        }
+
+        /** Writes the complete usage help message to the specified {@code Appendable}, with the same sections as
+         * {@link CommandLine#usage(PrintStream, ColorScheme)}. The parameter, option and command lists are written row
+         * by row as they are laid out, so memory use doesn't grow with the number of options or subcommands.
+         * <p>The headings, header, synopsis, description and footer are obtained from the methods of this class, but
+         * the lists are laid out directly rather than by {@link #parameterList()}, {@link #optionList()} and
+         * {@link #commandList()}: subclasses that override those methods should also override this one.</p>
+         * @param out the {@code Appendable} to write the usage help message to
+         * @throws IOException if the message could not be written */
+        public void writeTo(Appendable out) throws IOException {
+            out.append(headerHeading()).append(header())
+                    .append(synopsisHeading()).append(synopsis(synopsisHeadingLength()))
+                    .append(descriptionHeading()).append(description())
+                    .append(parameterListHeading());
+            Layout layout = createDefaultLayout();
+            for (PositionalParamSpec param : commandSpec.positionalParameters()) {
+                if (!param.hidden()) {
+                    layout.addPositionalParameter(param, parameterLabelRenderer());
+                    layout.table.flush(out);
+                }
+            }
+            out.append(optionListHeading());
+            List<OptionSpec> options = new ArrayList<OptionSpec>(commandSpec.options());
+            if (commandSpec.sortOptions()) { Collections.sort(options, createShortOptionNameComparator()); }
+            layout = createDefaultLayout();
+            for (OptionSpec option : options) {
+                if (!option.hidden()) {
+                    layout.addOption(option, parameterLabelRenderer());
+                    layout.table.flush(out);
+                }
+            }
+            out.append(commandListHeading());
+            writeCommandList(out);
+            out.append(footerHeading()).append(footer());
         }
         private static String join(String[] names, int offset, int length, String separator) {
             if (names == null) { return ""; }
@@ -5267,7 +6241,7 @@ public class CommandLine {
              * <li>short option name (width: 2, indent: 0, TRUNCATE on overflow)</li>
              * <li>comma separator (width: 1, indent: 0, TRUNCATE on overflow)</li>
              * <li>long option name(s) (width: 24, indent: 1, SPAN multiple columns on overflow)</li>
-             * <li>description line(s) (width: 51, indent: 1, WRAP to next row on overflow)</li>
+             * <li>description line(s) (width: the {@linkplain Help#usageHelpWidth() usage help width} minus 29, 51 by default, indent: 1, WRAP to next row on overflow)</li>
              * </ol>
              * @param ansi whether to emit ANSI escape codes or not
              */
@@ -5278,7 +6252,7 @@ public class CommandLine {
                         new Column(2,                                        0, TRUNCATE), // "-c"
                         new Column(1,                                        0, TRUNCATE), // ","
                         new Column(optionsColumnWidth - 2 - 2 - 1       , 1, SPAN),  // " --create"
-                        new Column(usageHelpWidth - optionsColumnWidth, 1, WRAP) // " Creates a ..."
+                        new Column(usageHelpWidth() - optionsColumnWidth, 1, WRAP) // " Creates a ..."
                 });
             }
 
@@ -5449,22 +6423,38 @@ public class CommandLine {
              * @param text the StringBuilder to write into
              * @return the specified StringBuilder object (to allow method chaining and a more fluid API) */
             public StringBuilder toString(StringBuilder text) {
+                try {
+                    appendRows(text);
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex); // StringBuilder doesn't throw IOException
+                }
+                return text;
+            }
+            /** Writes the rows of this table to the specified {@code Appendable}, then removes them from this table.
+             * This allows a large table to be written incrementally, a few rows at a time, as values are added.
+             * @param out the {@code Appendable} to write the rows to
+             * @throws IOException if the rows could not be written */
+            public void flush(Appendable out) throws IOException {
+                appendRows(out);
+                columnValues.clear();
+            }
+            private void appendRows(Appendable text) throws IOException {
                 int columnCount = this.columns.length;
-                StringBuilder row = new StringBuilder(usageHelpWidth);
+                String lineSeparator = System.getProperty("line.separator");
+                StringBuilder row = new StringBuilder(usageHelpWidth());
                 for (int i = 0; i < columnValues.size(); i++) {
                     Text column = columnValues.get(i);
-                    row.append(column.toString());
-                    row.append(new String(spaces(columns[i % columnCount].width - column.length)));
+                    column.appendTo(row);
+                    for (int pad = columns[i % columnCount].width - column.length; pad > 0; pad--) { row.append(' '); }
                     if (i % columnCount == columnCount - 1) {
                         int lastChar = row.length() - 1;
                         while (lastChar >= 0 && row.charAt(lastChar) == ' ') {lastChar--;} // rtrim
                         row.setLength(lastChar + 1);
-                        text.append(row.toString()).append(System.getProperty("line.separator"));
+                        text.append(row).append(lineSeparator);
                         row.setLength(0);
                     }
                 }
                 //if (Ansi.enabled()) { text.append(Style.reset.off()); }
-                return text;
             }
             public String toString() { return toString(new StringBuilder()).toString(); }
         }
@@ -5589,6 +6579,118 @@ public class CommandLine {
                     .optionParams(Style.italic);
         }
 
+        /** The terminal a command interacts with. Whether it is a TTY, whether it supports ANSI escape codes and its
+         * width are only detected when first needed, then remembered, so that commands which don't print help or
+         * prompt the user pay nothing for detection. The {@linkplain #system() system terminal} is used by default;
+         * batch or daemon modes can {@linkplain #setCurrent(Terminal) supply} a different terminal for each invocation.
+         * @see Ansi#AUTO */
+        public static class Terminal {
+            private static final Terminal SYSTEM = new Terminal();
+            private static final ThreadLocal<Terminal> CURRENT = new ThreadLocal<Terminal>();
+            private final boolean system;
+            private volatile Boolean tty;
+            private volatile Boolean ansiCapable;
+            private volatile int width;
+            private BufferedReader reader;
+
+            private Terminal() { system = true; }
+
+            /** Constructs a terminal with the specified characteristics, for example for a remote client.
+             * @param in the input to read lines from, or {@code null} if there is none
+             * @param tty whether the terminal is interactive
+             * @param ansiCapable whether the terminal supports ANSI escape codes
+             * @param width the terminal width in characters */
+            public Terminal(Reader in, boolean tty, boolean ansiCapable, int width) {
+                this.system = false;
+                this.reader = in == null || in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+                this.tty = tty;
+                this.ansiCapable = ansiCapable;
+                this.width = width;
+            }
+
+            /** Returns the terminal of this process, which uses {@code System.console()} or {@code System.in}. */
+            public static Terminal system() { return SYSTEM; }
+
+            /** Returns the terminal set for the current thread, or the {@linkplain #system() system terminal} if none is set. */
+            public static Terminal current() {
+                Terminal result = CURRENT.get();
+                return result == null ? SYSTEM : result;
+            }
+
+            /** Sets the terminal for the current thread. It isn't inherited by threads the current thread creates (which
+             * may outlive the terminal, like pooled threads), so work done for the terminal in other threads must get
+             * it beforehand with {@link #current()}.
+             * @param terminal the terminal, or {@code null} to use the {@linkplain #system() system terminal} again */
+            public static void setCurrent(Terminal terminal) {
+                if (terminal == null) { CURRENT.remove(); } else { CURRENT.set(terminal); }
+            }
+
+            /** Returns whether this terminal is interactive. */
+            public boolean isTTY() {
+                Boolean result = tty;
+                if (result == null) { tty = result = calcTTY(); }
+                return result;
+            }
+
+            /** Returns whether this terminal supports ANSI escape codes. */
+            public boolean isAnsiCapable() {
+                Boolean result = ansiCapable;
+                if (result == null) { ansiCapable = result = isTTY() && (!isWindows() || isXterm()); }
+                return result;
+            }
+
+            /** Returns the width of this terminal in characters: the value of the {@code COLUMNS} environment variable
+             * for the system terminal if it is set, 80 otherwise. */
+            public int width() {
+                int result = width;
+                if (result <= 0) { width = result = calcWidth(); }
+                return result;
+            }
+
+            /** Reads a line of text from this terminal.
+             * @return the line read, or {@code null} if the end of the input was reached
+             * @throws IOException if the line could not be read */
+            public String readLine() throws IOException {
+                Console console = system ? System.console() : null;
+                if (console != null) { return console.readLine(); }
+                BufferedReader in = reader();
+                return in == null ? null : in.readLine();
+            }
+
+            /** Reads a password from this terminal, without echoing it if possible.
+             * @return the password read, or {@code null} if the end of the input was reached
+             * @throws IOException if the password could not be read */
+            public char[] readPassword() throws IOException {
+                Console console = system ? System.console() : null;
+                if (console != null) { return console.readPassword(); }
+                String line = readLine();
+                return line == null ? null : line.toCharArray();
+            }
+
+            private synchronized BufferedReader reader() {
+                if (reader == null && system) { reader = new BufferedReader(new InputStreamReader(System.in)); }
+                return reader;
+            }
+
+            // http://stackoverflow.com/questions/1403772/how-can-i-check-if-a-java-programs-input-output-streams-are-connected-to-a-term
+            private static boolean calcTTY() {
+                if (isWindows() && isXterm()) { return true; } // Cygwin uses pseudo-tty and console is always null...
+                try { return System.class.getDeclaredMethod("console").invoke(null) != null; }
+                catch (Throwable reflectionFailed) { return true; }
+            }
+            private static boolean isWindows() { return System.getProperty("os.name", "").startsWith("Windows"); }
+            private static boolean isXterm() { return System.getenv("TERM") != null && System.getenv("TERM").startsWith("xterm"); }
+            private static int calcWidth() {
+                try {
+                    String columns = System.getenv("COLUMNS");
+                    int result = columns == null ? 0 : Integer.parseInt(columns.trim());
+                    return result > 0 ? result : defaultUsageHelpWidth;
+                } catch (NumberFormatException ex) {
+                    return defaultUsageHelpWidth;
+                }
+            }
+        }
+
         /** Provides methods and inner classes to support using ANSI escape codes in usage help messages. */
         public enum Ansi {
             /** Only emit ANSI escape codes if the platform supports it and system property {@code "picocli.ansi"}
@@ -5599,25 +6701,15 @@ public class CommandLine {
             /** Forced OFF: never emit ANSI escape code regardless of the platform. */
             OFF;
             static Text EMPTY_TEXT = OFF.new Text(0);
-            static final boolean isWindows  = System.getProperty("os.name").startsWith("Windows");
-            static final boolean isXterm    = System.getenv("TERM") != null && System.getenv("TERM").startsWith("xterm");
-            static final boolean ISATTY = calcTTY();
-
-            // http://stackoverflow.com/questions/1403772/how-can-i-check-if-a-java-programs-input-output-streams-are-connected-to-a-term
-            static final boolean calcTTY() {
-                if (isWindows && isXterm) { return true; } // Cygwin uses pseudo-tty and console is always null...
-                try { return System.class.getDeclaredMethod("console").invoke(null) != null; }
-                catch (Throwable reflectionFailed) { return true; }
-            }
-            private static boolean ansiPossible() { return ISATTY && (!isWindows || isXterm); }
 
             /** Returns {@code true} if ANSI escape codes should be emitted, {@code false} otherwise.
              * @return ON: {@code true}, OFF: {@code false}, AUTO: if system property {@code "picocli.ansi"} is
-             *      defined then return its boolean value, otherwise return whether the platform supports ANSI escape codes */
+             *      defined then return its boolean value, otherwise return whether the {@linkplain Terminal#current()
+             *      current terminal} supports ANSI escape codes */
             public boolean enabled() {
                 if (this == ON)  { return true; }
                 if (this == OFF) { return false; }
-                return (System.getProperty("picocli.ansi") == null ? ansiPossible() : Boolean.getBoolean("picocli.ansi"));
+                return (System.getProperty("picocli.ansi") == null ? Terminal.current().isAnsiCapable() : Boolean.getBoolean("picocli.ansi"));
             }
 
             /** Defines the interface for an ANSI escape sequence. */
@@ -5945,7 +7037,16 @@ public class CommandLine {
                         return plain.toString().substring(from, from + length);
                     }
                     if (length == 0) { return ""; }
-                    StringBuilder sb = new StringBuilder(plain.length() + 20 * sections.size());
+                    return appendTo(new StringBuilder(plain.length() + 20 * sections.size())).toString();
+                }
+                /** Appends the same characters as {@link #toString()} to the specified StringBuilder, without creating an
+                 * intermediate String.
+                 * @param sb the StringBuilder to append to
+                 * @return the specified StringBuilder */
+                StringBuilder appendTo(StringBuilder sb) {
+                    if (!Ansi.this.enabled()) {
+                        return sb.append(plain, from, from + length);
+                    }
                     StyledSection current = null;
                     int end = Math.min(from + length, plain.length());
                     for (int i = from; i < end; i++) {
@@ -5958,7 +7059,7 @@ public class CommandLine {
                         sb.append(plain.charAt(i));
                     }
                     if (current != null) { sb.append(current.endStyles); }
-                    return sb.toString();
+                    return sb;
                 }
 
                 private StyledSection findSectionContaining(int index) {
@@ -6135,9 +7236,21 @@ public class CommandLine {
      * {@link Option} or {@link Parameters}. */
     public static class UnmatchedArgumentException extends ParameterException {
         private static final long serialVersionUID = -8700426380701452440L;
-        public UnmatchedArgumentException(CommandLine commandLine, String msg) { super(commandLine, msg); }
+        private final List<String> suggestions;
+        public UnmatchedArgumentException(CommandLine commandLine, String msg) { this(commandLine, msg, Collections.<String>emptyList()); }
         public UnmatchedArgumentException(CommandLine commandLine, Stack<String> args) { this(commandLine, new ArrayList<String>(reverse(args))); }
-        public UnmatchedArgumentException(CommandLine commandLine, List<String> args) { this(commandLine, "Unmatched argument" + (args.size() == 1 ? " " : "s ") + args); }
+        public UnmatchedArgumentException(CommandLine commandLine, List<String> args) { this(commandLine, args, commandLine.getCommandSpec().suggestions(args)); }
+        private UnmatchedArgumentException(CommandLine commandLine, List<String> args, List<String> suggestions) {
+            this(commandLine, "Unmatched argument" + (args.size() == 1 ? " " : "s ") + args + (suggestions.isEmpty() ? ""
+                    : ". Did you mean: " + Help.join(suggestions.toArray(new String[0]), 0, suggestions.size(), " or ") + "?"), suggestions);
+        }
+        private UnmatchedArgumentException(CommandLine commandLine, String msg, List<String> suggestions) {
+            super(commandLine, msg);
+            this.suggestions = Collections.unmodifiableList(suggestions);
+        }
+        /** Returns the option or subcommand names that the unmatched arguments were most likely meant to be, closest first.
+         * @return an immutable list of suggestions, which may be empty */
+        public List<String> getSuggestions() { return suggestions; }
     }
     /** Exception indicating that more values were specified for an option or parameter than its {@link Option#arity() arity} allows. */
     public static class MaxValuesforFieldExceededException extends ParameterException {
@@ -2,14 +2,40 @@ package com.kloudtek.ktcli;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.kloudtek.util.StringUtils;
+import com.kloudtek.util.UserDisplayableException;
+import com.kloudtek.util.io.IOUtils;
 import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import picocli.AutoComplete;
 import picocli.CommandLine;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.PipedReader;
+import java.io.PipedWriter;
 import java.io.PrintStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -17,6 +43,17 @@ class CliHelperTests {
     public static final String SOMEVAL = "fsad8ofjsodafj";
     public static final String MYPASSWORD = "mypassword";
 
+    @BeforeEach
+    public void pinUsageWidth() {
+        // usage help must not depend on the terminal the tests run in
+        System.setProperty("picocli.usage.width", "80");
+    }
+
+    @AfterEach
+    public void unpinUsageWidth() {
+        System.clearProperty("picocli.usage.width");
+    }
+
     @Test
     public void testParseBasicOptions() {
         @CommandLine.Command(name = "testcmd", subcommands = DoStuffCmd.class)
@@ -69,6 +106,518 @@ class CliHelperTests {
         System.out.println();
     }
 
+    @Test
+    public void testStreamAtFiles() throws IOException {
+        class App {
+            @CommandLine.Option(names = "-v")
+            boolean verbose;
+            @CommandLine.Parameters
+            List<File> files;
+        }
+        File nested = File.createTempFile("nestedargs", ".txt");
+        File argFile = File.createTempFile("args", ".txt");
+        try {
+            IOUtils.write(nested, StringUtils.utf8("d.txt"));
+            IOUtils.write(argFile, StringUtils.utf8("# comment\na.txt \"b c.txt\"\n@" + nested.getAbsolutePath() + "\n"));
+            App app = new App();
+            CommandLine commandLine = new CommandLine(app).setStreamAtFiles(true).setAtFileEncoding(StandardCharsets.UTF_8);
+            commandLine.parse("-v", "@" + argFile.getAbsolutePath(), "e.txt");
+            assertTrue(app.verbose);
+            assertEquals(Arrays.asList(new File("a.txt"), new File("b c.txt"), new File("d.txt"), new File("e.txt")), app.files);
+        } finally {
+            assertTrue(nested.delete());
+            assertTrue(argFile.delete());
+        }
+    }
+
+    @Test
+    public void testRepeatedArrayOptions() {
+        class App {
+            @CommandLine.Option(names = "-i")
+            int[] ints = {1};
+            @CommandLine.Option(names = "-s")
+            String[] strings;
+        }
+        App app = new App();
+        new CommandLine(app).parse("-i", "2", "-s", "a", "-i", "3", "-s", "b");
+        assertArrayEquals(new int[]{1, 2, 3}, app.ints);
+        assertArrayEquals(new String[]{"a", "b"}, app.strings);
+    }
+
+    @Test
+    public void testLazyConverters() {
+        class App {
+            @CommandLine.Option(names = "-d")
+            BigDecimal decimal;
+            @CommandLine.Option(names = "-t")
+            Duration duration;
+            @CommandLine.Option(names = "-z")
+            ZoneId zone;
+            @CommandLine.Option(names = "-p")
+            Path[] paths;
+            @CommandLine.Option(names = "-u")
+            UUID uuid;
+        }
+        App app = new App();
+        new CommandLine(app).registerConverter(UUID.class, value -> UUID.nameUUIDFromBytes(value.getBytes(StandardCharsets.UTF_8)))
+                .parse("-d", "1.5", "-t", "PT1M", "-z", "UTC", "-p", "a", "-p", "b/c", "-u", "x");
+        assertEquals(new BigDecimal("1.5"), app.decimal);
+        assertEquals(Duration.ofMinutes(1), app.duration);
+        assertEquals(ZoneId.of("UTC"), app.zone);
+        assertArrayEquals(new Path[]{Paths.get("a"), Paths.get("b", "c")}, app.paths);
+        assertEquals(UUID.nameUUIDFromBytes("x".getBytes(StandardCharsets.UTF_8)), app.uuid);
+        // types without a converter are only looked up once, and still fail at every conversion
+        class Unconvertible {
+            @CommandLine.Option(names = "-s")
+            StringBuffer buffer;
+            @CommandLine.Option(names = "-u")
+            TimeUnit unit;
+        }
+        CommandLine commandLine = new CommandLine(new Unconvertible());
+        for (int i = 0; i < 2; i++) {
+            assertThrows(CommandLine.ParameterException.class, () -> commandLine.parseArgs("-s", "x"));
+            assertEquals(TimeUnit.SECONDS, commandLine.parseArgs("-u", "SECONDS").matchedOptionValue("-u", null));
+        }
+    }
+
+    @Test
+    public void testPrimitiveConverter() {
+        class App {
+            @CommandLine.Option(names = "-i", split = ",")
+            int[] ints;
+        }
+        App app = new App();
+        new CommandLine(app).registerConverter(Integer.TYPE, new CommandLine.IntConverter() {
+            @Override
+            public int convertInt(String value) {
+                return Integer.parseInt(value, 16);
+            }
+
+            @Override
+            public Integer convert(String value) {
+                throw new UnsupportedOperationException();
+            }
+        }).parse("-i", "a,b", "-i", "10");
+        assertArrayEquals(new int[]{10, 11, 16}, app.ints);
+    }
+
+    @Test
+    public void testSplitValues() {
+        class App {
+            @CommandLine.Option(names = "-c", split = ",")
+            List<String> commas;
+            @CommandLine.Option(names = "-p", split = "\\|")
+            String[] pipes;
+            @CommandLine.Option(names = "-r", split = "[;:]")
+            String[] regex;
+        }
+        App app = new App();
+        new CommandLine(app).parse("-c", ",a,,b,,", "-p", "x|y", "-r", "1;2:3");
+        assertEquals(Arrays.asList(",a,,b,,".split(",")), app.commas);
+        assertArrayEquals(new String[]{"x", "y"}, app.pipes);
+        assertArrayEquals(new String[]{"1", "2", "3"}, app.regex);
+    }
+
+    @Test
+    public void testConcurrentParseArgs() {
+        ParseArgsApp app = new ParseArgsApp();
+        CommandLine commandLine = new CommandLine(app);
+        IntStream.range(0, 200).parallel().forEach(i -> {
+            CommandLine.ParseResult result = commandLine.parseArgs("-n", String.valueOf(i), "file" + i);
+            assertEquals(Integer.valueOf(i), result.matchedOptionValue("-n", null));
+            assertTrue(result.hasMatchedOption("-n"));
+            assertFalse(result.hasMatchedOption("-x"));
+            ParseArgsApp bound = result.bind(new ParseArgsApp());
+            assertEquals(i, bound.number);
+            assertEquals(Collections.singletonList("file" + i), bound.files);
+        });
+        assertEquals(0, app.number);
+        assertNull(app.files);
+    }
+
+    @Test
+    public void testParseArgsKeepsInitialValues() {
+        String[] args = {"-a", "x", "-l", "y", "-m", "k=v", "-t"};
+        InitializedApp parsed = new InitializedApp();
+        new CommandLine(parsed).parse(args);
+        InitializedApp app = new InitializedApp();
+        InitializedApp bound = new CommandLine(app).parseArgs(args).bind(new InitializedApp());
+        assertArrayEquals(new String[]{"initial", "x"}, parsed.array);
+        assertArrayEquals(parsed.array, bound.array);
+        assertEquals(Arrays.asList("initial", "y"), parsed.list);
+        assertEquals(parsed.list, bound.list);
+        assertEquals(parsed.map, bound.map);
+        assertFalse(parsed.toggle);
+        assertEquals(parsed.toggle, bound.toggle);
+        // the initial values of the parsed command aren't modified
+        assertArrayEquals(new String[]{"initial"}, app.array);
+        assertEquals(Collections.singletonList("initial"), app.list);
+        assertEquals(Collections.singletonMap("initial", "value"), app.map);
+    }
+
+    public static class InitializedApp {
+        @CommandLine.Option(names = "-a")
+        String[] array = {"initial"};
+        @CommandLine.Option(names = "-l")
+        List<String> list = new ArrayList<>(Collections.singletonList("initial"));
+        @CommandLine.Option(names = "-m")
+        Map<String, String> map = new HashMap<>(Collections.singletonMap("initial", "value"));
+        @CommandLine.Option(names = "-t")
+        boolean toggle = true;
+    }
+
+    public static class ParseArgsApp {
+        @CommandLine.Option(names = "-n")
+        int number;
+        @CommandLine.Option(names = "-x")
+        boolean x;
+        @CommandLine.Parameters
+        List<String> files;
+    }
+
+    @Test
+    public void testParseArgsBindMixins() {
+        MixinApp app = new MixinApp();
+        SharedMixin shared = new SharedMixin();
+        CommandLine commandLine = new CommandLine(app).addMixin("shared", shared);
+        CommandLine.ParseResult result = commandLine.parseArgs("-v", "-l", "3", "-n", "1", "-s");
+        MixinApp bound = result.bind(new MixinApp());
+        assertEquals(1, bound.number);
+        assertTrue(bound.mix.verbose);
+        assertEquals(3, bound.mix.nested.level);
+        assertFalse(app.mix.verbose);
+        assertEquals(0, app.mix.nested.level);
+        // programmatic mixins aren't part of the command instance
+        assertFalse(shared.shared);
+        assertEquals(Boolean.TRUE, result.matchedOptionValue("-s", null));
+    }
+
+    public static class MixinApp {
+        @CommandLine.Mixin
+        ParseArgsMixin mix;
+        @CommandLine.Option(names = "-n")
+        int number;
+    }
+
+    public static class ParseArgsMixin {
+        @CommandLine.Option(names = "-v")
+        boolean verbose;
+        @CommandLine.Mixin
+        NestedMixin nested;
+    }
+
+    public static class SharedMixin {
+        @CommandLine.Option(names = "-s")
+        boolean shared;
+    }
+
+    public static class NestedMixin {
+        @CommandLine.Option(names = "-l")
+        int level;
+    }
+
+    @Test
+    public void testAbbreviatedOptions() {
+        CommandLine.ParseResult result = new CommandLine(new AbbreviatedApp()).setAbbreviatedOptionsAllowed(true)
+                .parseArgs("--verb", "--out=target", "--vers");
+        assertTrue(result.hasMatchedOption("--verbose"));
+        assertTrue(result.hasMatchedOption("--version-file"));
+        assertEquals("target", result.matchedOptionValue("--output", null));
+        result = new CommandLine(new AbbreviatedApp()).setAbbreviatedOptionsAllowed(true).setUnmatchedArgumentsAllowed(true)
+                .parseArgs("--ver", "-o", "x");
+        assertFalse(result.hasMatchedOption("--verbose"));
+        assertEquals(Collections.singletonList("--ver"), result.unmatched());
+        assertEquals("x", result.matchedOptionValue("--output", null));
+        assertThrows(CommandLine.UnmatchedArgumentException.class, () -> new CommandLine(new AbbreviatedApp()).parseArgs("--verb"));
+    }
+
+    public static class AbbreviatedApp {
+        @CommandLine.Option(names = "--verbose")
+        boolean verbose;
+        @CommandLine.Option(names = "--version-file")
+        boolean versionFile;
+        @CommandLine.Option(names = {"-o", "--output"})
+        String output;
+    }
+
+    @Test
+    public void testUnmatchedSuggestions() {
+        CommandLine commandLine = new CommandLine(new AbbreviatedApp()).addSubcommand("deploy", new ParseArgsApp());
+        CommandLine.UnmatchedArgumentException e = assertThrows(CommandLine.UnmatchedArgumentException.class,
+                () -> commandLine.parseArgs("--vrebose"));
+        assertEquals(Collections.singletonList("--verbose"), e.getSuggestions());
+        assertTrue(e.getMessage().endsWith("Did you mean: --verbose?"), e.getMessage());
+        e = assertThrows(CommandLine.UnmatchedArgumentException.class, () -> commandLine.parseArgs("--outptu=x", "delpoy"));
+        assertEquals(Arrays.asList("--output", "deploy"), e.getSuggestions());
+        e = assertThrows(CommandLine.UnmatchedArgumentException.class, () -> commandLine.parseArgs("--something-else"));
+        assertTrue(e.getSuggestions().isEmpty());
+    }
+
+    @Test
+    public void testStreamingUsage() throws IOException {
+        CommandLine commandLine = new CommandLine(new AbbreviatedApp());
+        for (int i = 0; i < 1000; i++) {
+            commandLine.addSubcommand("cmd" + i, new ParseArgsApp());
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        commandLine.usage(new PrintStream(buffer, true), CommandLine.Help.Ansi.OFF);
+        // same as the concatenation of the help sections, which lays out each list as a whole
+        CommandLine.Help help = new CommandLine.Help(commandLine.getCommandSpec(), CommandLine.Help.defaultColorScheme(CommandLine.Help.Ansi.OFF));
+        String expected = help.headerHeading() + help.header()
+                + help.synopsisHeading() + help.synopsis(help.synopsisHeadingLength())
+                + help.descriptionHeading() + help.description()
+                + help.parameterListHeading() + help.parameterList()
+                + help.optionListHeading() + help.optionList()
+                + help.commandListHeading() + help.commandList()
+                + help.footerHeading() + help.footer();
+        String usage = buffer.toString();
+        assertEquals(expected, usage);
+        StringBuilder written = new StringBuilder();
+        help.writeTo(written);
+        assertEquals(expected, written.toString());
+        assertTrue(usage.contains("--verbose"));
+        assertTrue(usage.contains(System.lineSeparator() + "  cmd999" + System.lineSeparator()));
+    }
+
+    @Test
+    public void testHelpCache() throws IOException {
+        File dir = Files.createTempDirectory("helpcache").toFile();
+        try {
+            HelpCache helpCache = new HelpCache(dir);
+            ParseArgsApp app = new ParseArgsApp();
+            CommandLine commandLine = new CommandLine(app);
+            commandLine.addSubcommand("sub", new AbbreviatedApp());
+            CommandLine sub = commandLine.getSubcommands().get("sub");
+            String expected = usage(sub);
+            assertEquals(expected, helpCache.getUsage(sub, CommandLine.Help.Ansi.OFF));
+            File[] files = dir.listFiles();
+            assertNotNull(files);
+            assertEquals(1, files.length);
+            String cached = new String(Files.readAllBytes(files[0].toPath()), StandardCharsets.UTF_8);
+            Files.write(files[0].toPath(), cached.replace("--verbose", "--cached").getBytes(StandardCharsets.UTF_8));
+            assertEquals(expected.replace("--verbose", "--cached"), helpCache.getUsage(sub, CommandLine.Help.Ansi.OFF));
+            ((AbbreviatedApp) sub.getCommand()).output = "somewhere";
+            sub.refreshDefaultValues();
+            assertEquals(usage(sub), helpCache.getUsage(sub, CommandLine.Help.Ansi.OFF));
+            assertEquals(1, dir.listFiles().length);
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testTerminal() {
+        System.clearProperty("picocli.usage.width");
+        String line = String.join(" ", Collections.nCopies(20, "word"));
+        CommandLine.Help.Terminal.setCurrent(new CommandLine.Help.Terminal(null, false, false, 120));
+        try {
+            // the width of terminals that aren't interactive isn't used
+            assertEquals(80, CommandLine.Help.usageHelpWidth());
+            assertEquals(2, CommandLine.Help.join(CommandLine.Help.Ansi.OFF, new String[]{line}, new StringBuilder()).toString().split(System.lineSeparator()).length);
+        } finally {
+            CommandLine.Help.Terminal.setCurrent(null);
+        }
+        CommandLine.Help.Terminal.setCurrent(new CommandLine.Help.Terminal(new StringReader("\nhello\nsecret\n"), true, false, 120));
+        try {
+            assertFalse(CommandLine.Help.Ansi.AUTO.enabled());
+            assertEquals(120, CommandLine.Help.Terminal.current().width());
+            assertEquals(120, CommandLine.Help.usageHelpWidth());
+            assertEquals(line + System.lineSeparator(), CommandLine.Help.join(CommandLine.Help.Ansi.OFF, new String[]{line}, new StringBuilder()).toString());
+            System.setProperty("picocli.usage.width", "100");
+            assertEquals(100, CommandLine.Help.usageHelpWidth());
+            assertEquals("hello", CliHelper.read("Value", null));
+            assertEquals("secret", CliHelper.read("Password", null, true));
+            assertThrows(NoSuchElementException.class, () -> CliHelper.read("Value", null));
+        } finally {
+            CommandLine.Help.Terminal.setCurrent(null);
+        }
+        assertSame(CommandLine.Help.Terminal.system(), CommandLine.Help.Terminal.current());
+    }
+
+    @Test
+    public void testPromptAnswers() throws Exception {
+        PipedWriter input = new PipedWriter();
+        CommandLine.Help.Terminal.setCurrent(new CommandLine.Help.Terminal(new PipedReader(input), false, false, 80));
+        try {
+            CliHelper.setPromptAnswers(Collections.singletonList(AnswerSource.of(Collections.singletonMap("CONFIGURATION_PASSWORD", "pw"))));
+            assertEquals("pw", CliHelper.read("Configuration password", null, true));
+            CliHelper.setPromptAnswers(Collections.singletonList(AnswerSource.of(Collections.singletonMap("continue", "maybe"))));
+            assertThrows(UserDisplayableException.class, () -> CliHelper.confirm("Continue?"));
+            CliHelper.setAssumeYes(true);
+            assertTrue(CliHelper.confirm("Delete everything?", false));
+            CliHelper.setNoInput(true);
+            assertEquals("default", CliHelper.read("Name", "default"));
+            assertThrows(UserDisplayableException.class, () -> CliHelper.read("Name", null));
+            CliHelper.setNoInput(false);
+            CliHelper.setPromptTimeout(100);
+            assertEquals("default", CliHelper.read("Name", "default"));
+            assertThrows(UserDisplayableException.class, () -> CliHelper.read("Name", null));
+            // the read that timed out still waits for a line, which must not answer another prompt
+            assertTrue(PromptReader.isBlocked());
+            assertEquals("no", CliHelper.read("Delete everything?", "no"));
+            input.write("y\n");
+            input.flush();
+            while (PromptReader.isBlocked()) {
+                Thread.sleep(10);
+            }
+            input.write("answer\n");
+            input.flush();
+            assertEquals("answer", CliHelper.read("Name", null));
+        } finally {
+            CliHelper.setPromptAnswers(Collections.emptyList());
+            CliHelper.setAssumeYes(false);
+            CliHelper.setNoInput(false);
+            CliHelper.setPromptTimeout(0);
+            CommandLine.Help.Terminal.setCurrent(null);
+            input.close();
+        }
+    }
+
+    @Test
+    public void testBashCompletion() throws IOException {
+        CommandLine commandLine = new CommandLine(new AbbreviatedApp());
+        for (int i = 0; i < 600; i++) {
+            commandLine.addSubcommand("cmd" + i, new ParseArgsApp());
+        }
+        StringBuilder script = new StringBuilder();
+        AutoComplete.bash("tool", commandLine, script);
+        assertEquals(script.toString(), AutoComplete.bash("tool", commandLine));
+        assertTrue(script.indexOf("  ArrContains COMP_WORDS CMDS599 && { _picocli_tool_cmd599; return $?; }\n") > 0);
+        assertTrue(script.indexOf("function _picocli_tool_cmd599() {") > 0);
+    }
+
+    @Test
+    public void testShellCompletion() throws IOException {
+        CommandLine commandLine = new CommandLine(new CompletionApp());
+        commandLine.addSubcommand("sub", new ParseArgsApp());
+        AutoComplete.CompletionModel model = AutoComplete.model(commandLine);
+        assertSame(model, AutoComplete.model(commandLine));
+        String zsh = AutoComplete.zsh("tool", commandLine);
+        assertTrue(zsh.startsWith("#compdef tool\n"));
+        assertTrue(zsh.contains("      '|sub') lPath='sub' ;;\n"));
+        assertTrue(zsh.contains("    '--verbose:'\n"));
+        assertTrue(zsh.contains("    '-o'|'--output')\n"));
+        assertFalse(zsh.contains("--secret"));
+        String fish = AutoComplete.fish("tool", commandLine);
+        assertTrue(fish.contains("complete -c tool -n '__picocli_tool_using \\'\\'' -a 'sub'\n"));
+        assertTrue(fish.contains("complete -c tool -n '__picocli_tool_using \\'\\'' -s 'o' -l 'output' -r\n"));
+        assertFalse(fish.contains("--secret"));
+        StringBuilder indexed = new StringBuilder();
+        AutoComplete.fish("tool", model, "/tmp/tool.completion", indexed);
+        assertTrue(indexed.toString().contains(" -l 'unit' -r -a '(__picocli_tool_values \\'\\' \\'--unit\\'; or string split \\' \\' -- \\'NANOSECONDS"));
+        assertSame(model, AutoComplete.model(commandLine));
+        commandLine.getSubcommands().get("sub").addSubcommand("deep", new ParseArgsApp());
+        assertNotSame(model, AutoComplete.model(commandLine));
+        assertTrue(AutoComplete.fish("tool", commandLine).contains("            case 'sub|deep'\n"));
+    }
+
+    public static class CompletionApp extends AbbreviatedApp {
+        @CommandLine.Option(names = "--secret", hidden = true)
+        String secret;
+        @CommandLine.Option(names = "--unit")
+        TimeUnit unit;
+    }
+
+    @Test
+    public void testCommandOutput() {
+        AtomicInteger writes = new AtomicInteger();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                writes.incrementAndGet();
+                super.write(b, off, len);
+            }
+        };
+        CliHelper<OutputCmd> cliHelper = new CliHelper<>(OutputCmd::new);
+        cliHelper.setOutput(buffer);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + new File("doesnotexist.cfg").getAbsolutePath());
+        String output = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+        String[] lines = output.split(System.lineSeparator());
+        assertEquals(4 * 500 + 1, lines.length);
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 500; j++) {
+                assertTrue(output.contains("thread " + i + " line " + j + System.lineSeparator()));
+            }
+        }
+        assertEquals("binary", lines[lines.length - 1]);
+        assertEquals(1, writes.get());
+        buffer.reset();
+        cliHelper = new CliHelper<>(OutputCmd::new);
+        cliHelper.setOutput(buffer);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + new File("doesnotexist.cfg").getAbsolutePath(), "doStuff");
+        assertEquals(usage(cliHelper.getCommandLine().getSubcommands().get("doStuff")), new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+        // usage printed outside of an invocation isn't left in the buffer
+        buffer.reset();
+        cliHelper.printUsage(cliHelper.getCommand());
+        assertEquals(usage(cliHelper.getCommandLine()), new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testClassDataSharing() throws IOException {
+        System.setProperty(ClassDataSharing.TRAINING, "true");
+        try {
+            CliHelper<ExecutedCmd> cliHelper = new CliHelper<>(ExecutedCmd::new);
+            cliHelper.initAndRunNoExceptionHandling("-c=" + new File("doesnotexist.cfg").getAbsolutePath());
+            assertFalse(cliHelper.getCommand().executed);
+            assertNotNull(cliHelper.getCommandLine().getSubcommands().get("doStuff").getCommand());
+        } finally {
+            System.clearProperty(ClassDataSharing.TRAINING);
+        }
+        File launcher = File.createTempFile("launcher", ".sh");
+        try {
+            ClassDataSharing.writeLauncher(launcher, "tool", "com.example.Main", Arrays.asList(new File("a.jar"), new File("b.jar")));
+            String script = new String(Files.readAllBytes(launcher.toPath()), StandardCharsets.UTF_8);
+            assertTrue(launcher.canExecute());
+            assertTrue(script.contains("CP='" + new File("a.jar").getAbsolutePath() + File.pathSeparator + new File("b.jar").getAbsolutePath() + "'\n"));
+            assertTrue(script.contains("-D" + ClassDataSharing.TRAINING + "=true"));
+            assertTrue(script.contains("exec \"$JAVA\" -XX:SharedArchiveFile=\"$ARCHIVE\" -Xshare:auto -cp \"$CP\" \"$MAIN\" \"$@\"\n"));
+        } finally {
+            launcher.delete();
+        }
+    }
+
+    @CommandLine.Command(name = "executedcmd", subcommands = DoStuffCmd.class)
+    public static class ExecutedCmd extends NonConfigurableCliCommand {
+        boolean executed;
+
+        @Override
+        protected void execute() throws Exception {
+            executed = true;
+        }
+    }
+
+    @CommandLine.Command(name = "outputcmd", subcommands = DoStuffCmd.class)
+    public static class OutputCmd extends NonConfigurableCliCommand {
+        @Override
+        protected void execute() throws Exception {
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                int thread = i;
+                threads.add(new Thread(() -> {
+                    for (int j = 0; j < 500; j++) {
+                        getOutput().getWriter().println("thread " + thread + " line " + j);
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            getOutput().getStream().write("binary".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String usage(CommandLine commandLine) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        commandLine.usage(new PrintStream(buffer, true), CommandLine.Help.Ansi.OFF);
+        return buffer.toString();
+    }
+
     public class Rak {
         @CommandLine.Parameters(index = "0")
         private String p1;
@@ -2,24 +2,48 @@ package com.kloudtek.ktcli;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kloudtek.ktcli.config.ConfigEncryption;
+import com.kloudtek.ktcli.config.ConfigLayer;
+import com.kloudtek.ktcli.config.LayeredConfig;
+import com.kloudtek.ktcli.config.Secret;
 import com.kloudtek.util.StringUtils;
 import com.kloudtek.util.UserDisplayableException;
 import com.kloudtek.util.io.IOUtils;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import picocli.AutoComplete;
 import picocli.CommandLine;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ConfigTests {
     private File tmpConfig;
+    private List<File> tmpLayers = new ArrayList<>();
 
     public File createConfig() {
         try {
@@ -43,6 +67,13 @@ public class ConfigTests {
         }
     }
 
+    public File createLayerConfig(String json) throws IOException {
+        File layerConfig = File.createTempFile("tmplayer", ".json");
+        tmpLayers.add(layerConfig);
+        IOUtils.write(layerConfig, StringUtils.utf8(json));
+        return layerConfig;
+    }
+
     public File createConfig(String json) throws IOException {
         createConfig();
         IOUtils.write(tmpConfig, StringUtils.utf8(json));
@@ -51,9 +82,17 @@ public class ConfigTests {
 
     @AfterEach
     public void deleteTmpConfig() {
-        if (tmpConfig != null && tmpConfig.exists()) {
-            if (!tmpConfig.delete()) {
-                tmpConfig.deleteOnExit();
+        if (tmpConfig != null) {
+            // saving the configuration also writes the completion index next to it
+            for (File file : new File[]{tmpConfig, new File(tmpConfig.getPath() + ".completion")}) {
+                if (file.exists() && !file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+        for (File tmpLayer : tmpLayers) {
+            if (!tmpLayer.delete()) {
+                tmpLayer.deleteOnExit();
             }
         }
     }
@@ -80,6 +119,346 @@ public class ConfigTests {
         assertEquals("bar", childcmd.b);
     }
 
+    @Test
+    public void testLayeredConfig() throws IOException {
+        createConfig("{\"profiles\":{\"default\":{\"a\":\"user\"}}}");
+        File systemConfig = createLayerConfig("{\"profiles\":{\"default\":{\"a\":\"system\",\"subcommands\":{\"childcmd\":{\"b\":\"system\"}}}}}");
+        File projectConfig = createLayerConfig("{\"profiles\":{\"default\":{\"subcommands\":{\"childcmd\":{\"b\":\"project\"}}}}}");
+        CliHelper<ParentCmd> cliHelper = new CliHelper<>(ParentCmd::new);
+        cliHelper.setSystemConfigFile(systemConfig);
+        cliHelper.setProjectConfigFile(projectConfig);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath(), "childcmd");
+        assertEquals("user", cliHelper.getCommand().a);
+        ChildCmd childcmd = cliHelper.getCommandLine().getSubcommands().get("childcmd").getCommand();
+        assertEquals("project", childcmd.b);
+    }
+
+    @Test
+    public void testSaveLayeredConfig() throws IOException {
+        createConfig("{\"profiles\":{\"default\":{\"subcommands\":{\"childcmd\":{\"b\":\"user\"}}}}}");
+        File systemConfig = createLayerConfig("{\"profiles\":{\"default\":{\"a\":\"system\"}}}");
+        File projectConfig = createLayerConfig("{\"profiles\":{\"default\":{\"subcommands\":{\"childcmd\":{\"b\":\"project\"}}}}}");
+        CliHelper<ParentCmd> cliHelper = new CliHelper<>(ParentCmd::new);
+        cliHelper.setSystemConfigFile(systemConfig);
+        cliHelper.setProjectConfigFile(projectConfig);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath(), "-sc", "childcmd");
+        JsonNode saved = CliHelper.getObjectMapper().readTree(tmpConfig).get("profiles").get("default");
+        assertFalse(saved.has("a"));
+        assertEquals("user", saved.get("subcommands").get("childcmd").get("b").textValue());
+        cliHelper = new CliHelper<>(ParentCmd::new);
+        cliHelper.setSystemConfigFile(systemConfig);
+        cliHelper.setProjectConfigFile(projectConfig);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath(), "-sc", "-a=system", "childcmd", "-b=cli");
+        saved = CliHelper.getObjectMapper().readTree(tmpConfig).get("profiles").get("default");
+        assertEquals("system", saved.get("a").textValue());
+        assertEquals("cli", saved.get("subcommands").get("childcmd").get("b").textValue());
+    }
+
+    @Test
+    public void testProjectConfigNotInHome() throws IOException {
+        createConfig("{}");
+        Path home = Files.createTempDirectory("home");
+        Path work = Files.createDirectories(home.resolve("work"));
+        String userHome = System.getProperty("user.home");
+        String userDir = System.getProperty("user.dir");
+        try {
+            System.setProperty("user.home", home.toString());
+            System.setProperty("user.dir", work.toString());
+            Files.write(home.resolve(".parentcmd.cfg"), StringUtils.utf8("{}"));
+            CliHelper<ParentCmd> cliHelper = new CliHelper<>(ParentCmd::new);
+            cliHelper.parseBasicOptions("-c=" + tmpConfig.getAbsolutePath());
+            assertNull(cliHelper.getProjectConfigFile());
+            Files.write(work.resolve(".parentcmd.cfg"), StringUtils.utf8("{}"));
+            cliHelper = new CliHelper<>(ParentCmd::new);
+            cliHelper.parseBasicOptions("-c=" + tmpConfig.getAbsolutePath());
+            assertEquals(work.resolve(".parentcmd.cfg").toFile(), cliHelper.getProjectConfigFile());
+        } finally {
+            System.setProperty("user.home", userHome);
+            System.setProperty("user.dir", userDir);
+            Files.deleteIfExists(work.resolve(".parentcmd.cfg"));
+            Files.deleteIfExists(work);
+            Files.deleteIfExists(home.resolve(".parentcmd.cfg"));
+            Files.deleteIfExists(home);
+        }
+    }
+
+    @Test
+    public void testEnvironmentConfigLayer() throws IOException {
+        ObjectNode user = (ObjectNode) CliHelper.getObjectMapper().readTree("{\"profiles\":{\"default\":{\"a\":\"user\",\"c\":\"user\"}}}");
+        Map<String, String> environment = new HashMap<>();
+        environment.put("TEST_CFG_a", "env");
+        environment.put("TEST_CFG_otherToken", "env");
+        environment.put("TEST_CFG_ANSWERS__CONFIGURATION_PASSWORD", "env");
+        LayeredConfig layeredConfig = new LayeredConfig()
+                .add(ConfigLayer.fromTree(ConfigLayer.Source.USER, user))
+                .add(ConfigLayer.fromEnvironment("TEST_CFG_", environment), LayeredConfig.path("profiles", "default"));
+        ObjectNode profile = layeredConfig.getObject(LayeredConfig.path("profiles", "default"), null);
+        assertEquals("env", profile.get("a").textValue());
+        assertEquals("user", profile.get("c").textValue());
+        assertEquals("env", profile.get("otherToken").textValue());
+        assertEquals("env", profile.path("answers").path("configuration_password").textValue());
+    }
+
+    @Test
+    public void testProfileInheritance() throws IOException {
+        createConfig("{\"profiles\":{" +
+                "\"base\":{\"a\":\"base\",\"subcommands\":{\"childcmd\":{\"b\":\"base\"}}}," +
+                "\"other\":{\"a\":\"other\"}," +
+                "\"dev\":{\"extends\":[\"base\",\"other\"],\"subcommands\":{\"childcmd\":{\"b\":\"dev\"}}}}}");
+        CliHelper<ParentCmd> cliHelper = new CliHelper<>(ParentCmd::new);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath(), "-p=dev", "childcmd");
+        assertEquals("other", cliHelper.getCommand().a);
+        ChildCmd childcmd = cliHelper.getCommandLine().getSubcommands().get("childcmd").getCommand();
+        assertEquals("dev", childcmd.b);
+    }
+
+    @Test
+    public void testProfileInheritanceCycle() throws IOException {
+        createConfig("{\"profiles\":{\"a\":{\"extends\":\"b\"},\"b\":{\"extends\":\"a\"}}}");
+        CliHelper<ParentCmd> cliHelper = new CliHelper<>(ParentCmd::new);
+        assertThrows(UserDisplayableException.class, () -> cliHelper.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath(), "-p=a"));
+    }
+
+    @Test
+    public void testReloadConfig() throws IOException {
+        createConfig(CliHelper.getObjectMapper().writeValueAsString(createTestConfigMap()));
+        CliHelper<ParentCmd> cliHelper = new CliHelper<>(ParentCmd::new);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath(), "childcmd");
+        ParentCmd parent = cliHelper.getCommand();
+        parent.a = "modified";
+        IOUtils.write(tmpConfig, StringUtils.utf8("{\"profiles\":{\"default\":{\"a\":\"foo\",\"subcommands\":{\"childcmd\":{\"b\":\"changed\"}}}}}"));
+        cliHelper.reloadConfig();
+        ChildCmd childcmd = cliHelper.getCommandLine().getSubcommands().get("childcmd").getCommand();
+        assertEquals("changed", childcmd.b);
+        assertEquals(1, childcmd.configChangedCount);
+        // unchanged configuration isn't loaded again
+        assertEquals("modified", parent.a);
+        assertEquals(0, parent.configChangedCount);
+    }
+
+    @Test
+    public void testReloadConfigKeepsCommandLineValues() throws IOException {
+        createConfig(CliHelper.getObjectMapper().writeValueAsString(createTestConfigMap()));
+        CliHelper<ParentCmd> cliHelper = new CliHelper<>(ParentCmd::new);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath(), "childcmd", "-b=cli");
+        IOUtils.write(tmpConfig, StringUtils.utf8("{\"profiles\":{\"default\":{\"a\":\"changed\",\"subcommands\":{\"childcmd\":{\"b\":\"changed\"}}}}}"));
+        cliHelper.reloadConfig();
+        ParentCmd parent = cliHelper.getCommand();
+        ChildCmd childcmd = cliHelper.getCommandLine().getSubcommands().get("childcmd").getCommand();
+        assertEquals("changed", parent.a);
+        assertEquals("cli", childcmd.b);
+        assertEquals(1, childcmd.configChangedCount);
+    }
+
+    @Test
+    public void testReloadConfigKeepsCommandLineListValues() throws IOException {
+        createConfig("{\"profiles\":{\"default\":{\"name\":\"config\"}}}");
+        CliHelper<ListCmd> cliHelper = new CliHelper<>(ListCmd::new);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath(), "-l=cli");
+        ListCmd cmd = cliHelper.getCommand();
+        assertEquals(Collections.singletonList("cli"), cmd.list);
+        IOUtils.write(tmpConfig, StringUtils.utf8("{\"profiles\":{\"default\":{\"name\":\"changed\",\"list\":[\"changed\"]}}}"));
+        cliHelper.reloadConfig();
+        assertEquals("changed", cmd.name);
+        assertEquals(Collections.singletonList("cli"), cmd.list);
+    }
+
+    @CommandLine.Command(name = "listcmd")
+    public static class ListCmd extends CliCommand<CliCommand> {
+        @CommandLine.Option(names = "-n")
+        @JsonProperty
+        public String name;
+        @CommandLine.Option(names = "-l")
+        @JsonProperty
+        public List<String> list = new ArrayList<>();
+
+        @Override
+        protected void execute() throws Exception {
+        }
+    }
+
+    @Test
+    public void testEncryptedConfigValues() throws IOException {
+        int[] passwordRequests = new int[1];
+        ConfigEncryption.setPasswordProvider(() -> {
+            passwordRequests[0]++;
+            return "password".toCharArray();
+        });
+        String token = Secret.of("token").getEncryptedValue();
+        String otherToken = Secret.of("other").getEncryptedValue();
+        assertTrue(Secret.isEncrypted(token));
+        ConfigEncryption.clearKeys();
+        passwordRequests[0] = 0;
+        createConfig("{\"profiles\":{\"default\":{\"token\":\"" + token + "\",\"otherToken\":\"" + otherToken + "\"}}}");
+        CliHelper<SecretCmd> cliHelper = new CliHelper<>(SecretCmd::new);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath());
+        assertEquals(0, passwordRequests[0]);
+        assertEquals("token", cliHelper.getCommand().token.getValue());
+        assertEquals("other", cliHelper.getCommand().otherToken.getValue());
+        assertEquals(1, passwordRequests[0]);
+    }
+
+    @Test
+    public void testSaveSecretOption() throws IOException {
+        ConfigEncryption.setPasswordProvider("password"::toCharArray);
+        createConfig();
+        new CliHelper<>(SecretCmd::new).initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath(), "-sc", "--token=token");
+        JsonNode saved = CliHelper.getObjectMapper().readTree(tmpConfig).get("profiles").get("default").get("token");
+        assertTrue(Secret.isEncrypted(saved.textValue()));
+        CliHelper<SecretCmd> cliHelper = new CliHelper<>(SecretCmd::new);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath());
+        assertEquals("token", cliHelper.getCommand().token.getValue());
+    }
+
+    @Test
+    public void testSecretsShareConfigFileSalt() throws IOException {
+        int[] passwordRequests = new int[1];
+        ConfigEncryption.setPasswordProvider(() -> {
+            passwordRequests[0]++;
+            return "password".toCharArray();
+        });
+        createConfig();
+        new CliHelper<>(SecretCmd::new).initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath(), "-sc", "--token=token");
+        // a new process saving another secret
+        ConfigEncryption.clearKeys();
+        new CliHelper<>(SecretCmd::new).initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath(), "-sc", "--other-token=other");
+        ConfigEncryption.clearKeys();
+        passwordRequests[0] = 0;
+        CliHelper<SecretCmd> cliHelper = new CliHelper<>(SecretCmd::new);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath());
+        assertEquals("token", cliHelper.getCommand().token.getValue());
+        assertEquals("other", cliHelper.getCommand().otherToken.getValue());
+        assertEquals(1, passwordRequests[0]);
+        JsonNode saved = CliHelper.getObjectMapper().readTree(tmpConfig).get("profiles").get("default");
+        assertArrayEquals(salt(saved.get("token").textValue()), salt(saved.get("otherToken").textValue()));
+    }
+
+    private static byte[] salt(String encrypted) {
+        byte[] decoded = Base64.getDecoder().decode(encrypted.substring(Secret.PREFIX.length(), encrypted.length() - Secret.SUFFIX.length()));
+        return Arrays.copyOfRange(decoded, 1, 17);
+    }
+
+    @Test
+    public void testCompletionIndex() throws IOException {
+        createConfig("{\"profiles\":{\"base\":{},\"other\":{\"a\":\"other\"}}}");
+        File indexFile = createLayerConfig("");
+        CliHelper<ParentCmd> cliHelper = new CliHelper<>(ParentCmd::new);
+        cliHelper.setCompletionIndexFile(indexFile);
+        cliHelper.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath(), "-sc", "-p=dev", "childcmd", "-b=bar");
+        CompletionIndex index = CompletionIndex.read(indexFile);
+        assertEquals(new TreeSet<>(Arrays.asList("base", "dev", "other")), index.get("", "--profile"));
+        assertEquals(index.get("", "--profile"), index.get("", "-p"));
+        assertEquals(new TreeSet<>(Arrays.asList("alpha", "beta")), index.get("childcmd", "-b"));
+        StringBuilder script = new StringBuilder();
+        AutoComplete.bash("parentcmd", cliHelper.getCommandLine(), indexFile.getPath(), script);
+        assertTrue(script.toString().contains("  if _picocli_lookup_parentcmd \"childcmd\" \"${PREV_WORD}\"; then\n"));
+    }
+
+    @Test
+    public void testConfigAnswers() throws IOException {
+        createConfig("{\"profiles\":{\"default\":{\"answers\":{\"configuration_password\":\"pw\"}}}}");
+        File answers = createLayerConfig("{\"Continue\":\"no\",\"Configuration password\":\"other\"}");
+        CliHelper<ParentCmd> noInput = new CliHelper<>(ParentCmd::new);
+        noInput.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath(), "--no-input");
+        assertTrue(noInput.getPrompts().isNoInput());
+        assertEquals("pw", noInput.getPrompts().read("Configuration password", null, true));
+        assertThrows(UserDisplayableException.class, () -> noInput.getPrompts().read("Continue", null));
+        CliHelper<PromptCmd> yes = new CliHelper<>(PromptCmd::new);
+        yes.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath(), "--yes", "--answers=" + answers.getAbsolutePath());
+        assertFalse(yes.getPrompts().isNoInput());
+        assertEquals("other", yes.getPrompts().read("Configuration password", null, true));
+        // the static methods use the prompts of the running command
+        assertEquals(Boolean.FALSE, yes.getCommand().confirmed);
+        assertTrue(yes.getPrompts().confirm("Really?"));
+        // and the settings of a run don't leak to other runs
+        assertFalse(CliHelper.isNoInput());
+        assertFalse(CliHelper.isAssumeYes());
+        assertTrue(CliHelper.getPromptAnswers().isEmpty());
+        assertFalse(noInput.getPrompts().isAssumeYes());
+    }
+
+    @CommandLine.Command(name = "promptcmd")
+    public static class PromptCmd extends CliCommand<CliCommand> {
+        public Boolean confirmed;
+
+        @Override
+        protected void execute() throws Exception {
+            confirmed = CliHelper.confirm("Continue");
+        }
+    }
+
+    @Test
+    public void testNativeImageMetadata() throws IOException {
+        Map<String, JsonNode> reflectConfig = new HashMap<>();
+        for (String project : Arrays.asList("com.kloudtek.ktcli/ktcli", "com.kloudtek.ktcli/" + NativeImageProcessor.GENERATED)) {
+            for (String file : Arrays.asList("/reflect-config.json", "/resource-config.json")) {
+                assertNotNull(getClass().getClassLoader().getResource(NativeImageProcessor.ROOT + project + file), project + file);
+            }
+            try (InputStream is = getClass().getClassLoader().getResourceAsStream(NativeImageProcessor.ROOT + project + "/reflect-config.json")) {
+                for (JsonNode entry : CliHelper.getObjectMapper().readTree(is)) {
+                    reflectConfig.put(entry.get("name").asText(), entry);
+                }
+            }
+        }
+        createConfig("{}");
+        CliHelper<ParentCmd> parentCli = new CliHelper<>(ParentCmd::new);
+        parentCli.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath());
+        assertReflectable(reflectConfig, parentCli.getCommandLine());
+        CliHelper<SecretCmd> secretCli = new CliHelper<>(SecretCmd::new);
+        secretCli.initAndRunNoExceptionHandling("-c=" + tmpConfig.getAbsolutePath());
+        assertReflectable(reflectConfig, secretCli.getCommandLine());
+        // the built-in help options and subcommand of commands with autoHelp
+        CommandLine autoHelp = new CommandLine(new AutoHelpCmd());
+        assertEquals(1, autoHelp.getCommandSpec().mixins().size());
+        assertEquals(1, autoHelp.getSubcommands().size());
+        for (CommandLine.CommandSpec mixin : autoHelp.getCommandSpec().mixins().values()) {
+            assertCovered(reflectConfig, mixin.userObject().getClass());
+        }
+        for (CommandLine subcommand : autoHelp.getSubcommands().values()) {
+            assertCovered(reflectConfig, subcommand.getCommand().getClass());
+        }
+    }
+
+    @CommandLine.Command(name = "autohelpcmd", autoHelp = true)
+    public static class AutoHelpCmd extends CliCommand<CliCommand> {
+        @Override
+        protected void execute() throws Exception {
+        }
+    }
+
+    /**
+     * Checks that the metadata covers what picocli and Jackson use reflection for: the constructors and annotated
+     * fields of commands, mixins and their superclasses, and the classes of configuration properties.
+     */
+    private static void assertReflectable(Map<String, JsonNode> reflectConfig, CommandLine commandLine) {
+        List<Object> userObjects = new ArrayList<>();
+        userObjects.add(commandLine.getCommand());
+        for (CommandLine.CommandSpec mixin : commandLine.getCommandSpec().mixins().values()) {
+            userObjects.add(mixin.userObject());
+        }
+        for (Object userObject : userObjects) {
+            for (Class<?> cls = userObject.getClass(); cls != Object.class; cls = cls.getSuperclass()) {
+                assertCovered(reflectConfig, cls);
+                for (Field field : cls.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(JsonProperty.class) && !field.getType().getName().startsWith("java.")) {
+                        assertCovered(reflectConfig, field.getType());
+                    }
+                }
+            }
+        }
+        for (CommandLine subcommand : commandLine.getSubcommands().values()) {
+            assertReflectable(reflectConfig, subcommand);
+        }
+    }
+
+    private static void assertCovered(Map<String, JsonNode> reflectConfig, Class<?> cls) {
+        JsonNode entry = reflectConfig.get(cls.getName());
+        assertNotNull(entry, cls.getName());
+        for (String property : Arrays.asList("allDeclaredConstructors", "allDeclaredFields", "allDeclaredMethods")) {
+            assertTrue(entry.path(property).asBoolean(), cls.getName() + " " + property);
+        }
+    }
+
     @NotNull
     private HashMap<String, Object> createTestConfigMap() {
         HashMap<String, Object> top = new HashMap<>();
@@ -102,11 +481,17 @@ public class ConfigTests {
         @CommandLine.Option(names = "-a")
         @JsonProperty
         public String a;
+        public int configChangedCount;
 
         @Override
         protected void execute() throws Exception {
             System.out.println("executed parent");
         }
+
+        @Override
+        protected void configChanged() {
+            configChangedCount++;
+        }
     }
 
     @CommandLine.Command(name = "childcmd")
@@ -114,10 +499,36 @@ public class ConfigTests {
         @CommandLine.Option(names = "-b")
         @JsonProperty
         public String b;
+        public int configChangedCount;
+
+        @Override
+        public Map<String, ? extends Collection<String>> getCompletionValues() {
+            return Collections.singletonMap("-b", Arrays.asList("alpha", "beta", "not completable"));
+        }
 
         @Override
         protected void execute() throws Exception {
             System.out.println("executed child");
         }
+
+        @Override
+        protected void configChanged() {
+            configChangedCount++;
+        }
+    }
+
+    @CommandLine.Command(name = "secretcmd")
+    public static class SecretCmd extends CliCommand<CliCommand> {
+        @CommandLine.Option(names = "--token")
+        @JsonProperty
+        public Secret token;
+        @CommandLine.Option(names = "--other-token")
+        @JsonProperty
+        public Secret otherToken;
+
+        @Override
+        protected void execute() throws Exception {
+            System.out.println("executed secret");
+        }
     }
 }